@@ -0,0 +1,74 @@
+#!/usr/bin/env bash
+# Measures the time from JVM launch to the first successful request.
+#
+# Usage: scripts/startup-benchmark.sh [runs]
+#
+# Every mode is started <runs> times (default 5) and GET /api/books?size=1 is polled until it
+# answers 200. Results are written to target/benchmarks/startup.json.
+#   default   - default profile: eager initialization and Springfox scanning on startup
+#   prod      - prod profile: lazy initialization, deferred repositories, no runtime Springfox scan
+#   prod-cds  - prod profile plus an application class-data-sharing archive
+#
+# The application runs from a plain classpath (thin jar + dependency jars) rather than the
+# executable jar, because the JVM can't archive classes loaded from nested jars. Devtools is left
+# out of that classpath, the same way the executable jar leaves it out.
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+MVN=${MVN:-./mvnw}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+WORK_DIR="$ROOT/target/startup"
+OUTPUT="$ROOT/target/benchmarks/startup.json"
+
+cd "$ROOT"
+rm -rf "$WORK_DIR"
+mkdir -p "$WORK_DIR" "$(dirname "$OUTPUT")"
+"$MVN" -q -B -DskipTests package dependency:copy-dependencies \
+    -DincludeScope=runtime -DexcludeArtifactIds=spring-boot-devtools,lombok -DoutputDirectory="$WORK_DIR/lib"
+cp target/*.jar.original "$WORK_DIR/library.jar"
+CLASSPATH="$WORK_DIR/library.jar$(printf ':%s' "$WORK_DIR"/lib/*.jar)"
+
+time_to_first_request() {
+    local start end pid
+    start=$(date +%s%N)
+    java "$@" -Dserver.port="$PORT" -cp "$CLASSPATH" com.harley.library.LibraryApplication > "$WORK_DIR/app.log" 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "http://localhost:$PORT/api/books?size=1"; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "The application exited before answering, see $WORK_DIR/app.log" >&2
+            exit 1
+        fi
+        sleep 0.01
+    done
+    end=$(date +%s%N)
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    echo $(( (end - start) / 1000000 ))
+}
+
+run_mode() {
+    local name=$1 samples=() sorted
+    shift
+    for _ in $(seq "$RUNS"); do
+        samples+=("$(time_to_first_request "$@")")
+    done
+    sorted=($(printf '%s\n' "${samples[@]}" | sort -n))
+    echo "$name: min=${sorted[0]}ms median=${sorted[$(( RUNS / 2 ))]}ms max=${sorted[$(( RUNS - 1 ))]}ms" >&2
+    printf '"%s":{"millis":[%s],"min":%s,"median":%s,"max":%s}' "$name" \
+        "$(IFS=,; echo "${samples[*]}")" "${sorted[0]}" "${sorted[$(( RUNS / 2 ))]}" "${sorted[$(( RUNS - 1 ))]}"
+}
+
+# Training run: the archive is dumped when the JVM exits, after the first request has been served.
+time_to_first_request -XX:ArchiveClassesAtExit="$WORK_DIR/app.jsa" -Dspring.profiles.active=prod > /dev/null
+
+{
+    printf '{"runs":%s,"modes":{' "$RUNS"
+    run_mode default
+    printf ','
+    run_mode prod -Dspring.profiles.active=prod
+    printf ','
+    run_mode prod-cds -XX:SharedArchiveFile="$WORK_DIR/app.jsa" -Dspring.profiles.active=prod
+    printf '}}\n'
+} > "$OUTPUT"
+echo "Results written to $OUTPUT" >&2
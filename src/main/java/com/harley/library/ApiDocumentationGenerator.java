@@ -0,0 +1,37 @@
+package com.harley.library;
+
+import io.swagger.models.Swagger;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import springfox.documentation.spring.web.DocumentationCache;
+import springfox.documentation.spring.web.json.JsonSerializer;
+import springfox.documentation.spring.web.plugins.Docket;
+import springfox.documentation.swagger2.mappers.ServiceModelToSwagger2Mapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Writes the API documentation to the file given as first argument. The build runs it while preparing the package,
+// so the prod profile can serve it as a static file at /api-docs/swagger.json without Springfox scanning every
+// handler on startup.
+public class ApiDocumentationGenerator {
+
+	public static void main(String[] args) throws IOException {
+		Path output = Path.of(args[0]);
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		SpringApplication application = new SpringApplication(LibraryApplication.class);
+		try (ConfigurableApplicationContext context = application.run(
+				"--server.port=0",
+				"--management.server.port=0",
+				"--spring.main.banner-mode=off",
+				"--logging.level.root=error",
+				"--application.swagger.enabled=true")) {
+			Swagger swagger = context.getBean(ServiceModelToSwagger2Mapper.class).mapDocumentation(
+					context.getBean(DocumentationCache.class).documentationByGroup(Docket.DEFAULT_GROUP_NAME));
+			Files.createDirectories(output.getParent());
+			Files.writeString(output, context.getBean(JsonSerializer.class).toJson(swagger).value());
+		}
+	}
+
+}
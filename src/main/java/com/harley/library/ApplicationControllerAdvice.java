@@ -1,7 +1,10 @@
 package com.harley.library;
 
 import com.harley.library.exceptions.ApiErrors;
+import com.harley.library.exceptions.BulkheadFullException;
 import com.harley.library.exceptions.BusinessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -27,6 +30,19 @@ public class ApplicationControllerAdvice {
         return new ApiErrors(exception);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiErrors handleOptimisticLockingFailureException(OptimisticLockingFailureException exception) {
+        return new ApiErrors(exception.getMessage());
+    }
+
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<ApiErrors> handleBulkheadFullException(BulkheadFullException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(new ApiErrors(exception.getMessage()));
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity handleResponseStatusException(ResponseStatusException e) {
         return new ResponseEntity(new ApiErrors(e), e.getStatus());
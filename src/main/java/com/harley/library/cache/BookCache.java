@@ -0,0 +1,81 @@
+package com.harley.library.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.harley.library.entities.Book;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Books by id, kept on this instance. A book is evicted when it changes here and when the book change feed reports a
+ * change made on another instance. A load that overlapped any eviction isn't kept, so a read that started before a
+ * change can't put the old book back after the change evicted it. The serialized response of a book is kept next to
+ * it, keyed by id and version, and is evicted together with it.
+ */
+public class BookCache {
+
+    private final Cache<Long, Book> books;
+    private final Cache<Long, SerializedBook> serializedBooks;
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BookCache(Cache<Long, Book> books, Cache<Long, SerializedBook> serializedBooks) {
+        this.books = books;
+        this.serializedBooks = serializedBooks;
+    }
+
+    public Book get(Long id) {
+        return books.getIfPresent(id);
+    }
+
+    /**
+     * Taken before loading a book, and passed to {@link #put} with the loaded book.
+     */
+    public long stamp() {
+        return evictions.get();
+    }
+
+    public void put(Book book, long stamp) {
+        books.put(book.getId(), book);
+        if (evictions.get() != stamp) {
+            books.invalidate(book.getId());
+        }
+    }
+
+    /**
+     * Returns the bytes serialized from the given version of the book, or null.
+     */
+    public byte[] getSerialized(Long id, Long version) {
+        SerializedBook serialized = serializedBooks.getIfPresent(id);
+        return serialized != null && Objects.equals(serialized.getVersion(), version) ? serialized.getBytes() : null;
+    }
+
+    public void putSerialized(Long id, Long version, byte[] bytes, long stamp) {
+        serializedBooks.put(id, new SerializedBook(version, bytes));
+        if (evictions.get() != stamp) {
+            serializedBooks.invalidate(id);
+        }
+    }
+
+    public void evict(Long id) {
+        evictions.incrementAndGet();
+        books.invalidate(id);
+        serializedBooks.invalidate(id);
+    }
+
+    /**
+     * Returns up to limit books, the most used first when the cache is bounded.
+     */
+    public List<Book> hottest(int limit) {
+        Collection<Book> cached = books.policy().eviction()
+                .map(eviction -> eviction.hottest(limit).values())
+                .orElseGet(() -> books.asMap().values());
+        return cached.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    public long size() {
+        return books.estimatedSize();
+    }
+}
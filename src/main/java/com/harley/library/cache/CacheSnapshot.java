@@ -0,0 +1,140 @@
+package com.harley.library.cache;
+
+import com.harley.library.entities.Book;
+import com.harley.library.indexes.IsbnKeys;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Hot books and ISBN index entries of an instance, saved to a local file so the next start doesn't begin cold.
+ * <p>
+ * The file is {@code [magic][formatVersion][createdAt][changeId][maxBookId][isbnCount]([isbnKey][bookId])*
+ * [bookCount]([id][version][title][author][isbn])*[crc32c]}. It is written to a temporary file that then replaces
+ * the previous snapshot, and a file with another magic or format version or a checksum that doesn't match is ignored,
+ * so a snapshot torn by a crash is never read.
+ */
+@Getter
+@RequiredArgsConstructor
+public class CacheSnapshot {
+
+    static final int MAGIC = 0x4C42434B;
+    static final short FORMAT_VERSION = 1;
+    private static final int CHECKSUM_SIZE = 4;
+
+    private final Instant createdAt;
+    // every book change up to this id was applied to the cache when the snapshot was taken
+    private final long changeId;
+    // books with a higher id were created after the snapshot was taken
+    private final long maxBookId;
+    private final long[] isbnEntries;
+    private final List<Book> books;
+
+    public void writeTo(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            CRC32C checksum = new CRC32C();
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                DataOutputStream data = new DataOutputStream(new CheckedOutputStream(output, checksum));
+                data.writeInt(MAGIC);
+                data.writeShort(FORMAT_VERSION);
+                data.writeLong(createdAt.toEpochMilli());
+                data.writeLong(changeId);
+                data.writeLong(maxBookId);
+                data.writeInt(isbnEntries.length / 2);
+                for (long entry : isbnEntries) {
+                    data.writeLong(entry);
+                }
+                data.writeInt(books.size());
+                for (Book book : books) {
+                    data.writeLong(book.getId());
+                    data.writeLong(book.getVersion() == null ? -1 : book.getVersion());
+                    writeString(data, book.getTitle());
+                    writeString(data, book.getAuthor());
+                    writeString(data, book.getIsbn());
+                }
+                data.flush();
+                new DataOutputStream(output).writeInt((int) checksum.getValue());
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads the snapshot, or returns empty when there is none or it can't be trusted.
+     */
+    public static Optional<CacheSnapshot> readFrom(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < CHECKSUM_SIZE) {
+            return Optional.empty();
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes, 0, bytes.length - CHECKSUM_SIZE);
+        if (ByteBuffer.wrap(bytes).getInt(bytes.length - CHECKSUM_SIZE) != (int) checksum.getValue()) {
+            return Optional.empty();
+        }
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - CHECKSUM_SIZE));
+        if (data.readInt() != MAGIC || data.readShort() != FORMAT_VERSION) {
+            return Optional.empty();
+        }
+        Instant createdAt = Instant.ofEpochMilli(data.readLong());
+        long changeId = data.readLong();
+        long maxBookId = data.readLong();
+        long[] isbnEntries = new long[2 * data.readInt()];
+        for (int i = 0; i < isbnEntries.length; i++) {
+            isbnEntries[i] = data.readLong();
+        }
+        int bookCount = data.readInt();
+        List<Book> books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            long id = data.readLong();
+            long version = data.readLong();
+            String title = readString(data);
+            String author = readString(data);
+            String isbn = readString(data);
+            books.add(Book.builder()
+                    .id(id)
+                    .version(version < 0 ? null : version)
+                    .title(title)
+                    .author(author)
+                    .isbn(isbn)
+                    .isbnKey(IsbnKeys.toKey(isbn))
+                    .build());
+        }
+        return Optional.of(new CacheSnapshot(createdAt, changeId, maxBookId, isbnEntries, books));
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        return data.readBoolean() ? data.readUTF() : null;
+    }
+}
@@ -0,0 +1,15 @@
+package com.harley.library.cache;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Response bytes of a book, valid only for the version they were written from.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SerializedBook {
+
+    private final Long version;
+    private final byte[] bytes;
+}
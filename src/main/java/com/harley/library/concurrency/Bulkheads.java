@@ -0,0 +1,87 @@
+package com.harley.library.concurrency;
+
+import com.harley.library.exceptions.BulkheadFullException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * One bounded pool per {@link OperationClass}. A task submitted when its pool's threads are busy and its queue is
+ * full is rejected right away with a {@link BulkheadFullException}, so the caller answers 503 instead of waiting.
+ */
+public class Bulkheads {
+
+    private final Map<OperationClass, ThreadPoolExecutor> executors = new EnumMap<>(OperationClass.class);
+    private final Map<OperationClass, LongAdder> rejected = new EnumMap<>(OperationClass.class);
+    private final int retryAfterSeconds;
+
+    public Bulkheads(Map<OperationClass, Integer> threads, Map<OperationClass, Integer> queueSizes,
+                     int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+        for (OperationClass operation : OperationClass.values()) {
+            int poolSize = threads.getOrDefault(operation, operation.getDefaultThreads());
+            int queueSize = queueSizes.getOrDefault(operation, operation.getDefaultQueueSize());
+            if (poolSize < 1 || queueSize < 1) {
+                throw new IllegalArgumentException("Bulkhead " + operation.key() + " needs at least one thread and one queue slot");
+            }
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("bulkhead-" + operation.key() + "-");
+            threadFactory.setDaemon(true);
+            executors.put(operation, new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.AbortPolicy()));
+            rejected.put(operation, new LongAdder());
+        }
+    }
+
+    public <T> CompletableFuture<T> supply(OperationClass operation, Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executors.get(operation));
+        } catch (RejectedExecutionException e) {
+            rejected.get(operation).increment();
+            throw new BulkheadFullException("Too many " + operation.key() + " requests, retry later", retryAfterSeconds);
+        }
+    }
+
+    public CompletableFuture<Void> run(OperationClass operation, Runnable task) {
+        return supply(operation, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public int getActive(OperationClass operation) {
+        return executors.get(operation).getActiveCount();
+    }
+
+    public int getQueued(OperationClass operation) {
+        return executors.get(operation).getQueue().size();
+    }
+
+    public int getThreads(OperationClass operation) {
+        return executors.get(operation).getMaximumPoolSize();
+    }
+
+    public int getQueueCapacity(OperationClass operation) {
+        ThreadPoolExecutor executor = executors.get(operation);
+        return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+    }
+
+    public long getCompleted(OperationClass operation) {
+        return executors.get(operation).getCompletedTaskCount();
+    }
+
+    public long getRejected(OperationClass operation) {
+        return rejected.get(operation).sum();
+    }
+
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+}
@@ -0,0 +1,21 @@
+package com.harley.library.concurrency;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum OperationClass {
+    // Each class of work gets its own pool, so slow history queries fill up their own queue
+    // instead of the request threads that checkouts and returns need.
+    CHECKOUT(16, 100),
+    SEARCH(8, 50),
+    HISTORY(4, 20);
+
+    private final int defaultThreads;
+    private final int defaultQueueSize;
+
+    public String key() {
+        return name().toLowerCase();
+    }
+}
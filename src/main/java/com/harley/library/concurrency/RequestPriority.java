@@ -0,0 +1,51 @@
+package com.harley.library.concurrency;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.util.AntPathMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Comparator;
+import java.util.Map;
+
+@Getter
+@RequiredArgsConstructor
+public enum RequestPriority {
+    // Single resource reads may use the whole limit, writes most of it, and bulk operations
+    // (searches, exports, histories) only part of it, so they are the first to be shed.
+    READ(1.0),
+    WRITE(0.8),
+    BULK(0.5);
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    // GET routes answered from a bounded number of rows. The filter runs before the dispatcher, so the
+    // request is matched here against the controllers' route patterns the same way Spring MVC does.
+    private static final Map<String, RequestPriority> GET_ROUTES = Map.ofEntries(
+            Map.entry("/api/books/{id}", READ),
+            Map.entry("/api/books/{id}/availability", READ),
+            Map.entry("/api/books/batch", READ),
+            Map.entry("/api/books/availability", READ),
+            Map.entry("/api/loans/batch", READ),
+            Map.entry("/api/books", BULK),
+            Map.entry("/api/books/suggest", BULK),
+            Map.entry("/api/books/export", BULK),
+            Map.entry("/api/books/{id}/loans", BULK),
+            Map.entry("/api/loans", BULK),
+            Map.entry("/api/loans/export", BULK));
+
+    private final double limitShare;
+
+    public static RequestPriority of(HttpServletRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            return WRITE;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Comparator<String> specificity = PATH_MATCHER.getPatternComparator(path);
+        return GET_ROUTES.keySet().stream()
+                .filter(pattern -> PATH_MATCHER.match(pattern, path))
+                .min(specificity)
+                .map(GET_ROUTES::get)
+                .orElse(BULK);
+    }
+}
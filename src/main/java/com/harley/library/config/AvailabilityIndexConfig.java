@@ -0,0 +1,51 @@
+package com.harley.library.config;
+
+import com.harley.library.indexes.BookAvailabilityIndex;
+import com.harley.library.respositories.BookRepository;
+import com.harley.library.respositories.LoanRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+@Configuration
+public class AvailabilityIndexConfig {
+
+    @Bean
+    public BookAvailabilityIndex bookAvailabilityIndex() {
+        return new BookAvailabilityIndex();
+    }
+
+    // Seeds the index once every eager singleton exists, which is before the web server takes requests,
+    // even when the context is lazily initialized.
+    @Bean
+    @Lazy(false)
+    public SmartInitializingSingleton bookAvailabilitySeeder(BookAvailabilityIndex index, BookRepository bookRepository,
+                                                             LoanRepository loanRepository,
+                                                             PlatformTransactionManager transactionManager) {
+        return () -> {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.executeWithoutResult(status -> {
+                try (Stream<Long> bookIds = bookRepository.streamIds();
+                     Stream<Long> lentBookIds = loanRepository.streamLentBookIds()) {
+                    index.seed(bookIds.mapToLong(Long::longValue), lentBookIds.mapToLong(Long::longValue));
+                }
+            });
+        };
+    }
+
+    @Bean
+    public MeterBinder bookAvailabilityMetrics(BookAvailabilityIndex index) {
+        return registry -> {
+            Gauge.builder("library.books.total", index, BookAvailabilityIndex::getBookCount).register(registry);
+            Gauge.builder("library.books.lent", index, BookAvailabilityIndex::getLentCount).register(registry);
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package com.harley.library.config;
+
+import com.harley.library.events.AvailabilityBroadcaster;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class AvailabilityStreamConfig {
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService availabilityStreamSender(
+            @Value("${application.availability-stream.sender-threads:2}") int senderThreads) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("availability-stream-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(senderThreads, threadFactory);
+    }
+
+    @Bean
+    public AvailabilityBroadcaster availabilityBroadcaster(
+            ExecutorService availabilityStreamSender,
+            @Value("${application.availability-stream.buffer-size:128}") int bufferSize,
+            @Value("${application.availability-stream.timeout-minutes:30}") long timeoutMinutes,
+            @Value("${application.availability-stream.send-timeout-ms:5000}") long sendTimeoutMillis,
+            @Value("${application.availability-stream.max-subscribers:10000}") int maxSubscribers) {
+        return new AvailabilityBroadcaster(availabilityStreamSender, bufferSize,
+                TimeUnit.MINUTES.toMillis(timeoutMinutes), sendTimeoutMillis, maxSubscribers);
+    }
+
+    @Bean
+    public MeterBinder availabilityStreamMetrics(AvailabilityBroadcaster broadcaster) {
+        return registry -> {
+            Gauge.builder("library.availability.stream.subscribers", broadcaster,
+                    AvailabilityBroadcaster::getSubscriberCount).register(registry);
+            FunctionCounter.builder("library.availability.stream.sent", broadcaster,
+                    AvailabilityBroadcaster::getSent).register(registry);
+            FunctionCounter.builder("library.availability.stream.overflowed", broadcaster,
+                    AvailabilityBroadcaster::getOverflowed).register(registry);
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package com.harley.library.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harley.library.cache.BookCache;
+import com.harley.library.cache.SerializedBook;
+import com.harley.library.entities.Book;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class BookCacheConfig {
+
+    // The expiry only bounds how long a book can stay stale if the change feed stops.
+    @Bean
+    public Cache<Long, Book> cachedBooks(
+            @Value("${application.book-cache.max-entries:10000}") long maxEntries,
+            @Value("${application.book-cache.ttl-minutes:10}") long ttlMinutes) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+    }
+
+    @Bean
+    public Cache<Long, SerializedBook> serializedBooks(
+            @Value("${application.book-cache.max-entries:10000}") long maxEntries,
+            @Value("${application.book-cache.ttl-minutes:10}") long ttlMinutes) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+    }
+
+    @Bean
+    public BookCache bookCache(Cache<Long, Book> cachedBooks, Cache<Long, SerializedBook> serializedBooks) {
+        return new BookCache(cachedBooks, serializedBooks);
+    }
+
+    @Bean
+    public MeterBinder bookCacheMetrics(Cache<Long, Book> cachedBooks, Cache<Long, SerializedBook> serializedBooks) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, cachedBooks, "books");
+            CaffeineCacheMetrics.monitor(registry, serializedBooks, "serialized-books");
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package com.harley.library.config;
+
+import com.harley.library.concurrency.Bulkheads;
+import com.harley.library.concurrency.OperationClass;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Configuration
+public class BulkheadConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkheads bulkheads(Environment environment,
+                               @Value("${application.bulkhead.retry-after-seconds:1}") int retryAfterSeconds) {
+        Map<OperationClass, Integer> threads = new EnumMap<>(OperationClass.class);
+        Map<OperationClass, Integer> queueSizes = new EnumMap<>(OperationClass.class);
+        for (OperationClass operation : OperationClass.values()) {
+            String prefix = "application.bulkhead." + operation.key();
+            threads.put(operation, environment.getProperty(prefix + ".threads", Integer.class,
+                    operation.getDefaultThreads()));
+            queueSizes.put(operation, environment.getProperty(prefix + ".queue-size", Integer.class,
+                    operation.getDefaultQueueSize()));
+        }
+        return new Bulkheads(threads, queueSizes, retryAfterSeconds);
+    }
+
+    @Bean
+    public MeterBinder bulkheadMetrics(Bulkheads bulkheads) {
+        return registry -> {
+            for (OperationClass operation : OperationClass.values()) {
+                String tag = operation.key();
+                Gauge.builder("library.bulkhead.threads", bulkheads, b -> b.getThreads(operation))
+                        .tag("operation", tag).register(registry);
+                Gauge.builder("library.bulkhead.active", bulkheads, b -> b.getActive(operation))
+                        .tag("operation", tag).register(registry);
+                Gauge.builder("library.bulkhead.queue.capacity", bulkheads, b -> b.getQueueCapacity(operation))
+                        .tag("operation", tag).register(registry);
+                Gauge.builder("library.bulkhead.queued", bulkheads, b -> b.getQueued(operation))
+                        .tag("operation", tag).register(registry);
+                FunctionCounter.builder("library.bulkhead.completed", bulkheads, b -> b.getCompleted(operation))
+                        .tag("operation", tag).register(registry);
+                FunctionCounter.builder("library.bulkhead.rejected", bulkheads, b -> b.getRejected(operation))
+                        .tag("operation", tag).register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.harley.library.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.harley.library.concurrency.AdaptiveConcurrencyLimiter;
+import com.harley.library.concurrency.ConcurrencyLimitFilter;
+import com.harley.library.concurrency.RequestPriority;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@ConditionalOnProperty(name = "application.concurrency.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(
+            @Value("${application.concurrency.initial-limit:50}") int initialLimit,
+            @Value("${application.concurrency.min-limit:8}") int minLimit,
+            @Value("${application.concurrency.max-limit:200}") int maxLimit,
+            @Value("${application.concurrency.latency-threshold-ms:500}") long latencyThresholdMs,
+            @Value("${application.concurrency.backoff-ratio:0.9}") double backoffRatio) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit,
+                TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs), backoffRatio);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            AdaptiveConcurrencyLimiter limiter, ObjectMapper objectMapper,
+            @Value("${application.concurrency.retry-after-seconds:1}") int retryAfterSeconds) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limiter, objectMapper, retryAfterSeconds));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    @Bean
+    public MeterBinder concurrencyLimitMetrics(AdaptiveConcurrencyLimiter limiter) {
+        return registry -> {
+            Gauge.builder("library.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .register(registry);
+            Gauge.builder("library.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .register(registry);
+            for (RequestPriority priority : RequestPriority.values()) {
+                FunctionCounter.builder("library.concurrency.rejected", limiter, l -> l.getRejected(priority))
+                        .tag("priority", priority.name().toLowerCase())
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package com.harley.library.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+public class ContentNegotiationConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+    // Spring MVC registers the CBOR and Smile converters after the JSON one as soon as their Jackson modules are on
+    // the classpath, but with a default mapper. They are given the application's Jackson settings instead.
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter instanceof MappingJackson2CborHttpMessageConverter) {
+                ((MappingJackson2CborHttpMessageConverter) converter).setObjectMapper(
+                        objectMapperBuilder.getObject().factory(new CBORFactory()).build());
+            } else if (converter instanceof MappingJackson2SmileHttpMessageConverter) {
+                ((MappingJackson2SmileHttpMessageConverter) converter).setObjectMapper(
+                        objectMapperBuilder.getObject().factory(new SmileFactory()).build());
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.harley.library.config;
+
+import com.harley.library.diagnostics.SlowOperationRecorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "application.diagnostics.slow-operations.enabled", havingValue = "true")
+public class DiagnosticsConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @Lazy(false)
+    public SlowOperationRecorder slowOperationRecorder(
+            @Value("${application.diagnostics.slow-operations.threshold-ms:200}") long thresholdMillis,
+            @Value("${application.diagnostics.slow-operations.capacity:100}") int capacity) {
+        return new SlowOperationRecorder(Duration.ofMillis(thresholdMillis), capacity);
+    }
+}
@@ -0,0 +1,47 @@
+package com.harley.library.config;
+
+import com.harley.library.eventlog.LoanEventLog;
+import com.harley.library.eventlog.LoanEventRecorder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Off by default: the log outlives the process, so it only matches the loans of a database that does too. Enable it
+// together with a persistent datasource and point the directory next to that database.
+@Configuration
+@ConditionalOnProperty(name = "application.event-log.enabled", havingValue = "true")
+public class EventLogConfig {
+
+    @Bean(destroyMethod = "close")
+    public LoanEventLog loanEventLog(
+            @Value("${application.event-log.directory}") String directory,
+            @Value("${application.event-log.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${application.event-log.sync-every:64}") int syncEvery,
+            @Value("${application.event-log.sync-interval-ms:50}") long syncIntervalMs) throws IOException {
+        return new LoanEventLog(Path.of(directory), segmentSizeMb * 1024 * 1024, syncEvery, syncIntervalMs);
+    }
+
+    @Bean
+    public LoanEventRecorder loanEventRecorder(LoanEventLog loanEventLog) {
+        return new LoanEventRecorder(loanEventLog);
+    }
+
+    @Bean
+    public MeterBinder loanEventLogMetrics(LoanEventLog loanEventLog) {
+        return registry -> {
+            FunctionCounter.builder("library.eventlog.appended", loanEventLog, LoanEventLog::getAppended)
+                    .register(registry);
+            FunctionCounter.builder("library.eventlog.syncs", loanEventLog, LoanEventLog::getSyncs)
+                    .register(registry);
+            Gauge.builder("library.eventlog.segments", loanEventLog, LoanEventLog::getSegmentCount)
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.harley.library.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harley.library.idempotency.IdempotencyFilter;
+import com.harley.library.idempotency.StoredResponse;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.servlet.DispatcherType;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "application.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyConfig {
+
+    @Bean
+    public Cache<String, StoredResponse> idempotentResponses(
+            @Value("${application.idempotency.max-entries:10000}") long maxEntries,
+            @Value("${application.idempotency.ttl-minutes:60}") long ttlMinutes) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+    }
+
+    // Ahead of the concurrency limit, so replays don't take a slot from requests that do work.
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            Cache<String, StoredResponse> idempotentResponses, ObjectMapper objectMapper,
+            @Value("${application.idempotency.max-body-kb:64}") int maxBodyKb,
+            @Value("${application.idempotency.in-flight-timeout-seconds:120}") long inFlightTimeoutSeconds) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(new IdempotencyFilter(
+                idempotentResponses, objectMapper, maxBodyKb * 1024, Duration.ofSeconds(inFlightTimeoutSeconds)));
+        registration.addUrlPatterns("/api/*");
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC, DispatcherType.ERROR);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+
+    @Bean
+    public MeterBinder idempotencyMetrics(Cache<String, StoredResponse> idempotentResponses) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, idempotentResponses, "idempotency");
+    }
+}
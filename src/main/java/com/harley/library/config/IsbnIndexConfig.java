@@ -0,0 +1,52 @@
+package com.harley.library.config;
+
+import com.harley.library.dtos.IsbnKeyDTO;
+import com.harley.library.implementations.CacheSnapshotService;
+import com.harley.library.indexes.IsbnIndex;
+import com.harley.library.respositories.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+@Configuration
+public class IsbnIndexConfig {
+
+    @Bean
+    public IsbnIndex isbnIndex() {
+        return new IsbnIndex();
+    }
+
+    // A usable cache snapshot seeds the index and warms the book cache instead of reading every ISBN.
+    @Bean
+    @Lazy(false)
+    public SmartInitializingSingleton isbnIndexSeeder(IsbnIndex index, BookRepository bookRepository,
+                                                      PlatformTransactionManager transactionManager,
+                                                      ObjectProvider<CacheSnapshotService> cacheSnapshotService) {
+        return () -> {
+            CacheSnapshotService snapshots = cacheSnapshotService.getIfAvailable();
+            if (snapshots != null && snapshots.restore()) {
+                return;
+            }
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.executeWithoutResult(status -> index.seed(ids -> {
+                try (Stream<IsbnKeyDTO> keys = bookRepository.streamIsbnKeys()) {
+                    keys.forEach(key -> ids.put(key.getIsbnKey(), key.getBookId()));
+                }
+            }));
+        };
+    }
+
+    @Bean
+    public MeterBinder isbnIndexMetrics(IsbnIndex index) {
+        return registry -> Gauge.builder("library.books.isbn-index.size", index, IsbnIndex::size).register(registry);
+    }
+}
@@ -0,0 +1,31 @@
+package com.harley.library.config;
+
+import com.harley.library.services.StatisticsService;
+import com.harley.library.statistics.LoanStatistics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+@Configuration
+public class StatisticsConfig {
+
+    @Bean
+    public LoanStatistics loanStatistics() {
+        return new LoanStatistics();
+    }
+
+    @Bean
+    @Lazy(false)
+    public SmartInitializingSingleton loanStatisticsSeeder(StatisticsService statisticsService) {
+        return statisticsService::rebuild;
+    }
+
+    @Bean
+    public MeterBinder loanStatisticsMetrics(LoanStatistics loanStatistics) {
+        return registry -> Gauge.builder("library.loans.total", loanStatistics, LoanStatistics::getTotalLoans)
+                .register(registry);
+    }
+}
@@ -0,0 +1,44 @@
+package com.harley.library.config;
+
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.indexes.BookSuggestIndex;
+import com.harley.library.respositories.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+@Configuration
+public class SuggestIndexConfig {
+
+    @Bean
+    public BookSuggestIndex bookSuggestIndex() {
+        return new BookSuggestIndex();
+    }
+
+    @Bean
+    @Lazy(false)
+    public SmartInitializingSingleton bookSuggestSeeder(BookSuggestIndex index, BookRepository bookRepository,
+                                                        PlatformTransactionManager transactionManager) {
+        return () -> {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.executeWithoutResult(status -> {
+                try (Stream<BookDTO> books = bookRepository.streamByFilter(null, null, null)) {
+                    books.forEach(book -> index.put(book.getId(), book.getTitle(), book.getAuthor()));
+                }
+            });
+        };
+    }
+
+    @Bean
+    public MeterBinder bookSuggestMetrics(BookSuggestIndex index) {
+        return registry -> Gauge.builder("library.books.suggest.size", index, BookSuggestIndex::size).register(registry);
+    }
+}
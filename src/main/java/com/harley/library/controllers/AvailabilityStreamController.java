@@ -0,0 +1,69 @@
+package com.harley.library.controllers;
+
+import com.harley.library.entities.Book;
+import com.harley.library.events.AvailabilityBroadcaster;
+import com.harley.library.services.BookService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+@RestController
+@Api("BOOK AVAILABILITY STREAM API")
+@RequestMapping("/api/books")
+@RequiredArgsConstructor
+public class AvailabilityStreamController {
+    private static final int MAX_ISBNS = 100;
+
+    private final BookService bookService;
+    private final AvailabilityBroadcaster availabilityBroadcaster;
+
+    @GetMapping(value = "{id}/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation("STREAM THE AVAILABILITY CHANGES OF A BOOK")
+    public SseEmitter streamBook(@PathVariable Long id) {
+        if (bookService.getAvailability(id).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return subscribe(List.of(id));
+    }
+
+    @GetMapping(value = "availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation("STREAM THE AVAILABILITY CHANGES OF THE BOOKS WITH THE ISBNS")
+    public SseEmitter streamIsbns(@RequestParam("isbn") Set<String> isbns) {
+        if (isbns.isEmpty() || isbns.size() > MAX_ISBNS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Inform between 1 and " + MAX_ISBNS + " isbns");
+        }
+        Set<Long> bookIds = new LinkedHashSet<>();
+        for (String isbn : isbns) {
+            bookService.getBookByIsbn(isbn).map(Book::getId)
+                    .filter(bookId -> bookService.getAvailability(bookId).isPresent())
+                    .ifPresent(bookIds::add);
+        }
+        if (bookIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No book found for the isbns");
+        }
+        return subscribe(bookIds);
+    }
+
+    // the current availability is read by the broadcaster, after the subscription is registered
+    private SseEmitter subscribe(Collection<Long> bookIds) {
+        Optional<SseEmitter> emitter = availabilityBroadcaster.subscribe(bookIds, bookService::getAvailability);
+        return emitter.orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Too many availability subscribers, retry later"));
+    }
+}
@@ -1,12 +1,21 @@
 package com.harley.library.controllers;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.harley.library.concurrency.Bulkheads;
+import com.harley.library.concurrency.OperationClass;
+import com.harley.library.dtos.AvailabilityCountDTO;
+import com.harley.library.dtos.BookAvailabilityDTO;
 import com.harley.library.dtos.BookDTO;
-import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.BookPatchDTO;
+import com.harley.library.dtos.BookSuggestionDTO;
+import com.harley.library.dtos.MultiGetDTO;
 import com.harley.library.entities.Book;
-import com.harley.library.entities.Loan;
+import com.harley.library.enums.ExportFormat;
 import com.harley.library.exceptions.ApiErrors;
 import com.harley.library.exceptions.BusinessException;
 import com.harley.library.services.BookService;
+import com.harley.library.services.ExportService;
 import com.harley.library.services.LoanService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -15,26 +24,38 @@ import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @Api("BOOK API")
 @RequestMapping("/api/books")
 @RequiredArgsConstructor
 public class BookController {
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final int MAX_BATCH_IDS = 100;
+
     private final BookService bookService;
     private final ModelMapper modelMapper;
+    private final ObjectMapper objectMapper;
     private final LoanService loanService;
+    private final ExportService exportService;
+    private final Bulkheads bulkheads;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -46,11 +67,26 @@ public class BookController {
     }
 
     @GetMapping("{id}")
-    @ApiOperation("GET A BOOK BY ID")
-    public BookDTO getBook(@PathVariable Long id) {
-        return bookService.getById(id)
-                .map(book -> modelMapper.map(book, BookDTO.class))
+    @ApiOperation(value = "GET A BOOK BY ID", response = BookDTO.class)
+    public ResponseEntity<?> getBook(@PathVariable Long id,
+                                     @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (!prefersJson(accept)) {
+            return ResponseEntity.ok(bookService.getById(id)
+                    .map(book -> modelMapper.map(book, BookDTO.class))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
+        }
+        byte[] json = bookService.getSerializedById(id, this::toJson)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+    @GetMapping("batch")
+    @ApiOperation("GET THE BOOKS WITH THE COMMA SEPARATED IDS, IN THEIR ORDER, AND THE IDS NOT FOUND")
+    public CompletableFuture<MultiGetDTO<BookDTO>> getBooks(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Inform at most " + MAX_BATCH_IDS + " ids");
+        }
+        return bulkheads.supply(OperationClass.SEARCH, () -> bookService.getByIds(ids));
     }
 
     @DeleteMapping("{id}")
@@ -75,33 +111,92 @@ public class BookController {
         }).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
+    @PatchMapping("{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @ApiOperation("UPDATE THE INFORMED FIELDS OF A BOOK BY ID")
+    @ApiResponses({
+            @ApiResponse(code = 204, message = "Book successfully updated"),
+            @ApiResponse(code = 409, message = "Book version doesn't match")
+    })
+    public void patchBook(@PathVariable Long id, @RequestBody BookPatchDTO bookPatchDTO) {
+        if (!bookService.updatePartially(id, bookPatchDTO)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+    }
+
     @GetMapping
-    @ApiOperation("FIND A BOOK BY ANY PARAM")
-    public Page<BookDTO> find(BookDTO bookDTO, Pageable pageable) {
-        Book filter = modelMapper.map(bookDTO, Book.class);
-        Page<Book> result = bookService.find(filter, pageable);
-        List<BookDTO> list = result.getContent()
-                .stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
-                .collect(Collectors.toList());
-        return new PageImpl<BookDTO>(list, pageable, result.getTotalElements());
+    @ApiOperation("FIND A BOOK BY ANY PARAM, OPTIONALLY ONLY THE COMMA SEPARATED FIELDS")
+    public CompletableFuture<Page<?>> find(BookDTO bookDTO, @RequestParam(required = false) Boolean available,
+                                           @RequestParam(required = false) Set<String> fields, Pageable pageable) {
+        return bulkheads.supply(OperationClass.SEARCH, () -> {
+            if (fields == null) {
+                return bookService.find(bookDTO, available, pageable);
+            }
+            return bookService.find(bookDTO, available, fields, pageable);
+        });
+    }
+
+    @GetMapping("suggest")
+    @ApiOperation("SUGGEST BOOKS WHOSE TITLE OR AUTHOR HAS A WORD STARTING WITH THE TEXT")
+    public List<BookSuggestionDTO> suggest(@RequestParam("q") String prefix,
+                                           @RequestParam(defaultValue = "10") int limit) {
+        return bookService.suggest(prefix, Math.min(Math.max(limit, 1), MAX_SUGGESTIONS));
+    }
+
+    @GetMapping("{id}/availability")
+    @ApiOperation("CHECK IF A BOOK IS AVAILABLE FOR LOAN")
+    public BookAvailabilityDTO availability(@PathVariable Long id) {
+        return bookService.getAvailability(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping("availability")
+    @ApiOperation("COUNT AVAILABLE AND LENT BOOKS")
+    public AvailabilityCountDTO countAvailability() {
+        return bookService.countAvailability();
     }
     
+    @GetMapping("export")
+    @ApiOperation("EXPORT BOOKS AS NDJSON OR CSV")
+    public void export(BookDTO bookDTO, @RequestParam(defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        response.setContentType(exportFormat.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=books." + exportFormat.getExtension());
+        exportService.exportBooks(bookDTO, exportFormat, response.getOutputStream());
+    }
+
     @GetMapping("{id}/loans")
-    @ApiOperation("FIND ALL LOANS FOR A BOOK")
-    public Page<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable) {
-        Book book = bookService.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        Page<Loan> result = loanService.getLoansByBook(book, pageable);
-        List<LoanDTO> list = result.getContent()
-                .stream()
-                .map(loan -> {
-                    Book loanBook = loan.getBook();
-                    BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
-                    LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
-                    loanDTO.setBook(bookDTO);
-                    return loanDTO;
-                }).collect(Collectors.toList());
-
-        return new PageImpl<>(list, pageable, result.getTotalElements());
+    @ApiOperation("FIND ALL LOANS FOR A BOOK, OPTIONALLY ONLY THE COMMA SEPARATED FIELDS")
+    public CompletableFuture<Page<?>> loansByBook(@PathVariable Long id, @RequestParam(required = false) Set<String> fields,
+                                                  Pageable pageable) {
+        return bulkheads.supply(OperationClass.HISTORY, () -> {
+            Book book = bookService.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+            if (fields == null) {
+                return loanService.getLoansByBook(book.getId(), pageable);
+            }
+            return loanService.getLoansByBook(book.getId(), fields, pageable);
+        });
+    }
+
+    // Only JSON responses are cached, clients asking for CBOR or Smile go through the message converters.
+    private boolean prefersJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            MediaType.sortBySpecificityAndQuality(mediaTypes);
+            return mediaTypes.isEmpty() || MediaType.APPLICATION_JSON.isCompatibleWith(mediaTypes.get(0));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private byte[] toJson(Book book) {
+        try {
+            return objectMapper.writeValueAsBytes(modelMapper.map(book, BookDTO.class));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize book " + book.getId(), e);
+        }
     }
 }
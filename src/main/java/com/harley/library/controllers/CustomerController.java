@@ -0,0 +1,61 @@
+package com.harley.library.controllers;
+
+import com.harley.library.concurrency.Bulkheads;
+import com.harley.library.concurrency.OperationClass;
+import com.harley.library.dtos.CustomerDTO;
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.entities.Customer;
+import com.harley.library.services.CustomerService;
+import com.harley.library.services.LoanService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+@RestController
+@RequestMapping("/api/customers")
+@Api("API CUSTOMER")
+@RequiredArgsConstructor
+public class CustomerController {
+
+    private final CustomerService customerService;
+    private final LoanService loanService;
+    private final Bulkheads bulkheads;
+
+    @GetMapping
+    @ApiOperation("FIND A CUSTOMER BY EMAIL")
+    public CustomerDTO findByEmail(@RequestParam String email) {
+        return customerService.getByEmail(email)
+                .map(CustomerController::toDTO)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping("{id}/loans/open")
+    @ApiOperation("LIST THE LOANS A CUSTOMER STILL HAS")
+    public CompletableFuture<Page<LoanDTO>> openLoans(@PathVariable Long id, Pageable pageable) {
+        return loansOf(id, customerId -> loanService.getOpenLoansByCustomer(customerId, pageable));
+    }
+
+    @GetMapping("{id}/loans/past")
+    @ApiOperation("LIST THE LOANS A CUSTOMER RETURNED, ARCHIVED ONES INCLUDED")
+    public CompletableFuture<Page<LoanDTO>> pastLoans(@PathVariable Long id, Pageable pageable) {
+        return loansOf(id, customerId -> loanService.getPastLoansByCustomer(customerId, pageable));
+    }
+
+    private CompletableFuture<Page<LoanDTO>> loansOf(Long id, Function<Long, Page<LoanDTO>> loans) {
+        return bulkheads.supply(OperationClass.HISTORY, () -> customerService.getById(id)
+                .map(customer -> loans.apply(customer.getId()))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+
+    private static CustomerDTO toDTO(Customer customer) {
+        return new CustomerDTO(customer.getId(), customer.getName(), customer.getEmail());
+    }
+}
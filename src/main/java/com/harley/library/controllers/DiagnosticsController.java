@@ -0,0 +1,31 @@
+package com.harley.library.controllers;
+
+import com.harley.library.diagnostics.SlowOperationRecorder;
+import com.harley.library.dtos.SlowOperationDTO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@Api("DIAGNOSTICS API")
+@RequestMapping("/api/diagnostics")
+@ConditionalOnProperty(name = "application.diagnostics.slow-operations.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class DiagnosticsController {
+    private static final int MAX_OPERATIONS = 100;
+
+    private final SlowOperationRecorder slowOperationRecorder;
+
+    @GetMapping("slow-operations")
+    @ApiOperation("LIST THE MOST RECENT OPERATIONS THAT TOOK LONGER THAN THE THRESHOLD, NEWEST FIRST")
+    public List<SlowOperationDTO> slowOperations(@RequestParam(defaultValue = "20") int limit) {
+        return slowOperationRecorder.getRecent(Math.min(Math.max(limit, 1), MAX_OPERATIONS));
+    }
+}
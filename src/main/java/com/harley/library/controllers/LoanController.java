@@ -1,78 +1,104 @@
 package com.harley.library.controllers;
 
-import com.harley.library.dtos.BookDTO;
+import com.harley.library.concurrency.Bulkheads;
+import com.harley.library.concurrency.OperationClass;
 import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.MultiGetDTO;
 import com.harley.library.dtos.ReturnedLoanDTO;
 import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
 import com.harley.library.entities.Loan;
+import com.harley.library.enums.ExportFormat;
 import com.harley.library.services.BookService;
+import com.harley.library.services.ExportService;
 import com.harley.library.services.LoanService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/loans")
 @Api("API LOAN")
 @RequiredArgsConstructor
 public class LoanController {
+    private static final int MAX_BATCH_IDS = 100;
 
     private final LoanService loanService;
     private final BookService bookService;
-    private final ModelMapper modelMapper;
+    private final ExportService exportService;
+    private final Bulkheads bulkheads;
 
 
     @PostMapping
     @ApiOperation("CREATE A LOAN")
     @ResponseStatus(HttpStatus.CREATED)
-    public Long create(@RequestBody LoanDTO loanDTO) {
-        Book book = bookService.getBookByIsbn(loanDTO.getIsbn())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn"));
-        Loan loan = Loan.builder()
-                .book(book)
-                .customer(loanDTO.getCustomer())
-                .date(LocalDate.now())
-                .build();
+    public CompletableFuture<Long> create(@RequestBody LoanDTO loanDTO) {
+        return bulkheads.supply(OperationClass.CHECKOUT, () -> {
+            Book book = bookService.getBookByIsbn(loanDTO.getIsbn())
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn"));
+            Loan loan = Loan.builder()
+                    .book(book)
+                    .customer(Customer.builder().name(loanDTO.getCustomer()).email(loanDTO.getCustomerEmail()).build())
+                    .date(LocalDate.now())
+                    .build();
 
-        loan = loanService.save(loan);
+            loan = loanService.save(loan);
 
-        return loan.getId();
+            return loan.getId();
+        });
     }
 
     @PatchMapping("{id}")
-    @ApiOperation("FIND A LOAN BY ID")
-    public void returnedBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO returnedLoanDTO) {
-        Loan loan = loanService.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        loan.setReturned(returnedLoanDTO.getReturned());
-        loanService.update(loan);
+    @ApiOperation("RETURN A LOAN BY ID")
+    public CompletableFuture<Void> returnedBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO returnedLoanDTO) {
+        return bulkheads.run(OperationClass.CHECKOUT, () -> {
+            if (!loanService.updateReturned(id, returnedLoanDTO.getReturned(), returnedLoanDTO.getVersion())) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+        });
     }
 
     @GetMapping
-    @ApiOperation("FIND A LOAN BY ANY PARAMS")
-    public Page<LoanDTO> find(LoanDTO loanDTO, Pageable pageable) {
-        Page<Loan> result = loanService.find(loanDTO, pageable);
-        List<LoanDTO> list = result.getContent()
-                .stream()
-                .map(entity -> {
-                    Book book = entity.getBook();
-                    BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-                    LoanDTO loanDTO1 = modelMapper.map(entity, LoanDTO.class);
-                    loanDTO1.setBook(bookDTO);
-                    return loanDTO1;
-                }).collect(Collectors.toList());
-        return new PageImpl<>(list, pageable, result.getTotalElements());
+    @ApiOperation("FIND A LOAN BY ANY PARAMS, OPTIONALLY ONLY THE COMMA SEPARATED FIELDS")
+    public CompletableFuture<Page<?>> find(LoanDTO loanDTO, @RequestParam(required = false) Set<String> fields,
+                                           Pageable pageable) {
+        return bulkheads.supply(OperationClass.HISTORY, () -> {
+            if (fields == null) {
+                return loanService.find(loanDTO, pageable);
+            }
+            return loanService.find(loanDTO, fields, pageable);
+        });
     }
 
+    @GetMapping("batch")
+    @ApiOperation("GET THE LOANS WITH THE COMMA SEPARATED IDS, IN THEIR ORDER, AND THE IDS NOT FOUND")
+    public CompletableFuture<MultiGetDTO<LoanDTO>> getLoans(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Inform at most " + MAX_BATCH_IDS + " ids");
+        }
+        return bulkheads.supply(OperationClass.HISTORY, () -> loanService.getByIds(ids));
+    }
+
+    @GetMapping("export")
+    @ApiOperation("EXPORT LOANS AS NDJSON OR CSV")
+    public void export(LoanDTO loanDTO, @RequestParam(defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        response.setContentType(exportFormat.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=loans." + exportFormat.getExtension());
+        exportService.exportLoans(loanDTO, exportFormat, response.getOutputStream());
+    }
 }
@@ -0,0 +1,71 @@
+package com.harley.library.controllers;
+
+import com.harley.library.dtos.BookLoanCountDTO;
+import com.harley.library.dtos.CustomerLoanCountDTO;
+import com.harley.library.dtos.DailyLoanCountDTO;
+import com.harley.library.dtos.LoanSummaryDTO;
+import com.harley.library.services.StatisticsService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/stats")
+@Api("API STATISTICS")
+@RequiredArgsConstructor
+public class StatisticsController {
+    private static final int DEFAULT_DAYS = 30;
+    private static final int MAX_DAYS = 366;
+    private static final int MAX_RANKING = 100;
+
+    private final StatisticsService statisticsService;
+
+    @GetMapping
+    @ApiOperation("COUNT TOTAL, OPEN AND OVERDUE LOANS")
+    public LoanSummaryDTO summary() {
+        return statisticsService.getSummary();
+    }
+
+    @GetMapping("loans-per-day")
+    @ApiOperation("COUNT LOANS PER DAY, THE LAST 30 DAYS BY DEFAULT")
+    public List<DailyLoanCountDTO> loansPerDay(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_DAYS - 1);
+        if (start.isAfter(end) || ChronoUnit.DAYS.between(start, end) >= MAX_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The period must start before it ends and span at most " + MAX_DAYS + " days");
+        }
+        return statisticsService.getLoansPerDay(start, end);
+    }
+
+    @GetMapping("top-books")
+    @ApiOperation("LIST THE MOST BORROWED BOOKS")
+    public List<BookLoanCountDTO> topBooks(@RequestParam(defaultValue = "10") int limit) {
+        return statisticsService.getMostBorrowedBooks(Math.min(Math.max(limit, 1), MAX_RANKING));
+    }
+
+    @GetMapping("top-customers")
+    @ApiOperation("LIST THE CUSTOMERS WITH THE MOST LOANS")
+    public List<CustomerLoanCountDTO> topCustomers(@RequestParam(defaultValue = "10") int limit) {
+        return statisticsService.getMostBorrowingCustomers(Math.min(Math.max(limit, 1), MAX_RANKING));
+    }
+
+    @PostMapping("rebuild")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @ApiOperation("REBUILD THE STATISTICS FROM THE LOAN HISTORY")
+    public void rebuild() {
+        if (!statisticsService.rebuild()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Statistics are already being rebuilt");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.harley.library.diagnostics;
+
+import com.harley.library.dtos.BookDTO;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.StringJoiner;
+
+@Name(BookSearchEvent.NAME)
+@Label("Book Search")
+@Description("A filtered page of books, with the filters that were used but not their values")
+@Category({"Library", "Books"})
+@StackTrace(false)
+public class BookSearchEvent extends Event {
+    public static final String NAME = "com.harley.library.BookSearch";
+
+    @Label("Filter")
+    @Description("The informed filters, like title,available=true")
+    private String filter;
+
+    @Label("Fields")
+    @Description("The requested fields, empty for whole books")
+    private String fields;
+
+    @Label("Page Size")
+    private int pageSize;
+
+    @Label("Rows")
+    private int rows;
+
+    @Label("Total Rows")
+    private long totalRows;
+
+    public void describe(BookDTO filter, Boolean available, Collection<String> fields, Pageable pageable) {
+        // only pay for the strings when the event is recorded
+        if (!isEnabled()) {
+            return;
+        }
+        StringJoiner shape = new StringJoiner(",");
+        if (filter.getTitle() != null) {
+            shape.add("title");
+        }
+        if (filter.getAuthor() != null) {
+            shape.add("author");
+        }
+        if (filter.getIsbn() != null) {
+            shape.add("isbn");
+        }
+        if (available != null) {
+            shape.add("available=" + available);
+        }
+        this.filter = shape.toString();
+        this.fields = fields == null ? "" : String.join(",", fields);
+        this.pageSize = pageable.isPaged() ? pageable.getPageSize() : -1;
+    }
+
+    public void setResult(Page<?> page) {
+        this.rows = page.getNumberOfElements();
+        this.totalRows = page.getTotalElements();
+    }
+}
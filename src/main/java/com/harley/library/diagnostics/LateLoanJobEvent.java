@@ -0,0 +1,25 @@
+package com.harley.library.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+@Name(LateLoanJobEvent.NAME)
+@Label("Late Loan Job")
+@Description("A run of the job reminding customers of their late loans")
+@Category({"Library", "Jobs"})
+@StackTrace(false)
+@Setter
+public class LateLoanJobEvent extends Event {
+    public static final String NAME = "com.harley.library.LateLoanJob";
+
+    @Label("Due Loans")
+    private int dueLoans;
+
+    @Label("Emails")
+    private int emails;
+}
@@ -0,0 +1,28 @@
+package com.harley.library.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+@Name(LoanCheckoutEvent.NAME)
+@Label("Loan Checkout")
+@Description("A book being lent, from reserving it to the saved loan")
+@Category({"Library", "Loans"})
+@StackTrace(false)
+@Setter
+public class LoanCheckoutEvent extends Event {
+    public static final String NAME = "com.harley.library.LoanCheckout";
+
+    @Label("Book Id")
+    private long bookId;
+
+    @Label("Loan Id")
+    private long loanId;
+
+    @Label("Succeeded")
+    private boolean succeeded;
+}
@@ -0,0 +1,28 @@
+package com.harley.library.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+@Name(LoanReturnEvent.NAME)
+@Label("Loan Return")
+@Description("A loan being marked as returned or not returned")
+@Category({"Library", "Loans"})
+@StackTrace(false)
+@Setter
+public class LoanReturnEvent extends Event {
+    public static final String NAME = "com.harley.library.LoanReturn";
+
+    @Label("Loan Id")
+    private long loanId;
+
+    @Label("Returned")
+    private boolean returned;
+
+    @Label("Updated")
+    private boolean updated;
+}
@@ -0,0 +1,25 @@
+package com.harley.library.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+@Name(MailSendEvent.NAME)
+@Label("Mail Send")
+@Description("One message handed to the mail server")
+@Category({"Library", "Mail"})
+@StackTrace(false)
+@Setter
+public class MailSendEvent extends Event {
+    public static final String NAME = "com.harley.library.MailSend";
+
+    @Label("Recipients")
+    private int recipients;
+
+    @Label("Succeeded")
+    private boolean succeeded;
+}
@@ -0,0 +1,92 @@
+package com.harley.library.diagnostics;
+
+import com.harley.library.dtos.SlowOperationDTO;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Name;
+import jdk.jfr.ValueDescriptor;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams the library's flight recorder events in-process and keeps the most recent ones that took longer than the
+ * threshold. Only events over the threshold are recorded, so the stream costs nothing on fast operations; recordings
+ * started with jcmd or JMC see every event regardless of this one.
+ */
+public class SlowOperationRecorder implements AutoCloseable {
+
+    public static final List<Class<? extends Event>> EVENTS = List.of(LoanCheckoutEvent.class, LoanReturnEvent.class,
+            BookSearchEvent.class, LateLoanJobEvent.class, MailSendEvent.class);
+    private static final Set<String> COMMON_FIELDS = Set.of("startTime", "duration", "eventThread", "stackTrace");
+
+    private final int capacity;
+    private final RecordingStream stream;
+    // newest first; guarded by itself
+    private final Deque<SlowOperationDTO> recent = new ArrayDeque<>();
+
+    public SlowOperationRecorder(Duration threshold, int capacity) {
+        this.capacity = capacity;
+        this.stream = new RecordingStream();
+        for (Class<? extends Event> eventType : EVENTS) {
+            FlightRecorder.register(eventType);
+            String name = eventType.getAnnotation(Name.class).value();
+            stream.enable(name).withThreshold(threshold).withoutStackTrace();
+            stream.onEvent(name, this::record);
+        }
+        stream.setMaxAge(Duration.ofMinutes(1));
+    }
+
+    public void start() {
+        stream.startAsync();
+    }
+
+    public List<SlowOperationDTO> getRecent(int limit) {
+        synchronized (recent) {
+            List<SlowOperationDTO> operations = new ArrayList<>(Math.min(limit, recent.size()));
+            Iterator<SlowOperationDTO> iterator = recent.iterator();
+            while (iterator.hasNext() && operations.size() < limit) {
+                operations.add(iterator.next());
+            }
+            return operations;
+        }
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    private void record(RecordedEvent event) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        for (ValueDescriptor field : event.getFields()) {
+            if (!COMMON_FIELDS.contains(field.getName())) {
+                details.put(field.getName(), event.getValue(field.getName()));
+            }
+        }
+        RecordedThread thread = event.getThread();
+        SlowOperationDTO operation = SlowOperationDTO.builder()
+                .operation(event.getEventType().getLabel())
+                .startTime(event.getStartTime())
+                .durationMillis(event.getDuration().toNanos() / 1_000_000.0)
+                .thread(thread == null ? null : thread.getJavaName())
+                .details(details)
+                .build();
+        synchronized (recent) {
+            recent.addFirst(operation);
+            if (recent.size() > capacity) {
+                recent.removeLast();
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.harley.library.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookLoanCountDTO {
+
+    private Long bookId;
+    private Long loans;
+}
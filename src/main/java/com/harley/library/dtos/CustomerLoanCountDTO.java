@@ -0,0 +1,17 @@
+package com.harley.library.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CustomerLoanCountDTO {
+
+    private Long customerId;
+    private String customer;
+    private Long loans;
+}
@@ -0,0 +1,14 @@
+package com.harley.library.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IsbnKeyDTO {
+
+    private Long isbnKey;
+    private Long bookId;
+}
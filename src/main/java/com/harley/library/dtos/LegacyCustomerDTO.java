@@ -0,0 +1,15 @@
+package com.harley.library.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LegacyCustomerDTO {
+
+    private Long loanId;
+    private String customer;
+    private String customerEmail;
+}
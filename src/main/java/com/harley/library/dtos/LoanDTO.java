@@ -18,5 +18,15 @@ public class LoanDTO {
     @NotEmpty private String customer;
     @NotEmpty private String customerEmail;
     private BookDTO book;
+    // sent back on PATCH /api/loans/{id} to only change the loan if nobody changed it since; null once archived
+    private Long version;
 
+    public LoanDTO(Long id, String customer, String customerEmail, Long bookId, String title, String author, String isbn) {
+        this(id, customer, customerEmail, bookId, title, author, isbn, null);
+    }
+
+    public LoanDTO(Long id, String customer, String customerEmail, Long bookId, String title, String author, String isbn,
+                   Long version) {
+        this(id, isbn, customer, customerEmail, new BookDTO(bookId, title, author, isbn, null), version);
+    }
 }
@@ -0,0 +1,24 @@
+package com.harley.library.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanExportDTO {
+
+    private Long id;
+    private Long bookId;
+    private String isbn;
+    private Long customerId;
+    private String customer;
+    private String customerEmail;
+    private LocalDate date;
+    private Boolean returned;
+}
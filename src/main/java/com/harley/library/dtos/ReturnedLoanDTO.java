@@ -12,4 +12,5 @@ import lombok.NoArgsConstructor;
 public class ReturnedLoanDTO {
 
     private Boolean returned;
+    private Long version;
 }
@@ -0,0 +1,22 @@
+package com.harley.library.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SlowOperationDTO {
+
+    private String operation;
+    private Instant startTime;
+    private double durationMillis;
+    private String thread;
+    private Map<String, Object> details;
+}
@@ -1,5 +1,6 @@
 package com.harley.library.entities;
 
+import com.harley.library.indexes.IsbnKeys;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -9,7 +10,7 @@ import javax.persistence.*;
 import java.util.List;
 
 @Entity
-@Table(name = "book")
+@Table(name = "book", indexes = @Index(name = "idx_book_isbn_key", columnList = "isbn_key"))
 @Data
 @Builder
 @NoArgsConstructor
@@ -30,7 +31,19 @@ public class Book {
     @Column
     private String isbn;
 
+    @Column(name = "isbn_key")
+    private Long isbnKey;
+
+    @Version
+    @Column
+    private Long version;
+
     @OneToMany(mappedBy = "book", fetch = FetchType.LAZY)
     private List<Loan> loans;
 
+    @PrePersist
+    @PreUpdate
+    void computeIsbnKey() {
+        isbnKey = IsbnKeys.toKey(isbn);
+    }
 }
@@ -0,0 +1,33 @@
+package com.harley.library.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * One update or delete of a book, appended in the same transaction as the change. Every instance tails this table to
+ * evict the book from its cache.
+ */
+@Entity
+@Table(name = "book_change", indexes = @Index(name = "idx_book_change_changed_at", columnList = "changed_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChange {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+}
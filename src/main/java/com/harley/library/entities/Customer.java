@@ -0,0 +1,33 @@
+package com.harley.library.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * Who borrows books, identified by the email. Loans reference it instead of repeating the name and email on every row.
+ */
+@Entity
+@Table(name = "customer", indexes = {
+        @Index(name = "uk_customer_email", columnList = "email", unique = true),
+        @Index(name = "idx_customer_name", columnList = "name")})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Customer {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 100)
+    private String name;
+
+    @Column(length = 100)
+    private String email;
+}
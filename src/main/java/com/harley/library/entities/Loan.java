@@ -9,7 +9,10 @@ import javax.persistence.*;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "loan")
+@Table(name = "loan", indexes = {
+        @Index(name = "idx_loan_next_reminder", columnList = "next_reminder"),
+        @Index(name = "idx_loan_book", columnList = "id_book, returned"),
+        @Index(name = "idx_loan_customer", columnList = "customer_id, returned")})
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,11 +24,16 @@ public class Loan {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(length = 100)
-    private String customer;
+    @JoinColumn(name = "customer_id")
+    @ManyToOne
+    private Customer customer;
+
+    // the free-text customer of loans taken before customers had their own table, cleared once migrated
+    @Column(name = "customer", length = 100)
+    private String legacyCustomer;
 
     @Column(name = "customer_email", length = 100)
-    private String customerEmail;
+    private String legacyCustomerEmail;
 
     @JoinColumn(name = "id_book")
     @ManyToOne
@@ -36,4 +44,18 @@ public class Loan {
 
     @Column
     private Boolean returned;
+
+    @Column(name = "next_reminder")
+    private LocalDate nextReminder;
+
+    @Column(name = "last_notified")
+    private LocalDate lastNotified;
+
+    @Builder.Default
+    @Column(name = "reminder_count")
+    private Integer reminderCount = 0;
+
+    @Version
+    @Column
+    private Long version;
 }
@@ -0,0 +1,50 @@
+package com.harley.library.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * A returned loan moved out of the loan table once it got old, keeping the id it had there. It references its book by
+ * id only, so archived history doesn't stop a book from being deleted, and its customer the same way.
+ */
+@Entity
+@Table(name = "loan_archive", indexes = {
+        @Index(name = "idx_loan_archive_book", columnList = "book_id"),
+        @Index(name = "idx_loan_archive_customer", columnList = "customer_id")})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanArchive {
+
+    @Id
+    @Column
+    private Long id;
+
+    @Column(name = "customer_id")
+    private Long customerId;
+
+    // see Loan#legacyCustomer
+    @Column(name = "customer", length = 100)
+    private String legacyCustomer;
+
+    @Column(name = "customer_email", length = 100)
+    private String legacyCustomerEmail;
+
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Column
+    private LocalDate date;
+
+    @Column(name = "last_notified")
+    private LocalDate lastNotified;
+
+    @Column(name = "reminder_count")
+    private Integer reminderCount;
+}
@@ -0,0 +1,272 @@
+package com.harley.library.eventlog;
+
+import com.harley.library.events.LoanEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of loan events kept in fixed size segment files that are written through a memory mapping.
+ * <p>
+ * A record is {@code [length][crc32c][type][loanId][bookId][customerId][timestamp][customerLength][customer]}. Appends only
+ * copy into the mapping; the pages are forced to disk once {@code syncEvery} events are pending or every
+ * {@code syncIntervalMillis}, whichever comes first, so a crash loses at most that window. When a record
+ * doesn't fit in the active segment a new one is started. On open, the tail of the last segment is scanned and
+ * a torn record left by a crash is discarded.
+ */
+public class LoanEventLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 8;
+    private static final int FIXED_PAYLOAD_SIZE = 1 + 8 + 8 + 8 + 8 + 2;
+    private static final LoanEvent.Type[] TYPES = LoanEvent.Type.values();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int syncEvery;
+    private final List<Path> segments = new ArrayList<>();
+    private final CRC32C appendChecksum = new CRC32C();
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final ScheduledExecutorService syncer;
+    private MappedByteBuffer active;
+    private int unsynced;
+    private boolean closed;
+
+    public LoanEventLog(Path directory, int segmentSize, int syncEvery, long syncIntervalMillis) throws IOException {
+        if (segmentSize < HEADER_SIZE + FIXED_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncEvery = Math.max(1, syncEvery);
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            segments.addAll(files
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList()));
+        }
+        if (segments.isEmpty()) {
+            segments.add(segmentPath(0));
+        }
+        active = recover(segments.get(segments.size() - 1));
+
+        if (syncIntervalMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "loan-event-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    public void append(LoanEvent event) {
+        byte[] customer = event.getCustomer() == null ? null : event.getCustomer().getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_PAYLOAD_SIZE + (customer == null ? 0 : customer.length);
+        if (HEADER_SIZE + length > segmentSize || (customer != null && customer.length > Short.MAX_VALUE)) {
+            throw new IllegalArgumentException("Loan event doesn't fit in a segment");
+        }
+
+        boolean syncNow;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Loan event log is closed");
+            }
+            if (active.remaining() < HEADER_SIZE + length) {
+                roll();
+            }
+            int start = active.position();
+            active.position(start + HEADER_SIZE);
+            active.put((byte) event.getType().ordinal())
+                    .putLong(event.getLoanId())
+                    .putLong(event.getBookId())
+                    .putLong(event.getCustomerId() == null ? 0 : event.getCustomerId())
+                    .putLong(event.getTimestamp())
+                    .putShort((short) (customer == null ? -1 : customer.length));
+            if (customer != null) {
+                active.put(customer);
+            }
+            appendChecksum.reset();
+            appendChecksum.update(active.slice(start + HEADER_SIZE, length));
+            active.putInt(start + 4, (int) appendChecksum.getValue());
+            // the length goes last: a record is visible to a reader only once it is complete
+            active.putInt(start, length);
+            appended.increment();
+            syncNow = ++unsynced >= syncEvery;
+        }
+        if (syncNow) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces the pending appends to disk. The force runs outside the lock, so appends keep going meanwhile and
+     * are picked up by the next sync.
+     */
+    public void sync() {
+        MappedByteBuffer buffer;
+        synchronized (this) {
+            if (unsynced == 0 || closed) {
+                return;
+            }
+            unsynced = 0;
+            buffer = active;
+        }
+        buffer.force();
+        syncs.increment();
+    }
+
+    /**
+     * Reads every event written so far, oldest first, and returns how many were read. Events appended while the
+     * replay runs are not included.
+     */
+    public long replay(Consumer<LoanEvent> consumer) throws IOException {
+        List<Path> snapshot;
+        int activeEnd;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments);
+            activeEnd = active.position();
+        }
+        long[] count = new long[1];
+        Consumer<LoanEvent> counting = event -> {
+            consumer.accept(event);
+            count[0]++;
+        };
+        CRC32C checksum = new CRC32C();
+        for (int i = 0; i < snapshot.size(); i++) {
+            try (FileChannel channel = FileChannel.open(snapshot.get(i), StandardOpenOption.READ)) {
+                long size = i == snapshot.size() - 1 ? activeEnd : channel.size();
+                read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), checksum, counting);
+            }
+        }
+        return count[0];
+    }
+
+    public long getAppended() {
+        return appended.sum();
+    }
+
+    public long getSyncs() {
+        return syncs.sum();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        synchronized (this) {
+            if (!closed) {
+                active.force();
+                closed = true;
+            }
+        }
+    }
+
+    private void roll() {
+        active.force();
+        Path next = segmentPath(segmentIndex(segments.get(segments.size() - 1)) + 1);
+        try {
+            active = map(next, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't start loan event segment " + next, e);
+        }
+        segments.add(next);
+        unsynced = 0;
+    }
+
+    private MappedByteBuffer recover(Path segment) throws IOException {
+        long existing = Files.exists(segment) ? Files.size(segment) : 0;
+        MappedByteBuffer buffer = map(segment, (int) Math.max(existing, segmentSize));
+        int end = read(buffer, new CRC32C(), event -> { });
+        if (buffer.capacity() - end >= 4 && buffer.getInt(end) != 0) {
+            byte[] zeros = new byte[4096];
+            for (int position = end; position < buffer.capacity(); position += zeros.length) {
+                buffer.put(position, zeros, 0, Math.min(zeros.length, buffer.capacity() - position));
+            }
+            buffer.force();
+        }
+        buffer.position(end);
+        return buffer;
+    }
+
+    private MappedByteBuffer map(Path segment, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    // Returns the position right after the last complete record.
+    private static int read(ByteBuffer buffer, CRC32C checksum, Consumer<LoanEvent> consumer) {
+        ByteBuffer payload = buffer.duplicate();
+        int position = 0;
+        while (buffer.limit() - position >= HEADER_SIZE) {
+            int length = buffer.getInt(position);
+            int start = position + HEADER_SIZE;
+            if (length < FIXED_PAYLOAD_SIZE || length > buffer.limit() - start) {
+                break;
+            }
+            payload.limit(start + length).position(start);
+            checksum.reset();
+            checksum.update(payload);
+            if ((int) checksum.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            consumer.accept(decode(buffer, start));
+            position = start + length;
+        }
+        return position;
+    }
+
+    private static LoanEvent decode(ByteBuffer buffer, int start) {
+        short customerLength = buffer.getShort(start + 33);
+        String customer = null;
+        if (customerLength >= 0) {
+            byte[] bytes = new byte[customerLength];
+            buffer.get(start + 35, bytes);
+            customer = new String(bytes, StandardCharsets.UTF_8);
+        }
+        long customerId = buffer.getLong(start + 17);
+        return new LoanEvent(TYPES[buffer.get(start)], buffer.getLong(start + 1), buffer.getLong(start + 9),
+                customerId == 0 ? null : customerId, customer, buffer.getLong(start + 25));
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentIndex(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,19 @@
+package com.harley.library.eventlog;
+
+import com.harley.library.events.LoanEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Appends every committed loan event to the log.
+ */
+@RequiredArgsConstructor
+public class LoanEventRecorder {
+
+    private final LoanEventLog loanEventLog;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoanEvent(LoanEvent event) {
+        loanEventLog.append(event);
+    }
+}
@@ -0,0 +1,223 @@
+package com.harley.library.events;
+
+import com.harley.library.dtos.BookAvailabilityDTO;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Pushes book availability changes to server-sent event subscribers. Publishing never waits on a client: each
+ * subscriber keeps the latest availability of each of its books not sent yet, drained by a shared sender executor
+ * one write per task, so a subscriber never holds a sender thread for more than a single write. A subscriber is
+ * disconnected once more changes than the buffer size arrive between two of its successful writes, or once it has
+ * had changes waiting longer than the send timeout, and gets the current state again when it reconnects.
+ */
+public class AvailabilityBroadcaster {
+
+    public static final String EVENT_NAME = "availability";
+
+    private final Executor sender;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final int maxSubscribers;
+    private final Map<Long, Set<Subscription>> subscriptionsByBook = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+
+    public AvailabilityBroadcaster(Executor sender, int bufferSize, long timeoutMillis, long sendTimeoutMillis,
+                                   int maxSubscribers) {
+        this.sender = sender;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * Subscribes to the books and sends their current availability first. The current availability is read only once
+     * the subscription receives changes, so a change made meanwhile is not lost; a change published while it is read
+     * wins over what was read. Empty when the subscriber limit is reached.
+     */
+    public Optional<SseEmitter> subscribe(Collection<Long> bookIds, Function<Long, Optional<BookAvailabilityDTO>> current) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return Optional.empty();
+        }
+        Subscription subscription = new Subscription(new SseEmitter(timeoutMillis), Set.copyOf(bookIds));
+        subscription.emitter.onCompletion(subscription::close);
+        subscription.emitter.onTimeout(subscription::close);
+        subscription.emitter.onError(error -> subscription.close());
+        for (Long bookId : subscription.bookIds) {
+            subscriptionsByBook.computeIfAbsent(bookId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        }
+        for (Long bookId : bookIds) {
+            current.apply(bookId).ifPresent(availability ->
+                    subscription.offer(availability.getBookId(), availability.getAvailable(), true));
+        }
+        return Optional.of(subscription.emitter);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoanEvent(LoanEvent event) {
+        publish(event.getBookId(), event.getType() == LoanEvent.Type.RETURNED);
+    }
+
+    public void publish(long bookId, boolean available) {
+        Set<Subscription> subscriptions = subscriptionsByBook.get(bookId);
+        if (subscriptions != null) {
+            subscriptions.forEach(subscription -> subscription.offer(bookId, available, false));
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getOverflowed() {
+        return overflowed.get();
+    }
+
+    private class Subscription {
+
+        private final SseEmitter emitter;
+        private final Set<Long> bookIds;
+        // latest availability per book not sent yet, in the order the books changed; guarded by this
+        private final LinkedHashMap<Long, Boolean> pending = new LinkedHashMap<>();
+        // books with a published change, newer than any current availability read at subscription; guarded by this
+        private final Set<Long> changed = new HashSet<>();
+        // changes offered since the last successful write, counting the coalesced ones; guarded by this
+        private int unsent;
+        // when the last write succeeded, or the first change after it arrived; guarded by this
+        private long lastProgress;
+        private boolean draining;
+        private boolean sending;
+        private boolean completeAfterSend;
+        private boolean closed;
+
+        Subscription(SseEmitter emitter, Set<Long> bookIds) {
+            this.emitter = emitter;
+            this.bookIds = bookIds;
+        }
+
+        void offer(long bookId, boolean available, boolean current) {
+            boolean overflow;
+            boolean complete = false;
+            synchronized (this) {
+                if (closed || (current && changed.contains(bookId))) {
+                    return;
+                }
+                if (!current) {
+                    changed.add(bookId);
+                }
+                long now = System.nanoTime();
+                if (unsent == 0) {
+                    lastProgress = now;
+                }
+                unsent++;
+                pending.remove(bookId);
+                pending.put(bookId, available);
+                overflow = unsent > bufferSize || now - lastProgress > sendTimeoutNanos;
+                if (overflow) {
+                    // a write in progress may be blocked on the client, so the sender completes the emitter after it
+                    complete = !sending;
+                    completeAfterSend = sending;
+                } else {
+                    if (draining) {
+                        return;
+                    }
+                    draining = true;
+                }
+            }
+            if (overflow) {
+                overflowed.incrementAndGet();
+                close();
+                if (complete) {
+                    emitter.complete();
+                }
+                return;
+            }
+            sender.execute(this::drain);
+        }
+
+        private void drain() {
+            BookAvailabilityDTO next;
+            synchronized (this) {
+                Iterator<Map.Entry<Long, Boolean>> iterator = pending.entrySet().iterator();
+                if (closed || !iterator.hasNext()) {
+                    draining = false;
+                    return;
+                }
+                Map.Entry<Long, Boolean> entry = iterator.next();
+                iterator.remove();
+                next = new BookAvailabilityDTO(entry.getKey(), entry.getValue());
+                sending = true;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(EVENT_NAME).data(next, MediaType.APPLICATION_JSON));
+                sent.incrementAndGet();
+            } catch (IOException | IllegalStateException e) {
+                synchronized (this) {
+                    sending = false;
+                    draining = false;
+                }
+                emitter.completeWithError(e);
+                close();
+                return;
+            }
+            boolean complete;
+            boolean more;
+            synchronized (this) {
+                sending = false;
+                unsent = pending.size();
+                lastProgress = System.nanoTime();
+                complete = completeAfterSend;
+                more = !closed && !pending.isEmpty();
+                draining = more;
+            }
+            if (complete) {
+                emitter.complete();
+            } else if (more) {
+                // the next write goes behind the other subscribers' ones
+                sender.execute(this::drain);
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pending.clear();
+            }
+            subscribers.decrementAndGet();
+            for (Long bookId : bookIds) {
+                subscriptionsByBook.computeIfPresent(bookId, (id, subscriptions) -> {
+                    subscriptions.remove(this);
+                    return subscriptions.isEmpty() ? null : subscriptions;
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.harley.library.events;
+
+import lombok.Value;
+
+/**
+ * Published after a book is checked out, returned, or its return is undone. It is also the record kept in the loan
+ * event log.
+ */
+@Value
+public class LoanEvent {
+
+    // the log stores the ordinal, so new types only go at the end
+    public enum Type {
+        CHECKED_OUT, RETURNED, REOPENED
+    }
+
+    Type type;
+    long loanId;
+    long bookId;
+    Long customerId;
+    String customer;
+    long timestamp;
+
+    public static LoanEvent checkedOut(long loanId, long bookId, Long customerId, String customer) {
+        return new LoanEvent(Type.CHECKED_OUT, loanId, bookId, customerId, customer, System.currentTimeMillis());
+    }
+
+    public static LoanEvent returned(long loanId, long bookId, Long customerId, String customer) {
+        return new LoanEvent(Type.RETURNED, loanId, bookId, customerId, customer, System.currentTimeMillis());
+    }
+
+    public static LoanEvent reopened(long loanId, long bookId, Long customerId, String customer) {
+        return new LoanEvent(Type.REOPENED, loanId, bookId, customerId, customer, System.currentTimeMillis());
+    }
+}
@@ -22,6 +22,10 @@ public class ApiErrors {
         this.errors = Arrays.asList(exception.getMessage());
     }
 
+    public ApiErrors(String message) {
+        this.errors = Arrays.asList(message);
+    }
+
     public ApiErrors(ResponseStatusException exception) {
         this.errors = Arrays.asList(exception.getReason());
     }
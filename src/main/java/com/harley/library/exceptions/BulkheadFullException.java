@@ -0,0 +1,14 @@
+package com.harley.library.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class BulkheadFullException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public BulkheadFullException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,260 @@
+package com.harley.library.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harley.library.exceptions.ApiErrors;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Replays the stored response to a POST retried with the same Idempotency-Key, without running it again. Responses
+ * are stored per method, path and key unless they are server errors, which the retry should get a chance to fix.
+ * A retry arriving while the first request still runs gets 409, and a key reused with another body gets 422. A key
+ * is held for at most the in-flight timeout, so a request whose completion never reaches the filter can't lock it out.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String PENDING = IdempotencyFilter.class.getName() + ".PENDING";
+
+    private final Cache<String, StoredResponse> responses;
+    private final ObjectMapper objectMapper;
+    private final int maxStoredBodyBytes;
+    private final ConcurrentMap<String, Pending> inFlight;
+
+    public IdempotencyFilter(Cache<String, StoredResponse> responses, ObjectMapper objectMapper,
+                             int maxStoredBodyBytes, Duration inFlightTimeout) {
+        this.responses = responses;
+        this.objectMapper = objectMapper;
+        this.maxStoredBodyBytes = maxStoredBodyBytes;
+        this.inFlight = Caffeine.newBuilder().expireAfterWrite(inFlightTimeout).<String, Pending>build().asMap();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    // the response of an asynchronous request is only complete after its last dispatch
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    // a request that failed asynchronously ends with an error dispatch instead of an async one
+    @Override
+    protected boolean shouldNotFilterErrorDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (request.getDispatcherType() == DispatcherType.ERROR) {
+            release(request);
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (isAsyncDispatch(request)) {
+            try {
+                filterChain.doFilter(request, response);
+                if (!isAsyncStarted(request)) {
+                    complete(request, response);
+                }
+            } finally {
+                if (!isAsyncStarted(request)) {
+                    release(request);
+                }
+            }
+            return;
+        }
+
+        String idempotencyKey = request.getHeader(HEADER);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, HEADER + " must have between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        byte[] digest = digest(body);
+        String key = request.getMethod() + ' ' + request.getRequestURI() + ' ' + idempotencyKey;
+
+        if (replay(responses.getIfPresent(key), digest, response)) {
+            return;
+        }
+        Pending pending = new Pending(key, digest);
+        if (inFlight.putIfAbsent(key, pending) != null) {
+            reject(response, HttpStatus.CONFLICT, "A request with this " + HEADER + " is still being processed");
+            return;
+        }
+        request.setAttribute(PENDING, pending);
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        try {
+            // the first request may have finished between the lookup and taking the key
+            if (replay(responses.getIfPresent(key), digest, response)) {
+                return;
+            }
+            filterChain.doFilter(new BufferedRequest(request, body), responseWrapper);
+            if (!isAsyncStarted(request)) {
+                complete(request, responseWrapper);
+            }
+        } finally {
+            if (!isAsyncStarted(request)) {
+                release(request);
+            }
+        }
+    }
+
+    private void complete(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Pending pending = (Pending) request.getAttribute(PENDING);
+        ContentCachingResponseWrapper responseWrapper =
+                WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        int status = responseWrapper.getStatus();
+        if (status < 500 && responseWrapper.getContentSize() <= maxStoredBodyBytes) {
+            responses.put(pending.getKey(), new StoredResponse(status, responseWrapper.getContentType(),
+                    responseWrapper.getHeader(HttpHeaders.LOCATION), responseWrapper.getContentAsByteArray(),
+                    pending.getDigest()));
+        }
+        responseWrapper.copyBodyToResponse();
+    }
+
+    // Only frees the key if this request still holds it: after a timeout it may belong to a retry.
+    private void release(HttpServletRequest request) {
+        Pending pending = (Pending) request.getAttribute(PENDING);
+        if (pending != null) {
+            request.removeAttribute(PENDING);
+            inFlight.remove(pending.getKey(), pending);
+        }
+    }
+
+    private boolean replay(StoredResponse stored, byte[] digest, HttpServletResponse response) throws IOException {
+        if (stored == null) {
+            return false;
+        }
+        if (!MessageDigest.isEqual(stored.getRequestDigest(), digest)) {
+            reject(response, HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " was already used for a different request");
+            return true;
+        }
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        if (stored.getLocation() != null) {
+            response.setHeader(HttpHeaders.LOCATION, stored.getLocation());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+        return true;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ApiErrors(message));
+    }
+
+    private static byte[] digest(byte[] body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // compared by identity, so a request can only release its own hold on a key
+    @Getter
+    @RequiredArgsConstructor
+    private static class Pending {
+        private final String key;
+        private final byte[] digest;
+    }
+
+    // The body was read to be digested, so the controller reads this copy of it.
+    private static class BufferedRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        BufferedRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // the whole body is already in memory, so the listener can read it at once
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+}
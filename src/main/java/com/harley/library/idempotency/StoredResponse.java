@@ -0,0 +1,17 @@
+package com.harley.library.idempotency;
+
+import lombok.Value;
+
+/**
+ * The response to a request sent with an Idempotency-Key, replayed to the retries of that request.
+ */
+@Value
+public class StoredResponse {
+
+    int status;
+    String contentType;
+    String location;
+    byte[] body;
+    // digest of the request body, so a key reused for a different request is refused instead of replayed
+    byte[] requestDigest;
+}
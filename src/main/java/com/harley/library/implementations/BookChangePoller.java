@@ -0,0 +1,111 @@
+package com.harley.library.implementations;
+
+import com.harley.library.cache.BookCache;
+import com.harley.library.entities.BookChange;
+import com.harley.library.respositories.BookChangeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tails the book change table and evicts the changed books from this instance's cache, so an update or delete made on
+ * any instance reaches every cache within about one poll interval. The propagation delay is measured as the time
+ * from the change being written to its eviction here.
+ */
+@Service
+@Lazy(false)
+@ConditionalOnProperty(name = "application.book-cache.change-feed.enabled", havingValue = "true", matchIfMissing = true)
+public class BookChangePoller {
+
+    private final BookChangeRepository bookChangeRepository;
+    private final BookCache bookCache;
+    private final Timer propagationDelay;
+    private final int batchSize;
+    private final Duration gapTimeout;
+    private final Duration retention;
+    // every change up to this id was applied
+    private long lastSeenId;
+    // the ids past lastSeenId already applied while an earlier id isn't visible yet, at most one batch of them
+    private final Set<Long> appliedPastGap = new HashSet<>();
+
+    public BookChangePoller(BookChangeRepository bookChangeRepository, BookCache bookCache, MeterRegistry registry,
+                            @Value("${application.book-cache.change-feed.batch-size:500}") int batchSize,
+                            @Value("${application.book-cache.change-feed.gap-timeout-ms:10000}") long gapTimeoutMillis,
+                            @Value("${application.book-cache.change-feed.retention-minutes:60}") long retentionMinutes) {
+        this.bookChangeRepository = bookChangeRepository;
+        this.bookCache = bookCache;
+        this.batchSize = batchSize;
+        this.gapTimeout = Duration.ofMillis(gapTimeoutMillis);
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.propagationDelay = Timer.builder("library.books.change-feed.delay")
+                .description("Time from a book change being written to its eviction from this instance's cache")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        // the cache starts empty, so the changes made before this instance started don't matter
+        this.lastSeenId = bookChangeRepository.findLastId();
+    }
+
+    @Scheduled(fixedDelayString = "${application.book-cache.change-feed.poll-interval-ms:1000}")
+    public synchronized void pollChanges() {
+        long before;
+        do {
+            before = lastSeenId;
+            // a full batch that moved the feed forward means more changes are waiting
+        } while (poll() == batchSize && lastSeenId > before);
+    }
+
+    /**
+     * Applies the next batch of changes and returns how many rows were read.
+     */
+    public synchronized int poll() {
+        List<BookChange> changes = bookChangeRepository.findAfter(lastSeenId, PageRequest.of(0, batchSize));
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        Instant now = Instant.now();
+        long contiguousId = lastSeenId;
+        Instant firstAfterGap = null;
+        for (BookChange change : changes) {
+            // a change committed late sorts before ones already applied, so each id is checked on its own
+            if (appliedPastGap.add(change.getId())) {
+                bookCache.evict(change.getBookId());
+                Duration delay = Duration.between(change.getChangedAt(), now);
+                propagationDelay.record(delay.isNegative() ? Duration.ZERO : delay);
+            }
+            if (firstAfterGap == null) {
+                if (change.getId() == contiguousId + 1) {
+                    contiguousId = change.getId();
+                } else {
+                    firstAfterGap = change.getChangedAt();
+                }
+            }
+        }
+        long lastId = changes.get(changes.size() - 1).getId();
+        // A missing id may belong to a transaction that commits later than the ones after it, so it is waited for
+        // a while before moving past it; a rolled back change never shows up.
+        boolean waitForGap = firstAfterGap != null && Duration.between(firstAfterGap, now).compareTo(gapTimeout) < 0;
+        lastSeenId = waitForGap ? contiguousId : lastId;
+        appliedPastGap.removeIf(id -> id <= lastSeenId);
+        return changes.size();
+    }
+
+    @Scheduled(fixedDelayString = "${application.book-cache.change-feed.prune-interval-ms:600000}")
+    public void pruneChanges() {
+        bookChangeRepository.deleteChangedBefore(Instant.now().minus(retention));
+    }
+
+    public synchronized long getLastSeenId() {
+        return lastSeenId;
+    }
+}
@@ -1,67 +1,305 @@
 package com.harley.library.implementations;
 
+import com.harley.library.cache.BookCache;
+import com.harley.library.concurrency.SingleFlight;
+import com.harley.library.diagnostics.BookSearchEvent;
+import com.harley.library.dtos.AvailabilityCountDTO;
+import com.harley.library.dtos.BookAvailabilityDTO;
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.BookPatchDTO;
+import com.harley.library.dtos.BookSuggestionDTO;
+import com.harley.library.dtos.MultiGetDTO;
 import com.harley.library.entities.Book;
+import com.harley.library.entities.BookChange;
 import com.harley.library.exceptions.BusinessException;
+import com.harley.library.indexes.BookAvailabilityIndex;
+import com.harley.library.indexes.BookSuggestIndex;
+import com.harley.library.indexes.IsbnIndex;
+import com.harley.library.indexes.IsbnKeys;
+import com.harley.library.respositories.BookChangeRepository;
+import com.harley.library.respositories.BookFieldsRepository;
 import com.harley.library.respositories.BookRepository;
 import com.harley.library.services.BookService;
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
-public class BookServiceImp implements BookService {
+public class BookServiceImp implements BookService, MeterBinder {
 
     private BookRepository bookRepository;
+    private final BookChangeRepository bookChangeRepository;
+    private final BookCache bookCache;
+    private final BookAvailabilityIndex availabilityIndex;
+    private final BookSuggestIndex suggestIndex;
+    private final IsbnIndex isbnIndex;
+    private final SingleFlight<Long, Optional<Book>> lookupsById = new SingleFlight<>(BookServiceImp::copyOf);
+    private final SingleFlight<String, Optional<Book>> lookupsByIsbn = new SingleFlight<>(BookServiceImp::copyOf);
+    private final SingleFlight<Long, Optional<Book>> lookupsByIsbnKey = new SingleFlight<>(BookServiceImp::copyOf);
 
-    public BookServiceImp(BookRepository bookRepository) {
+    public BookServiceImp(BookRepository bookRepository, BookChangeRepository bookChangeRepository, BookCache bookCache,
+                          BookAvailabilityIndex availabilityIndex, BookSuggestIndex suggestIndex, IsbnIndex isbnIndex) {
         this.bookRepository = bookRepository;
+        this.bookChangeRepository = bookChangeRepository;
+        this.bookCache = bookCache;
+        this.availabilityIndex = availabilityIndex;
+        this.suggestIndex = suggestIndex;
+        this.isbnIndex = isbnIndex;
     }
 
     @Override
     public Book save(Book book) {
-        if (bookRepository.existsByIsbn(book.getIsbn())) {
+        Long isbnKey = IsbnKeys.toKey(book.getIsbn());
+        boolean registered = isbnKey != null
+                ? isbnIndex.get(isbnKey) != IsbnIndex.MISSING || bookRepository.existsByIsbnKey(isbnKey)
+                : bookRepository.existsByIsbn(book.getIsbn());
+        if (registered) {
             throw new BusinessException("Isbn already registered");
         }
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        availabilityIndex.addBook(savedBook.getId());
+        indexIsbn(savedBook);
+        suggestIndex.put(savedBook.getId(), savedBook.getTitle(), savedBook.getAuthor());
+        return savedBook;
     }
 
     @Override
     public Optional<Book> getById(Long id) {
-        return bookRepository.findById(id);
+        if (id == null) {
+            return bookRepository.findById(id);
+        }
+        Book cached = bookCache.get(id);
+        if (cached != null) {
+            return copyOf(Optional.of(cached));
+        }
+        // only the caller running the load caches it, with the stamp taken before that load started: a caller that
+        // joins a load started before an eviction would otherwise keep the old book
+        return lookupsById.execute(id, () -> {
+            long stamp = bookCache.stamp();
+            Optional<Book> book = bookRepository.findById(id);
+            copyOf(book).ifPresent(copy -> bookCache.put(copy, stamp));
+            return book;
+        });
     }
 
+    // The bytes are kept per version, so a serializer is only called again once the book changed.
     @Override
+    public Optional<byte[]> getSerializedById(Long id, Function<Book, byte[]> serializer) {
+        long stamp = bookCache.stamp();
+        return getById(id).map(book -> {
+            byte[] serialized = bookCache.getSerialized(id, book.getVersion());
+            if (serialized == null) {
+                serialized = serializer.apply(book);
+                bookCache.putSerialized(id, book.getVersion(), serialized, stamp);
+            }
+            return serialized;
+        });
+    }
+
+    @Override
+    public MultiGetDTO<BookDTO> getByIds(List<Long> ids) {
+        List<Long> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+        if (distinctIds.isEmpty()) {
+            return new MultiGetDTO<>(List.of(), List.of());
+        }
+        return MultiGetDTO.inOrder(distinctIds, bookRepository.findAllDTOByIdIn(distinctIds), BookDTO::getId);
+    }
+
+    @Override
+    @Transactional
     public void delete(Book book) {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("Book id can't be null");
         }
         bookRepository.delete(book);
+        recordChange(book.getId());
+        availabilityIndex.removeBook(book.getId());
+        Long isbnKey = IsbnKeys.toKey(book.getIsbn());
+        if (isbnKey != null) {
+            isbnIndex.remove(isbnKey);
+        }
+        suggestIndex.remove(book.getId());
     }
 
     @Override
+    @Transactional
     public Book update(Book book) {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("Book id can't be null");
         }
-        return bookRepository.save(book);
+        Book updatedBook = bookRepository.save(book);
+        recordChange(updatedBook.getId());
+        indexIsbn(updatedBook);
+        suggestIndex.put(updatedBook.getId(), updatedBook.getTitle(), updatedBook.getAuthor());
+        return updatedBook;
+    }
+
+    @Override
+    @Transactional
+    public boolean updatePartially(Long id, BookPatchDTO patch) {
+        if (id == null) {
+            throw new IllegalArgumentException("Book id can't be null");
+        }
+        if (bookRepository.updatePartially(id, patch.getTitle(), patch.getAuthor(), patch.getVersion()) == 1) {
+            recordChange(id);
+            suggestIndex.merge(id, patch.getTitle(), patch.getAuthor());
+            return true;
+        }
+        if (patch.getVersion() != null && bookRepository.existsById(id)) {
+            throw new OptimisticLockingFailureException("Book was changed by another request");
+        }
+        return false;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<BookDTO> find(BookDTO filter, Boolean available, Pageable pageable) {
+        return recordSearch(filter, available, null, pageable, () -> findBooks(filter, available, pageable));
+    }
+
+    // filtered against the open loans in the database: the index only follows them after commit
+    private Page<BookDTO> findBooks(BookDTO filter, Boolean available, Pageable pageable) {
+        if (available == null) {
+            return bookRepository.findByFilter(filter.getTitle(), filter.getAuthor(), filter.getIsbn(), pageable);
+        }
+        return available
+                ? bookRepository.findAvailableByFilter(filter.getTitle(), filter.getAuthor(), filter.getIsbn(), pageable)
+                : bookRepository.findLentByFilter(filter.getTitle(), filter.getAuthor(), filter.getIsbn(), pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> find(BookDTO filter, Boolean available, Set<String> fields, Pageable pageable) {
+        List<String> selected = BookFieldsRepository.BOOK_FIELDS.resolve(fields);
+        return recordSearch(filter, available, selected, pageable,
+                () -> findBookFields(filter, available, selected, pageable));
+    }
+
+    private Page<Map<String, Object>> findBookFields(BookDTO filter, Boolean available, List<String> selected,
+                                                     Pageable pageable) {
+        return bookRepository.findFieldsByFilter(selected, filter.getTitle(), filter.getAuthor(), filter.getIsbn(),
+                available, pageable);
+    }
+
+    private <T> Page<T> recordSearch(BookDTO filter, Boolean available, List<String> fields, Pageable pageable,
+                                     Supplier<Page<T>> search) {
+        BookSearchEvent event = new BookSearchEvent();
+        event.begin();
+        Page<T> page = search.get();
+        event.describe(filter, available, fields, pageable);
+        event.setResult(page);
+        event.commit();
+        return page;
+    }
+
+    @Override
+    public List<BookSuggestionDTO> suggest(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit);
+    }
+
+    @Override
+    public Optional<BookAvailabilityDTO> getAvailability(Long id) {
+        if (id == null || !availabilityIndex.contains(id)) {
+            return Optional.empty();
+        }
+        return Optional.of(new BookAvailabilityDTO(id, !availabilityIndex.isLent(id)));
     }
 
     @Override
-    public Page find(Book book, Pageable pageable) {
-        Example<Book> example = Example.of(book, ExampleMatcher
-                .matching()
-                .withIgnoreCase()
-                .withIgnoreNullValues()
-                .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
-        return bookRepository.findAll(example, pageable);
+    public AvailabilityCountDTO countAvailability() {
+        return new AvailabilityCountDTO(availabilityIndex.getBookCount(), availabilityIndex.getLentCount(),
+                availabilityIndex.getAvailableCount());
     }
 
     @Override
     public Optional<Book> getBookByIsbn(String isbn) {
-        return bookRepository.findByIsbn(isbn);
+        Long isbnKey = IsbnKeys.toKey(isbn);
+        if (isbnKey == null) {
+            if (isbn == null) {
+                return bookRepository.findByIsbn(isbn);
+            }
+            return lookupsByIsbn.execute(isbn, () -> bookRepository.findByIsbn(isbn));
+        }
+        long id = isbnIndex.get(isbnKey);
+        if (id != IsbnIndex.MISSING) {
+            Optional<Book> book = getById(id);
+            // an update may have moved the book to another ISBN since it was indexed
+            if (book.isPresent() && isbnKey.equals(IsbnKeys.toKey(book.get().getIsbn()))) {
+                return book;
+            }
+            isbnIndex.remove(isbnKey);
+        }
+        Optional<Book> book = lookupsByIsbnKey.execute(isbnKey, () -> bookRepository.findByIsbnKey(isbnKey));
+        book.ifPresent(this::indexIsbn);
+        return book;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindLookups(registry, "id", lookupsById);
+        bindLookups(registry, "isbn", lookupsByIsbn);
+        bindLookups(registry, "isbnKey", lookupsByIsbnKey);
+    }
+
+    // The change row commits with the change and tells the other instances to evict the book. This instance evicts it
+    // right away and again on commit, so a read between the two can't keep the old book.
+    private void recordChange(Long bookId) {
+        bookChangeRepository.save(BookChange.builder().bookId(bookId).changedAt(Instant.now()).build());
+        bookCache.evict(bookId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bookCache.evict(bookId);
+                }
+            });
+        }
+    }
+
+    private void indexIsbn(Book book) {
+        Long isbnKey = IsbnKeys.toKey(book.getIsbn());
+        if (isbnKey != null && book.getId() != null) {
+            isbnIndex.put(isbnKey, book.getId());
+        }
+    }
+
+    private void bindLookups(MeterRegistry registry, String key, SingleFlight<?, ?> lookups) {
+        FunctionCounter.builder("library.book.lookups", lookups, SingleFlight::getLoads)
+                .tag("key", key)
+                .tag("result", "loaded")
+                .register(registry);
+        FunctionCounter.builder("library.book.lookups", lookups, SingleFlight::getCollapsed)
+                .tag("key", key)
+                .tag("result", "collapsed")
+                .register(registry);
+    }
+
+    // Callers that joined another caller's lookup get their own detached copy, as the controllers mutate
+    // the returned book on update.
+    private static Optional<Book> copyOf(Optional<Book> book) {
+        return book.map(found -> Book.builder()
+                .id(found.getId())
+                .title(found.getTitle())
+                .author(found.getAuthor())
+                .isbn(found.getIsbn())
+                .isbnKey(found.getIsbnKey())
+                .version(found.getVersion())
+                .build());
     }
 }
@@ -0,0 +1,183 @@
+package com.harley.library.implementations;
+
+import com.harley.library.cache.BookCache;
+import com.harley.library.cache.CacheSnapshot;
+import com.harley.library.dtos.IsbnKeyDTO;
+import com.harley.library.entities.Book;
+import com.harley.library.entities.BookChange;
+import com.harley.library.indexes.IsbnIndex;
+import com.harley.library.respositories.BookChangeRepository;
+import com.harley.library.respositories.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Saves the hottest cached books and the ISBN index to a local snapshot at intervals and on shutdown, and restores
+ * them while the application starts, before it reports ready. A snapshot is only restored while the changes made
+ * since it was taken are still in the book change feed: the books changed since are left out of the cache and read
+ * again from the database for the ISBN index, together with the books created since.
+ */
+@Service
+@Lazy(false)
+@ConditionalOnProperty(name = {"application.book-cache.snapshot.enabled", "application.book-cache.change-feed.enabled"},
+        havingValue = "true")
+public class CacheSnapshotService {
+
+    private static final int IDS_PER_QUERY = 1000;
+
+    private final BookCache bookCache;
+    private final IsbnIndex isbnIndex;
+    private final BookRepository bookRepository;
+    private final BookChangeRepository bookChangeRepository;
+    private final BookChangePoller bookChangePoller;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Path file;
+    private final int maxBooks;
+    private final int batchSize;
+    private final Duration maxAge;
+    private final Timer writeTimer;
+    private volatile int restoredBooks;
+    private volatile int restoredIsbnKeys;
+
+    public CacheSnapshotService(BookCache bookCache, IsbnIndex isbnIndex, BookRepository bookRepository,
+                                BookChangeRepository bookChangeRepository, BookChangePoller bookChangePoller,
+                                PlatformTransactionManager transactionManager, MeterRegistry registry,
+                                @Value("${application.book-cache.snapshot.file}") String file,
+                                @Value("${application.book-cache.snapshot.max-books:10000}") int maxBooks,
+                                @Value("${application.book-cache.change-feed.batch-size:500}") int batchSize,
+                                @Value("${application.book-cache.change-feed.retention-minutes:60}") long retentionMinutes) {
+        this.bookCache = bookCache;
+        this.isbnIndex = isbnIndex;
+        this.bookRepository = bookRepository;
+        this.bookChangeRepository = bookChangeRepository;
+        this.bookChangePoller = bookChangePoller;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.file = Path.of(file);
+        this.maxBooks = maxBooks;
+        this.batchSize = batchSize;
+        this.maxAge = Duration.ofMinutes(retentionMinutes);
+        this.writeTimer = Timer.builder("library.books.snapshot.write").register(registry);
+        Gauge.builder("library.books.snapshot.restored.books", this, service -> service.restoredBooks)
+                .register(registry);
+        Gauge.builder("library.books.snapshot.restored.isbn-keys", this, service -> service.restoredIsbnKeys)
+                .register(registry);
+    }
+
+    @Scheduled(initialDelayString = "${application.book-cache.snapshot.interval-ms:300000}",
+            fixedDelayString = "${application.book-cache.snapshot.interval-ms:300000}")
+    public synchronized void snapshot() {
+        writeTimer.record(() -> {
+            // read before the contents, so whatever changes meanwhile is replayed or reloaded on restore
+            long changeId = bookChangePoller.getLastSeenId();
+            long maxBookId = bookRepository.findMaxId();
+            CacheSnapshot snapshot = new CacheSnapshot(Instant.now(), changeId, maxBookId, isbnIndex.entries(),
+                    bookCache.hottest(maxBooks));
+            try {
+                snapshot.writeTo(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Published before any bean is destroyed, so the repositories can still be used.
+    @EventListener(ContextClosedEvent.class)
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+
+    /**
+     * Restores the snapshot when there is a usable one, and returns whether the ISBN index was seeded from it.
+     */
+    public synchronized boolean restore() {
+        Optional<CacheSnapshot> read;
+        try {
+            read = CacheSnapshot.readFrom(file);
+        } catch (IOException e) {
+            return false;
+        }
+        if (read.isEmpty() || !isCurrent(read.get())) {
+            return false;
+        }
+        CacheSnapshot snapshot = read.get();
+        long stamp = bookCache.stamp();
+        Set<Long> changedIds = changedSince(snapshot.getChangeId());
+
+        readOnlyTransaction.executeWithoutResult(status -> isbnIndex.seed(ids -> {
+            long[] entries = snapshot.getIsbnEntries();
+            for (int i = 0; i < entries.length; i += 2) {
+                if (!changedIds.contains(entries[i + 1])) {
+                    ids.put(entries[i], entries[i + 1]);
+                }
+            }
+            try (Stream<IsbnKeyDTO> keys = bookRepository.streamIsbnKeysAfter(snapshot.getMaxBookId())) {
+                keys.forEach(key -> ids.put(key.getIsbnKey(), key.getBookId()));
+            }
+            List<Long> changed = new ArrayList<>(changedIds);
+            for (int from = 0; from < changed.size(); from += IDS_PER_QUERY) {
+                List<Long> batch = changed.subList(from, Math.min(from + IDS_PER_QUERY, changed.size()));
+                bookRepository.findIsbnKeysByIdIn(batch).forEach(key -> ids.put(key.getIsbnKey(), key.getBookId()));
+            }
+        }));
+        restoredIsbnKeys = isbnIndex.size();
+
+        int books = 0;
+        for (Book book : snapshot.getBooks()) {
+            if (!changedIds.contains(book.getId())) {
+                bookCache.put(book, stamp);
+                books++;
+            }
+        }
+        restoredBooks = books;
+        return true;
+    }
+
+    public int getRestoredBooks() {
+        return restoredBooks;
+    }
+
+    // Older than the feed retention, the changes made since may already be pruned; ahead of the database, the
+    // snapshot was taken from another one.
+    private boolean isCurrent(CacheSnapshot snapshot) {
+        return snapshot.getCreatedAt().isAfter(Instant.now().minus(maxAge))
+                && snapshot.getChangeId() <= bookChangeRepository.findLastId()
+                && snapshot.getMaxBookId() <= bookRepository.findMaxId();
+    }
+
+    private Set<Long> changedSince(long changeId) {
+        Set<Long> bookIds = new HashSet<>();
+        List<BookChange> changes;
+        do {
+            changes = bookChangeRepository.findAfter(changeId, PageRequest.of(0, batchSize));
+            for (BookChange change : changes) {
+                bookIds.add(change.getBookId());
+                changeId = change.getId();
+            }
+        } while (changes.size() == batchSize);
+        return bookIds;
+    }
+}
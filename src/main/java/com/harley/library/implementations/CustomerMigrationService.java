@@ -0,0 +1,95 @@
+package com.harley.library.implementations;
+
+import com.harley.library.dtos.LegacyCustomerDTO;
+import com.harley.library.entities.Customer;
+import com.harley.library.respositories.LoanArchiveRepository;
+import com.harley.library.respositories.LoanRepository;
+import com.harley.library.services.CustomerService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Moves the free-text customer of loans and archived loans to the customer they reference, one bounded batch per
+ * transaction. It runs while the application starts, so every loan read afterwards has its customer, and again at
+ * intervals for the loans still written with a free-text customer during a rolling upgrade.
+ */
+@Service
+@Lazy(false)
+@ConditionalOnProperty(name = "application.customer-migration.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class CustomerMigrationService implements SmartInitializingSingleton, MeterBinder {
+
+    @Value("${application.customer-migration.batch-size:500}")
+    private int batchSize;
+
+    private final LoanRepository loanRepository;
+    private final LoanArchiveRepository loanArchiveRepository;
+    private final CustomerService customerService;
+    private final PlatformTransactionManager transactionManager;
+    private final AtomicLong migrated = new AtomicLong();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        migrateLegacyCustomers();
+    }
+
+    @Scheduled(initialDelayString = "${application.customer-migration.interval-ms:3600000}",
+            fixedDelayString = "${application.customer-migration.interval-ms:3600000}")
+    public synchronized int migrateLegacyCustomers() {
+        return migrate(loanRepository::findLegacyCustomers,
+                (ids, customer) -> loanRepository.assignCustomer(ids, customer))
+                + migrate(loanArchiveRepository::findLegacyCustomers,
+                (ids, customer) -> loanArchiveRepository.assignCustomer(ids, customer.getId()));
+    }
+
+    // Migrated rows leave the legacy query, so every batch reads the first page again.
+    private int migrate(Function<Pageable, List<LegacyCustomerDTO>> legacyCustomers,
+                        BiConsumer<List<Long>, Customer> assign) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int total = 0;
+        List<LegacyCustomerDTO> batch;
+        do {
+            batch = legacyCustomers.apply(PageRequest.of(0, batchSize));
+            // customers are created outside the batch transaction, so a duplicate email doesn't roll it back
+            Map<List<String>, Customer> resolved = new HashMap<>();
+            Map<Customer, List<Long>> loansByCustomer = new LinkedHashMap<>();
+            for (LegacyCustomerDTO loan : batch) {
+                Customer customer = resolved.computeIfAbsent(Arrays.asList(loan.getCustomer(), loan.getCustomerEmail()),
+                        key -> customerService.resolve(loan.getCustomer(), loan.getCustomerEmail()));
+                loansByCustomer.computeIfAbsent(customer, key -> new ArrayList<>()).add(loan.getLoanId());
+            }
+            transaction.executeWithoutResult(status -> loansByCustomer.forEach(
+                    (customer, ids) -> assign.accept(ids, customer)));
+            total += batch.size();
+            migrated.addAndGet(batch.size());
+        } while (batch.size() == batchSize);
+        return total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.loans.customers-migrated", migrated, AtomicLong::get).register(registry);
+    }
+}
@@ -0,0 +1,72 @@
+package com.harley.library.implementations;
+
+import com.harley.library.entities.Customer;
+import com.harley.library.respositories.CustomerRepository;
+import com.harley.library.services.CustomerService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.Optional;
+
+@Service
+public class CustomerServiceImp implements CustomerService {
+
+    private final CustomerRepository customerRepository;
+    private final TransactionTemplate newTransaction;
+
+    public CustomerServiceImp(CustomerRepository customerRepository, PlatformTransactionManager transactionManager) {
+        this.customerRepository = customerRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Returns the customer with the email, creating it on its first loan. Without an email, which only loans from
+     * before it was required lack, the customer is the one with the same name and no email.
+     */
+    @Override
+    public Customer resolve(String name, String email) {
+        String normalized = normalize(email);
+        Optional<Customer> found = find(name, normalized);
+        if (found.isPresent()) {
+            return found.get();
+        }
+        // inserted on its own, so a duplicate email doesn't roll back the checkout that resolves the customer
+        try {
+            return newTransaction.execute(status ->
+                    customerRepository.saveAndFlush(Customer.builder().name(name).email(normalized).build()));
+        } catch (DataIntegrityViolationException e) {
+            // created meanwhile by another loan of the same customer
+            return find(name, normalized).orElseThrow(() -> e);
+        }
+    }
+
+    @Override
+    public Optional<Customer> getById(Long id) {
+        return customerRepository.findById(id);
+    }
+
+    @Override
+    public Optional<Customer> getByEmail(String email) {
+        String normalized = normalize(email);
+        return normalized == null ? Optional.empty() : customerRepository.findByEmail(normalized);
+    }
+
+    private Optional<Customer> find(String name, String email) {
+        if (email == null) {
+            return customerRepository.findFirstByNameAndEmailIsNullOrderById(name);
+        }
+        return customerRepository.findByEmail(email);
+    }
+
+    private static String normalize(String email) {
+        if (email == null || email.isBlank()) {
+            return null;
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,5 +1,6 @@
 package com.harley.library.implementations;
 
+import com.harley.library.diagnostics.MailSendEvent;
 import com.harley.library.services.EmailService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,6 +28,14 @@ public class EmailServiceImp implements EmailService {
         String[] emails = emailsList.toArray(new String[emailsList.size()]);
         mailMessage.setTo(emails);
 
-        javaMailSender.send(mailMessage);
+        MailSendEvent send = new MailSendEvent();
+        send.begin();
+        try {
+            send.setRecipients(emails.length);
+            javaMailSender.send(mailMessage);
+            send.setSucceeded(true);
+        } finally {
+            send.commit();
+        }
     }
 }
@@ -0,0 +1,116 @@
+package com.harley.library.implementations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.enums.ExportFormat;
+import com.harley.library.respositories.BookRepository;
+import com.harley.library.respositories.LoanArchiveRepository;
+import com.harley.library.respositories.LoanRepository;
+import com.harley.library.services.ExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class ExportServiceImp implements ExportService {
+
+    private static final String[] BOOK_HEADER = {"id", "title", "author", "isbn"};
+    private static final String[] LOAN_HEADER = {"id", "bookId", "isbn", "customer", "customerEmail", "date", "returned"};
+
+    private final BookRepository bookRepository;
+    private final LoanRepository loanRepository;
+    private final LoanArchiveRepository loanArchiveRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBooks(BookDTO filter, ExportFormat format, OutputStream outputStream) throws IOException {
+        try (Stream<BookDTO> rows = bookRepository.streamByFilter(filter.getTitle(), filter.getAuthor(), filter.getIsbn())) {
+            write(rows, BookDTO.class, format, outputStream, BOOK_HEADER,
+                    book -> new Object[]{book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn()});
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportLoans(LoanDTO filter, ExportFormat format, OutputStream outputStream) throws IOException {
+        try (Stream<LoanExportDTO> rows = Stream.concat(
+                loanRepository.streamByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer()),
+                loanArchiveRepository.streamByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer()))) {
+            write(rows, LoanExportDTO.class, format, outputStream, LOAN_HEADER,
+                    loan -> new Object[]{loan.getId(), loan.getBookId(), loan.getIsbn(), loan.getCustomer(),
+                            loan.getCustomerEmail(), loan.getDate(), loan.getReturned()});
+        }
+    }
+
+    private <T> void write(Stream<T> rows, Class<T> type, ExportFormat format, OutputStream outputStream,
+                           String[] header, Function<T, Object[]> columns) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writeCsv(rows.iterator(), outputStream, header, columns);
+        } else {
+            writeNdjson(rows.iterator(), type, outputStream);
+        }
+    }
+
+    private <T> void writeNdjson(Iterator<T> rows, Class<T> type, OutputStream outputStream) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(type)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n");
+        SequenceWriter sequenceWriter = writer.writeValues(outputStream);
+        boolean empty = true;
+        while (rows.hasNext()) {
+            sequenceWriter.write(rows.next());
+            empty = false;
+        }
+        sequenceWriter.flush();
+        if (!empty) {
+            outputStream.write('\n');
+        }
+        outputStream.flush();
+    }
+
+    private <T> void writeCsv(Iterator<T> rows, OutputStream outputStream, String[] header,
+                              Function<T, Object[]> columns) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writeCsvLine(writer, header);
+        while (rows.hasNext()) {
+            writeCsvLine(writer, columns.apply(rows.next()));
+        }
+        writer.flush();
+    }
+
+    private void writeCsvLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escapeCsv(values[i].toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
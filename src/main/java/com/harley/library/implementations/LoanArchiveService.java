@@ -0,0 +1,75 @@
+package com.harley.library.implementations;
+
+import com.harley.library.respositories.LoanArchiveRepository;
+import com.harley.library.respositories.LoanRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves returned loans older than the configured age from the loan table to the loan archive, one bounded batch per
+ * transaction, so the queries on open loans only scan recent history.
+ */
+@Service
+@Lazy(false)
+@ConditionalOnProperty(name = "application.archive.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LoanArchiveService implements MeterBinder {
+
+    @Value("${application.archive.min-age-days:180}")
+    private int minAgeDays;
+
+    @Value("${application.archive.batch-size:500}")
+    private int batchSize;
+
+    private final LoanRepository loanRepository;
+    private final LoanArchiveRepository loanArchiveRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final AtomicLong archived = new AtomicLong();
+
+    @Scheduled(initialDelayString = "${application.archive.initial-delay-ms:60000}",
+            fixedDelayString = "${application.archive.interval-ms:3600000}")
+    public void archiveReturnedLoans() {
+        archiveReturnedBefore(LocalDate.now().minusDays(minAgeDays));
+    }
+
+    /**
+     * Archives the returned loans taken before the date and returns how many were moved.
+     */
+    public int archiveReturnedBefore(LocalDate before) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int total = 0;
+        int moved;
+        do {
+            moved = transaction.execute(status -> {
+                List<Long> ids = loanRepository.findArchivableIds(before, PageRequest.of(0, batchSize));
+                if (!ids.isEmpty()) {
+                    loanArchiveRepository.archive(ids);
+                    loanRepository.deleteByIds(ids);
+                }
+                return ids.size();
+            });
+            total += moved;
+            archived.addAndGet(moved);
+        } while (moved == batchSize);
+        return total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.loans.archived", archived, AtomicLong::get).register(registry);
+    }
+}
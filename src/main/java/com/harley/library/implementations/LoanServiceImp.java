@@ -1,32 +1,95 @@
 package com.harley.library.implementations;
 
+import com.harley.library.diagnostics.LoanCheckoutEvent;
+import com.harley.library.diagnostics.LoanReturnEvent;
 import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.dtos.LoanReminderDTO;
+import com.harley.library.dtos.MultiGetDTO;
 import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
 import com.harley.library.entities.Loan;
+import com.harley.library.events.LoanEvent;
 import com.harley.library.exceptions.BusinessException;
+import com.harley.library.indexes.BookAvailabilityIndex;
+import com.harley.library.respositories.BookRepository;
+import com.harley.library.respositories.LoanArchiveRepository;
+import com.harley.library.respositories.LoanFieldsRepository;
 import com.harley.library.respositories.LoanRepository;
+import com.harley.library.respositories.OffsetPageRequest;
+import com.harley.library.services.CustomerService;
 import com.harley.library.services.LoanService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class LoanServiceImp implements LoanService {
 
     private final LoanRepository loanRepository;
-    private final static Integer MAX_DAYS = 4;
+    private final LoanArchiveRepository loanArchiveRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookAvailabilityIndex availabilityIndex;
+    private final CustomerService customerService;
+    private final BookRepository bookRepository;
+    final static Integer MAX_DAYS = 4;
+    private final static int REMINDER_BATCH_SIZE = 500;
+    // The book row is locked, so of two checkouts of the same book on any instance only the first one sees no open
+    // loan. The bitmap only follows what committed.
     @Override
+    @Transactional
     public Loan save(Loan loan) {
-        if (loanRepository.existsByBookAndNotReturned(loan.getBook()))
-            throw new BusinessException("Book already borrowed");
+        Long bookId = loan.getBook().getId();
+        LoanCheckoutEvent checkout = new LoanCheckoutEvent();
+        checkout.begin();
+        try {
+            checkout.setBookId(bookId);
+            Customer customer = loan.getCustomer();
+            if (customer == null || (customer.getId() == null
+                    && (customer.getEmail() == null || customer.getEmail().isBlank()))) {
+                throw new BusinessException("Customer email is required");
+            }
+            Book book = bookRepository.findByIdForUpdate(bookId)
+                    .orElseThrow(() -> new BusinessException("Book not found"));
+            if (loanRepository.existsByBookAndNotReturned(book)) {
+                availabilityIndex.markLent(bookId);
+                throw new BusinessException("Book already borrowed");
+            }
 
-        return loanRepository.save(loan);
+            if (loan.getNextReminder() == null && loan.getDate() != null) {
+                loan.setNextReminder(loan.getDate().plusDays(MAX_DAYS));
+            }
+            if (customer.getId() == null) {
+                loan.setCustomer(customerService.resolve(customer.getName(), customer.getEmail()));
+            }
+            Loan savedLoan = loanRepository.save(loan);
+            afterCommit(() -> availabilityIndex.markLent(bookId));
+            eventPublisher.publishEvent(LoanEvent.checkedOut(savedLoan.getId(), savedLoan.getBook().getId(),
+                    savedLoan.getCustomer().getId(), savedLoan.getCustomer().getName()));
+            checkout.setLoanId(savedLoan.getId() != null ? savedLoan.getId() : 0);
+            checkout.setSucceeded(true);
+            return savedLoan;
+        } finally {
+            checkout.commit();
+        }
     }
 
     @Override
@@ -34,24 +97,187 @@ public class LoanServiceImp implements LoanService {
         return loanRepository.findById(id);
     }
 
+    // the archive is only read for the ids that aren't current loans
+    @Override
+    @Transactional(readOnly = true)
+    public MultiGetDTO<LoanDTO> getByIds(List<Long> ids) {
+        List<Long> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+        if (distinctIds.isEmpty()) {
+            return new MultiGetDTO<>(List.of(), List.of());
+        }
+        List<LoanDTO> found = new ArrayList<>(loanRepository.findAllDTOByIdIn(distinctIds));
+        if (found.size() < distinctIds.size()) {
+            Set<Long> foundIds = found.stream().map(LoanDTO::getId).collect(Collectors.toSet());
+            List<Long> notFound = distinctIds.stream().filter(id -> !foundIds.contains(id)).collect(Collectors.toList());
+            found.addAll(loanArchiveRepository.findAllDTOByIdIn(notFound));
+        }
+        return MultiGetDTO.inOrder(distinctIds, found, LoanDTO::getId);
+    }
+
     @Override
     public Loan update(Loan loan) {
         return loanRepository.save(loan);
     }
 
     @Override
-    public Page<Loan> find(LoanDTO loanDTO, Pageable pageable) {
-        return loanRepository.findByBookIsbnOrCustomer(loanDTO.getIsbn(), loanDTO.getCustomer(), pageable);
+    @Transactional
+    public boolean updateReturned(Long id, Boolean returned, Long version) {
+        LoanReturnEvent loanReturn = new LoanReturnEvent();
+        loanReturn.begin();
+        try {
+            loanReturn.setLoanId(id);
+            loanReturn.setReturned(Boolean.TRUE.equals(returned));
+            boolean updated = markReturned(id, returned, version);
+            loanReturn.setUpdated(updated);
+            return updated;
+        } finally {
+            loanReturn.commit();
+        }
+    }
+
+    // Only a loan whose state changes is updated, so a retried request neither releases a book lent again since
+    // nor publishes the change twice.
+    private boolean markReturned(Long id, Boolean returned, Long version) {
+        Optional<LoanExportDTO> found = loanRepository.findExportById(id);
+        if (found.isEmpty()) {
+            return false;
+        }
+        LoanExportDTO loan = found.get();
+        boolean returning = Boolean.TRUE.equals(returned);
+        if (!returning && Boolean.TRUE.equals(loan.getReturned())) {
+            Book book = bookRepository.findByIdForUpdate(loan.getBookId())
+                    .orElseThrow(() -> new BusinessException("Book not found"));
+            if (loanRepository.existsByBookAndNotReturned(book)) {
+                throw new BusinessException("Book already borrowed");
+            }
+        }
+        if (loanRepository.updateReturned(id, returning, version) == 0) {
+            Optional<Long> currentVersion = loanRepository.findVersionById(id);
+            if (currentVersion.isEmpty()) {
+                return false;
+            }
+            if (version != null && !version.equals(currentVersion.get())) {
+                throw new OptimisticLockingFailureException("Loan was changed by another request");
+            }
+            return true;
+        }
+        if (returning) {
+            afterCommit(() -> availabilityIndex.release(loan.getBookId()));
+            eventPublisher.publishEvent(LoanEvent.returned(loan.getId(), loan.getBookId(), loan.getCustomerId(), loan.getCustomer()));
+        } else {
+            afterCommit(() -> availabilityIndex.markLent(loan.getBookId()));
+            if (loan.getDate() != null) {
+                LocalDate lateOn = loan.getDate().plusDays(MAX_DAYS);
+                LocalDate today = LocalDate.now();
+                loanRepository.scheduleReminder(loan.getId(), lateOn.isAfter(today) ? lateOn : today);
+            }
+            eventPublisher.publishEvent(LoanEvent.reopened(loan.getId(), loan.getBookId(), loan.getCustomerId(), loan.getCustomer()));
+        }
+        return true;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> find(LoanDTO loanDTO, Pageable pageable) {
+        return withArchived(pageable,
+                loanRepository.findByBookIsbnOrCustomer(loanDTO.getIsbn(), loanDTO.getCustomer(), pageable),
+                () -> loanArchiveRepository.countByBookIsbnOrCustomer(loanDTO.getIsbn(), loanDTO.getCustomer()),
+                archivePage -> loanArchiveRepository.findByBookIsbnOrCustomer(loanDTO.getIsbn(), loanDTO.getCustomer(), archivePage));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> find(LoanDTO loanDTO, Set<String> fields, Pageable pageable) {
+        List<String> selected = LoanFieldsRepository.LOAN_FIELDS.resolve(fields);
+        return withArchived(pageable,
+                loanRepository.findFieldsByBookIsbnOrCustomer(selected, loanDTO.getIsbn(), loanDTO.getCustomer(), pageable),
+                () -> loanArchiveRepository.countByBookIsbnOrCustomer(loanDTO.getIsbn(), loanDTO.getCustomer()),
+                archivePage -> loanArchiveRepository.findFieldsByBookIsbnOrCustomer(selected, loanDTO.getIsbn(),
+                        loanDTO.getCustomer(), archivePage));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> getLoansByBook(Long bookId, Pageable pageable) {
+        return withArchived(pageable,
+                loanRepository.findByBookId(bookId, pageable),
+                () -> loanArchiveRepository.countByBookId(bookId),
+                archivePage -> loanArchiveRepository.findByBookId(bookId, archivePage));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getLoansByBook(Long bookId, Set<String> fields, Pageable pageable) {
+        List<String> selected = LoanFieldsRepository.LOAN_FIELDS.resolve(fields);
+        return withArchived(pageable,
+                loanRepository.findFieldsByBookId(selected, bookId, pageable),
+                () -> loanArchiveRepository.countByBookId(bookId),
+                archivePage -> loanArchiveRepository.findFieldsByBookId(selected, bookId, archivePage));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> getOpenLoansByCustomer(Long customerId, Pageable pageable) {
+        return loanRepository.findOpenByCustomerId(customerId, pageable);
+    }
+
+    // archived loans were all returned
+    @Override
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> getPastLoansByCustomer(Long customerId, Pageable pageable) {
+        return withArchived(pageable,
+                loanRepository.findReturnedByCustomerId(customerId, pageable),
+                () -> loanArchiveRepository.countByCustomerId(customerId),
+                archivePage -> loanArchiveRepository.findByCustomerId(customerId, archivePage));
+    }
+
+    // Current loans come first and archived ones after them, so a page crossing the boundary is completed from the
+    // archive and the archive is only read once the current loans ran out.
+    private <T> Page<T> withArchived(Pageable pageable, Page<T> current, LongSupplier archivedCount,
+                                     Function<Pageable, List<T>> archived) {
+        if (pageable.isUnpaged()) {
+            List<T> content = new ArrayList<>(current.getContent());
+            content.addAll(archived.apply(pageable));
+            return new PageImpl<>(content, pageable, content.size());
+        }
+        long archivedTotal = archivedCount.getAsLong();
+        if (archivedTotal == 0) {
+            return current;
+        }
+        List<T> content = new ArrayList<>(current.getContent());
+        long archiveOffset = Math.max(0, pageable.getOffset() - current.getTotalElements());
+        int missing = pageable.getPageSize() - content.size();
+        if (missing > 0 && archiveOffset < archivedTotal) {
+            content.addAll(archived.apply(new OffsetPageRequest(archiveOffset, missing, pageable.getSort())));
+        }
+        return new PageImpl<>(content, pageable, current.getTotalElements() + archivedTotal);
     }
 
     @Override
-    public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
-        return loanRepository.findByBook(book, pageable);
+    @Transactional(readOnly = true)
+    public List<LoanReminderDTO> getLoansDueForReminder(LocalDate today) {
+        return loanRepository.findDueForReminder(today, today.minusDays(MAX_DAYS));
     }
 
     @Override
-    public List<Loan> getAllLateLoans() {
-        LocalDate threeDaysAgo = LocalDate.now().minusDays(MAX_DAYS);
-        return loanRepository.findAllLateLoans(threeDaysAgo);
+    @Transactional
+    public void markReminded(List<Long> ids, int reminderCount, LocalDate nextReminder, LocalDate notified) {
+        for (int from = 0; from < ids.size(); from += REMINDER_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + REMINDER_BATCH_SIZE, ids.size()));
+            loanRepository.markReminded(batch, notified, reminderCount, nextReminder);
+        }
     }
 }
@@ -0,0 +1,66 @@
+package com.harley.library.implementations;
+
+import com.harley.library.respositories.LoanRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules the first reminder of the open loans saved before reminders were scheduled, one bounded batch per
+ * transaction, while the application starts. Loans saved or reopened since always get a reminder, so the nightly
+ * reminder job only has to read the due ones.
+ */
+@Service
+@Lazy(false)
+@ConditionalOnProperty(name = "application.reminder-backfill.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ReminderBackfillService implements SmartInitializingSingleton, MeterBinder {
+
+    @Value("${application.reminder-backfill.batch-size:500}")
+    private int batchSize;
+
+    private final LoanRepository loanRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final AtomicLong scheduled = new AtomicLong();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        scheduleMissingReminders();
+    }
+
+    // Scheduled loans leave the query, so every batch reads the first page again.
+    public synchronized int scheduleMissingReminders() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int total = 0;
+        int batch;
+        do {
+            batch = transaction.execute(status -> {
+                List<Long> ids = loanRepository.findIdsWithoutReminder(PageRequest.of(0, batchSize));
+                if (!ids.isEmpty()) {
+                    loanRepository.scheduleFirstReminder(ids);
+                }
+                return ids.size();
+            });
+            total += batch;
+            scheduled.addAndGet(batch);
+        } while (batch == batchSize);
+        return total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.loans.reminders-backfilled", scheduled, AtomicLong::get).register(registry);
+    }
+}
@@ -1,17 +1,24 @@
 package com.harley.library.implementations;
 
-import com.harley.library.entities.Loan;
+import com.harley.library.diagnostics.LateLoanJobEvent;
+import com.harley.library.dtos.LoanReminderDTO;
 import com.harley.library.services.EmailService;
 import com.harley.library.services.LoanService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
+@Lazy(false)
 @RequiredArgsConstructor
 public class ScheduleService {
 
@@ -20,15 +27,50 @@ public class ScheduleService {
     @Value("${application.email.lateloan.message}")
     private String message;
 
+    // days between one reminder and the next; no more reminders are sent once they run out
+    @Value("${application.email.lateloan.reminder-intervals-days:3,7,14}")
+    private int[] reminderIntervals;
+
     private final LoanService loanService;
     private final EmailService emailService;
 
     @Scheduled(cron = CRON_LATE_LOANS)
     public void sendMail() {
-        List<Loan> allLateLoans = loanService.getAllLateLoans();
-        List<String> emailsList = allLateLoans.stream().map(Loan::getCustomerEmail).toList();
+        LateLoanJobEvent job = new LateLoanJobEvent();
+        job.begin();
+        try {
+            job.setEmails(remindLateLoans(job));
+        } finally {
+            job.commit();
+        }
+    }
 
+    // returns the number of emails sent
+    private int remindLateLoans(LateLoanJobEvent job) {
+        LocalDate today = LocalDate.now();
+        List<LoanReminderDTO> dueLoans = loanService.getLoansDueForReminder(today);
+        job.setDueLoans(dueLoans.size());
+        if (dueLoans.isEmpty()) {
+            return 0;
+        }
+        List<String> emailsList = dueLoans.stream()
+                .map(LoanReminderDTO::getCustomerEmail)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (!emailsList.isEmpty()) {
+            emailService.sendEmails(emailsList, message);
+        }
+
+        Map<Integer, List<Long>> idsByReminderCount = dueLoans.stream().collect(Collectors.groupingBy(
+                LoanReminderDTO::getReminderCount, TreeMap::new,
+                Collectors.mapping(LoanReminderDTO::getId, Collectors.toList())));
+        idsByReminderCount.forEach((sent, ids) ->
+                loanService.markReminded(ids, sent + 1, nextReminder(today, sent + 1), today));
+        return emailsList.size();
+    }
 
-        emailService.sendEmails(emailsList, message);
+    private LocalDate nextReminder(LocalDate today, int sentReminders) {
+        return sentReminders <= reminderIntervals.length ? today.plusDays(reminderIntervals[sentReminders - 1]) : null;
     }
 }
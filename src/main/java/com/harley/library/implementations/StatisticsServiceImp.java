@@ -0,0 +1,76 @@
+package com.harley.library.implementations;
+
+import com.harley.library.dtos.BookLoanCountDTO;
+import com.harley.library.dtos.CustomerLoanCountDTO;
+import com.harley.library.dtos.DailyLoanCountDTO;
+import com.harley.library.dtos.LoanSummaryDTO;
+import com.harley.library.events.LoanEvent;
+import com.harley.library.respositories.LoanArchiveRepository;
+import com.harley.library.respositories.LoanRepository;
+import com.harley.library.services.StatisticsService;
+import com.harley.library.statistics.LoanStatistics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class StatisticsServiceImp implements StatisticsService {
+
+    private final LoanStatistics loanStatistics;
+    private final LoanRepository loanRepository;
+    private final LoanArchiveRepository loanArchiveRepository;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoanEvent(LoanEvent event) {
+        loanStatistics.apply(event);
+    }
+
+    @Override
+    public LoanSummaryDTO getSummary() {
+        LocalDate overdueCutoff = LocalDate.now().minusDays(LoanServiceImp.MAX_DAYS);
+        return new LoanSummaryDTO(loanStatistics.getTotalLoans(), (long) loanStatistics.getOpenLoans(),
+                loanStatistics.getOverdueLoans(overdueCutoff));
+    }
+
+    @Override
+    public List<DailyLoanCountDTO> getLoansPerDay(LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, Long> loansPerDay = loanStatistics.getLoansPerDay(from, to);
+        List<DailyLoanCountDTO> days = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            days.add(new DailyLoanCountDTO(day, loansPerDay.getOrDefault(day, 0L)));
+        }
+        return days;
+    }
+
+    @Override
+    public List<BookLoanCountDTO> getMostBorrowedBooks(int limit) {
+        return loanStatistics.getMostBorrowedBooks(limit).stream()
+                .map(count -> new BookLoanCountDTO(count.getKey(), count.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<CustomerLoanCountDTO> getMostBorrowingCustomers(int limit) {
+        return loanStatistics.getMostBorrowingCustomers(limit).stream()
+                .map(count -> new CustomerLoanCountDTO(count.getKey(),
+                        loanStatistics.getCustomerName(count.getKey()), count.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean rebuild() {
+        return loanStatistics.rebuild(() -> Stream.concat(
+                loanRepository.streamByBookIsbnOrCustomer(null, null),
+                loanArchiveRepository.streamByBookIsbnOrCustomer(null, null)));
+    }
+}
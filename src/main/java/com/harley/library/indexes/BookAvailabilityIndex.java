@@ -0,0 +1,150 @@
+package com.harley.library.indexes;
+
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.LongStream;
+
+/**
+ * Compressed bitmaps of the ids of every book and of the books that are lent out, so availability questions are
+ * answered without a database round trip. A checkout reserves its book here first: of two concurrent checkouts of
+ * the same book only one gets the reservation.
+ */
+public class BookAvailabilityIndex {
+
+    private final Roaring64Bitmap books = new Roaring64Bitmap();
+    private final Roaring64Bitmap lent = new Roaring64Bitmap();
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    public BookAvailabilityIndex() {
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    public void seed(LongStream bookIds, LongStream lentBookIds) {
+        writeLock.lock();
+        try {
+            books.clear();
+            lent.clear();
+            bookIds.forEach(books::addLong);
+            lentBookIds.forEach(lent::addLong);
+            books.runOptimize();
+            lent.runOptimize();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void addBook(long bookId) {
+        writeLock.lock();
+        try {
+            books.addLong(bookId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void removeBook(long bookId) {
+        writeLock.lock();
+        try {
+            books.removeLong(bookId);
+            lent.removeLong(bookId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Marks the book as lent out and returns true, or returns false when it already was.
+     */
+    public boolean reserve(long bookId) {
+        writeLock.lock();
+        try {
+            if (lent.contains(bookId)) {
+                return false;
+            }
+            lent.addLong(bookId);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void markLent(long bookId) {
+        writeLock.lock();
+        try {
+            lent.addLong(bookId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void release(long bookId) {
+        writeLock.lock();
+        try {
+            lent.removeLong(bookId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean contains(long bookId) {
+        readLock.lock();
+        try {
+            return books.contains(bookId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public boolean isLent(long bookId) {
+        readLock.lock();
+        try {
+            return lent.contains(bookId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long[] getLentIds() {
+        readLock.lock();
+        try {
+            return lent.toArray();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long getBookCount() {
+        readLock.lock();
+        try {
+            return books.getLongCardinality();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long getLentCount() {
+        readLock.lock();
+        try {
+            return lent.getLongCardinality();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long getAvailableCount() {
+        readLock.lock();
+        try {
+            Roaring64Bitmap available = books.clone();
+            available.andNot(lent);
+            return available.getLongCardinality();
+        } finally {
+            readLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.harley.library.indexes;
+
+import com.harley.library.dtos.BookSuggestionDTO;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Sorted map of normalized title and author phrases, used to suggest books while the user types. Every word of a
+ * title or author starts a phrase running to the end of it, so "pot" finds "Harry Potter" as well as "Pottery".
+ * Lookups are a range scan of the keys starting with the prefix and never touch the database.
+ */
+public class BookSuggestIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{Alnum}]+");
+    private static final char ID_SEPARATOR = '\u0000';
+
+    private final NavigableMap<String, BookSuggestionDTO> phrases = new ConcurrentSkipListMap<>();
+    private final Map<Long, BookSuggestionDTO> books = new ConcurrentHashMap<>();
+
+    public synchronized void put(Long id, String title, String author) {
+        remove(id);
+        BookSuggestionDTO book = new BookSuggestionDTO(id, title, author);
+        books.put(id, book);
+        for (String key : keys(book)) {
+            phrases.put(key, book);
+        }
+    }
+
+    /**
+     * Applies a partial update: a null title or author keeps the indexed one.
+     */
+    public synchronized void merge(Long id, String title, String author) {
+        BookSuggestionDTO current = books.get(id);
+        if (current == null) {
+            return;
+        }
+        put(id, title != null ? title : current.getTitle(), author != null ? author : current.getAuthor());
+    }
+
+    public synchronized void remove(Long id) {
+        BookSuggestionDTO book = books.remove(id);
+        if (book != null) {
+            for (String key : keys(book)) {
+                phrases.remove(key);
+            }
+        }
+    }
+
+    public List<BookSuggestionDTO> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Map<Long, BookSuggestionDTO> matches = new LinkedHashMap<>();
+        for (BookSuggestionDTO book : phrases.subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+            matches.putIfAbsent(book.getId(), book);
+            if (matches.size() == limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(matches.values());
+    }
+
+    public int size() {
+        return books.size();
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String withoutMarks = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(withoutMarks.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static List<String> keys(BookSuggestionDTO book) {
+        List<String> keys = new ArrayList<>();
+        addPhrases(keys, normalize(book.getTitle()), book.getId());
+        addPhrases(keys, normalize(book.getAuthor()), book.getId());
+        return keys;
+    }
+
+    private static void addPhrases(List<String> keys, String normalized, Long id) {
+        if (normalized.isEmpty()) {
+            return;
+        }
+        int start = 0;
+        while (start >= 0) {
+            keys.add(normalized.substring(start) + ID_SEPARATOR + id);
+            int space = normalized.indexOf(' ', start);
+            start = space < 0 ? -1 : space + 1;
+        }
+    }
+}
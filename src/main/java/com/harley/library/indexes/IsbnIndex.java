@@ -0,0 +1,82 @@
+package com.harley.library.indexes;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Book id by numeric ISBN key (see {@link IsbnKeys}). Lookups are optimistic reads that only take the read lock
+ * when a write ran at the same time.
+ */
+public class IsbnIndex {
+
+    public static final long MISSING = -1L;
+
+    private final LongLongHashMap ids = new LongLongHashMap(1024, MISSING);
+    private final StampedLock lock = new StampedLock();
+
+    public void seed(Consumer<LongLongHashMap> loader) {
+        long stamp = lock.writeLock();
+        try {
+            ids.clear();
+            loader.accept(ids);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the id of the book with the ISBN key, or {@link #MISSING}.
+     */
+    public long get(long isbnKey) {
+        long stamp = lock.tryOptimisticRead();
+        long id = ids.get(isbnKey);
+        if (lock.validate(stamp)) {
+            return id;
+        }
+        stamp = lock.readLock();
+        try {
+            return ids.get(isbnKey);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void put(long isbnKey, long bookId) {
+        long stamp = lock.writeLock();
+        try {
+            ids.put(isbnKey, bookId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(long isbnKey) {
+        long stamp = lock.writeLock();
+        try {
+            ids.remove(isbnKey);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns ISBN key and book id pairs packed into one array.
+     */
+    public long[] entries() {
+        long stamp = lock.readLock();
+        try {
+            return ids.entries();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return ids.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.harley.library.indexes;
+
+/**
+ * Canonical numeric form of an ISBN: the 13 digits of its ISBN-13 as a long. Hyphens and spaces are ignored and an
+ * ISBN-10 is converted to its 978 ISBN-13, so every way of writing the same ISBN gets the same key. An ISBN-10 with
+ * a wrong check digit has no key, since converting it would make it collide with the valid one.
+ */
+public final class IsbnKeys {
+
+    private IsbnKeys() {
+    }
+
+    /**
+     * Returns the key of the ISBN, or null when the text isn't an ISBN-10 or ISBN-13.
+     */
+    public static Long toKey(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        char[] digits = new char[13];
+        int length = 0;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            boolean tenthCheckDigit = (c == 'X' || c == 'x') && length == 9;
+            if (length == 13 || !(Character.isDigit(c) && c < 128 || tenthCheckDigit)) {
+                return null;
+            }
+            digits[length++] = c;
+        }
+        if (length == 13) {
+            return Long.parseLong(new String(digits));
+        }
+        if (length == 10 && validIsbn10(digits)) {
+            return isbn10ToKey(digits);
+        }
+        return null;
+    }
+
+    private static boolean validIsbn10(char[] digits) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            int value = digits[i] == 'X' || digits[i] == 'x' ? 10 : digits[i] - '0';
+            if (value == 10 && i != 9) {
+                return false;
+            }
+            sum += value * (10 - i);
+        }
+        return sum % 11 == 0;
+    }
+
+    private static long isbn10ToKey(char[] digits) {
+        long key = 978;
+        int sum = 9 + 7 * 3 + 8;
+        for (int i = 0; i < 9; i++) {
+            int value = digits[i] - '0';
+            key = key * 10 + value;
+            sum += value * (i % 2 == 0 ? 3 : 1);
+        }
+        return key * 10 + (10 - sum % 10) % 10;
+    }
+}
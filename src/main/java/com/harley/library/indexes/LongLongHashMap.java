@@ -0,0 +1,177 @@
+package com.harley.library.indexes;
+
+/**
+ * Open-addressing hash map from long to long with linear probing. Keys and values sit side by side in one long
+ * array, so nothing is boxed and a lookup touches one or two cache lines. Not thread safe.
+ */
+public class LongLongHashMap {
+
+    private static final long EMPTY = 0L;
+    private static final int MIN_CAPACITY = 16;
+    private static final double LOAD_FACTOR = 0.5;
+
+    private final long missingValue;
+    // key at 2 * slot, value at 2 * slot + 1; the key 0 marks a free slot and is kept aside
+    private long[] table;
+    private int size;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    public LongLongHashMap(int expectedSize, long missingValue) {
+        this.missingValue = missingValue;
+        this.table = new long[2 * capacityFor(expectedSize)];
+    }
+
+    public long get(long key) {
+        if (key == EMPTY) {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        long[] table = this.table;
+        int mask = (table.length >> 1) - 1;
+        for (int slot = mix(key) & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            long found = table[2 * slot];
+            if (found == key) {
+                return table[2 * slot + 1];
+            }
+            if (found == EMPTY) {
+                return missingValue;
+            }
+        }
+        return missingValue;
+    }
+
+    public void put(long key, long value) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) {
+                size++;
+            }
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        int mask = (table.length >> 1) - 1;
+        int slot = mix(key) & mask;
+        while (table[2 * slot] != EMPTY && table[2 * slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (table[2 * slot] == EMPTY) {
+            if (size + 1 > (mask + 1) * LOAD_FACTOR) {
+                resize();
+                put(key, value);
+                return;
+            }
+            size++;
+        }
+        table[2 * slot + 1] = value;
+        table[2 * slot] = key;
+    }
+
+    public long remove(long key) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        int mask = (table.length >> 1) - 1;
+        int slot = mix(key) & mask;
+        while (table[2 * slot] != key) {
+            if (table[2 * slot] == EMPTY) {
+                return missingValue;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long removed = table[2 * slot + 1];
+        // shift back the entries of the cluster that would no longer be reachable from their home slot
+        int hole = slot;
+        for (int next = (hole + 1) & mask; table[2 * next] != EMPTY; next = (next + 1) & mask) {
+            int home = mix(table[2 * next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[2 * hole] = table[2 * next];
+                table[2 * hole + 1] = table[2 * next + 1];
+                hole = next;
+            }
+        }
+        table[2 * hole] = EMPTY;
+        table[2 * hole + 1] = 0;
+        size--;
+        return removed;
+    }
+
+    public void clear() {
+        table = new long[2 * MIN_CAPACITY];
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the entries as key and value pairs packed into one array.
+     */
+    public long[] entries() {
+        long[] entries = new long[2 * size];
+        int i = 0;
+        if (hasZeroKey) {
+            entries[i++] = EMPTY;
+            entries[i++] = zeroValue;
+        }
+        for (int slot = 0; slot < table.length; slot += 2) {
+            if (table[slot] != EMPTY) {
+                entries[i++] = table[slot];
+                entries[i++] = table[slot + 1];
+            }
+        }
+        return entries;
+    }
+
+    public long getMissingValue() {
+        return missingValue;
+    }
+
+    /**
+     * Bytes held by the table, for comparing its footprint with boxed maps.
+     */
+    public long getTableBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    private void resize() {
+        long[] old = table;
+        long[] resized = new long[old.length * 2];
+        int mask = (resized.length >> 1) - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != EMPTY) {
+                int slot = mix(old[i]) & mask;
+                while (resized[2 * slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                resized[2 * slot] = old[i];
+                resized[2 * slot + 1] = old[i + 1];
+            }
+        }
+        table = resized;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // the finalizer of MurmurHash3, so keys that differ only in their high digits still spread over the table
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb3fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,28 @@
+package com.harley.library.respositories;
+
+import com.harley.library.entities.BookChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface BookChangeRepository extends JpaRepository<BookChange, Long> {
+
+    @Query("select c from BookChange c where c.id > :after order by c.id")
+    List<BookChange> findAfter(@Param("after") long after, Pageable pageable);
+
+    @Query("select coalesce(max(c.id), 0) from BookChange c")
+    long findLastId();
+
+    @Transactional
+    @Modifying
+    @Query("delete from BookChange c where c.changedAt < :before")
+    int deleteChangedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,24 @@
+package com.harley.library.respositories;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+
+public interface BookFieldsRepository {
+
+    SparseFields BOOK_FIELDS = new SparseFields("Book", "b")
+            .field("id", "b.id")
+            .field("title", "b.title")
+            .field("author", "b.author")
+            .field("isbn", "b.isbn")
+            .field("version", "b.version");
+
+    /**
+     * Same filter as {@link BookRepository#findByFilter}, selecting only the fields. When available is not null, keeps
+     * only the books that are, or aren't, lent out.
+     */
+    Page<Map<String, Object>> findFieldsByFilter(List<String> fields, String title, String author, String isbn,
+                                                 Boolean available, Pageable pageable);
+}
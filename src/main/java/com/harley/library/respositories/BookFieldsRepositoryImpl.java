@@ -0,0 +1,30 @@
+package com.harley.library.respositories;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Map;
+
+public class BookFieldsRepositoryImpl implements BookFieldsRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<Map<String, Object>> findFieldsByFilter(List<String> fields, String title, String author, String isbn,
+                                                        Boolean available, Pageable pageable) {
+        String where = BookRepository.FILTER;
+        if (available != null) {
+            where += available ? "and not " + BookRepository.LENT : "and " + BookRepository.LENT;
+        }
+        return BOOK_FIELDS.select(entityManager, fields)
+                .parameter("title", title)
+                .parameter("author", author)
+                .parameter("isbn", isbn)
+                .where(where)
+                .getPage(pageable);
+    }
+}
@@ -1,14 +1,97 @@
 package com.harley.library.respositories;
 
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.IsbnKeyDTO;
 import com.harley.library.entities.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @RestController
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookFieldsRepository {
+    String FILTER = "where (:title is null or lower(b.title) like lower(concat('%', :title, '%'))) " +
+            "and (:author is null or lower(b.author) like lower(concat('%', :author, '%'))) " +
+            "and (:isbn is null or lower(b.isbn) like lower(concat('%', :isbn, '%'))) ";
+    // answered from idx_loan_book, the same condition the checkout checks
+    String LENT = "exists (select l.id from Loan l where l.book = b and (l.returned is null or l.returned is not true)) ";
+
     boolean existsByIsbn(String isbn);
 
     Optional<Book> findByIsbn(String isbn);
+
+    // serializes the checkouts of a book, on every instance
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.id = :id")
+    Optional<Book> findByIdForUpdate(@Param("id") Long id);
+
+    boolean existsByIsbnKey(Long isbnKey);
+
+    Optional<Book> findByIsbnKey(Long isbnKey);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.harley.library.dtos.IsbnKeyDTO(b.isbnKey, b.id) from Book b where b.isbnKey is not null")
+    Stream<IsbnKeyDTO> streamIsbnKeys();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.harley.library.dtos.IsbnKeyDTO(b.isbnKey, b.id) from Book b " +
+            "where b.isbnKey is not null and b.id > :after")
+    Stream<IsbnKeyDTO> streamIsbnKeysAfter(@Param("after") long after);
+
+    @Query("select new com.harley.library.dtos.IsbnKeyDTO(b.isbnKey, b.id) from Book b " +
+            "where b.isbnKey is not null and b.id in :ids")
+    List<IsbnKeyDTO> findIsbnKeysByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select coalesce(max(b.id), 0) from Book b")
+    long findMaxId();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.harley.library.dtos.BookDTO(b.id, b.title, b.author, b.isbn, b.version) from Book b " + FILTER +
+            "order by b.id")
+    Stream<BookDTO> streamByFilter(@Param("title") String title, @Param("author") String author, @Param("isbn") String isbn);
+
+    @Query(value = "select new com.harley.library.dtos.BookDTO(b.id, b.title, b.author, b.isbn, b.version) from Book b " + FILTER,
+            countQuery = "select count(b) from Book b " + FILTER)
+    Page<BookDTO> findByFilter(@Param("title") String title, @Param("author") String author, @Param("isbn") String isbn,
+                               Pageable pageable);
+
+    @Query(value = "select new com.harley.library.dtos.BookDTO(b.id, b.title, b.author, b.isbn, b.version) from Book b " + FILTER +
+            "and " + LENT,
+            countQuery = "select count(b) from Book b " + FILTER + "and " + LENT)
+    Page<BookDTO> findLentByFilter(@Param("title") String title, @Param("author") String author, @Param("isbn") String isbn,
+                                   Pageable pageable);
+
+    @Query(value = "select new com.harley.library.dtos.BookDTO(b.id, b.title, b.author, b.isbn, b.version) from Book b " + FILTER +
+            "and not " + LENT,
+            countQuery = "select count(b) from Book b " + FILTER + "and not " + LENT)
+    Page<BookDTO> findAvailableByFilter(@Param("title") String title, @Param("author") String author, @Param("isbn") String isbn,
+                                        Pageable pageable);
+
+    @Query("select new com.harley.library.dtos.BookDTO(b.id, b.title, b.author, b.isbn, b.version) from Book b " +
+            "where b.id in :ids")
+    List<BookDTO> findAllDTOByIdIn(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select b.id from Book b")
+    Stream<Long> streamIds();
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Book b set b.title = coalesce(:title, b.title), b.author = coalesce(:author, b.author), " +
+            "b.version = b.version + 1 where b.id = :id and (:version is null or b.version = :version)")
+    int updatePartially(@Param("id") Long id, @Param("title") String title, @Param("author") String author,
+                        @Param("version") Long version);
 }
@@ -0,0 +1,16 @@
+package com.harley.library.respositories;
+
+import com.harley.library.entities.Customer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CustomerRepository extends JpaRepository<Customer, Long> {
+
+    Optional<Customer> findByEmail(String email);
+
+    // only loans from before the email was required have a customer without one
+    Optional<Customer> findFirstByNameAndEmailIsNullOrderById(String name);
+}
@@ -0,0 +1,31 @@
+package com.harley.library.respositories;
+
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+
+public interface LoanArchiveFieldsRepository {
+
+    String CUSTOMER_JOIN = "left join Customer c on c.id = l.customerId";
+
+    String BOOK_JOIN = "left join Book b on b.id = l.bookId";
+
+    // the same fields as LoanFieldsRepository.LOAN_FIELDS, read from the archive
+    SparseFields ARCHIVED_LOAN_FIELDS = new SparseFields("LoanArchive", "l")
+            .field("id", "l.id")
+            .field("customer", "c.name", CUSTOMER_JOIN)
+            .field("customerEmail", "c.email", CUSTOMER_JOIN)
+            .field("isbn", "b.isbn", BOOK_JOIN)
+            .field("book.id", "l.bookId")
+            .field("book.title", "b.title", BOOK_JOIN)
+            .field("book.author", "b.author", BOOK_JOIN)
+            .field("book.isbn", "b.isbn", BOOK_JOIN)
+            // an archived loan can't be changed any more, so it has no version
+            .field("version", "nullif(l.id, l.id)");
+
+    List<Map<String, Object>> findFieldsByBookIsbnOrCustomer(List<String> fields, String isbn, String customer,
+                                                             Pageable pageable);
+
+    List<Map<String, Object>> findFieldsByBookId(List<String> fields, Long bookId, Pageable pageable);
+}
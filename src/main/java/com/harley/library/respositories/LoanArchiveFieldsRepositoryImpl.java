@@ -0,0 +1,40 @@
+package com.harley.library.respositories;
+
+import org.springframework.data.domain.Pageable;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Map;
+
+public class LoanArchiveFieldsRepositoryImpl implements LoanArchiveFieldsRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findFieldsByBookIsbnOrCustomer(List<String> fields, String isbn, String customer,
+                                                                    Pageable pageable) {
+        if (isbn == null && customer == null) {
+            return List.of();
+        }
+        SparseFields.SelectQuery query = ARCHIVED_LOAN_FIELDS.select(entityManager, fields);
+        if (isbn == null) {
+            return query.join(CUSTOMER_JOIN).where("where c.name = :customer").parameter("customer", customer).getList(pageable);
+        }
+        return query.join(BOOK_JOIN)
+                .join(CUSTOMER_JOIN)
+                .where("where b.isbn = :isbn or c.name = :customer")
+                .parameter("isbn", isbn)
+                .parameter("customer", customer)
+                .getList(pageable);
+    }
+
+    @Override
+    public List<Map<String, Object>> findFieldsByBookId(List<String> fields, Long bookId, Pageable pageable) {
+        return ARCHIVED_LOAN_FIELDS.select(entityManager, fields)
+                .where("where l.bookId = :bookId")
+                .parameter("bookId", bookId)
+                .getList(pageable);
+    }
+}
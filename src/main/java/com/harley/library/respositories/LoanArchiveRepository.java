@@ -0,0 +1,77 @@
+package com.harley.library.respositories;
+
+import com.harley.library.dtos.LegacyCustomerDTO;
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.entities.LoanArchive;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface LoanArchiveRepository extends JpaRepository<LoanArchive, Long>, LoanArchiveFieldsRepository {
+
+    @Modifying
+    @Query("insert into LoanArchive (id, customerId, legacyCustomer, legacyCustomerEmail, bookId, date, lastNotified, " +
+            "reminderCount) select l.id, l.customer.id, l.legacyCustomer, l.legacyCustomerEmail, l.book.id, l.date, " +
+            "l.lastNotified, l.reminderCount " +
+            "from Loan l where l.id in :ids")
+    int archive(@Param("ids") List<Long> ids);
+
+    @Query("select new com.harley.library.dtos.LoanDTO(l.id, c.name, c.email, l.bookId, b.title, b.author, b.isbn) " +
+            "from LoanArchive l left join Book b on b.id = l.bookId left join Customer c on c.id = l.customerId " +
+            "where l.bookId = :bookId order by l.id")
+    List<LoanDTO> findByBookId(@Param("bookId") Long bookId, Pageable pageable);
+
+    long countByBookId(Long bookId);
+
+    @Query("select new com.harley.library.dtos.LoanDTO(l.id, c.name, c.email, l.bookId, b.title, b.author, b.isbn) " +
+            "from LoanArchive l left join Book b on b.id = l.bookId left join Customer c on c.id = l.customerId " +
+            "where l.customerId = :customerId order by l.id")
+    List<LoanDTO> findByCustomerId(@Param("customerId") Long customerId, Pageable pageable);
+
+    long countByCustomerId(Long customerId);
+
+    @Query("select new com.harley.library.dtos.LoanDTO(l.id, c.name, c.email, l.bookId, b.title, b.author, b.isbn) " +
+            "from LoanArchive l left join Book b on b.id = l.bookId left join Customer c on c.id = l.customerId " +
+            "where l.id in :ids")
+    List<LoanDTO> findAllDTOByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.harley.library.dtos.LoanDTO(l.id, c.name, c.email, l.bookId, b.title, b.author, b.isbn) " +
+            "from LoanArchive l left join Book b on b.id = l.bookId left join Customer c on c.id = l.customerId " +
+            "where b.isbn = :isbn or c.name = :customer order by l.id")
+    List<LoanDTO> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer,
+                                           Pageable pageable);
+
+    @Query("select count(l) from LoanArchive l left join Book b on b.id = l.bookId " +
+            "left join Customer c on c.id = l.customerId where b.isbn = :isbn or c.name = :customer")
+    long countByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.harley.library.dtos.LoanExportDTO(l.id, l.bookId, b.isbn, l.customerId, c.name, c.email, l.date, true) " +
+            "from LoanArchive l left join Book b on b.id = l.bookId left join Customer c on c.id = l.customerId " +
+            "where (:isbn is null and :customer is null) or b.isbn = :isbn or c.name = :customer " +
+            "order by l.id")
+    Stream<LoanExportDTO> streamByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
+
+    @Query("select new com.harley.library.dtos.LegacyCustomerDTO(l.id, l.legacyCustomer, l.legacyCustomerEmail) " +
+            "from LoanArchive l where l.customerId is null " +
+            "and (l.legacyCustomer is not null or l.legacyCustomerEmail is not null) order by l.id")
+    List<LegacyCustomerDTO> findLegacyCustomers(Pageable pageable);
+
+    @Modifying
+    @Query("update LoanArchive l set l.customerId = :customerId, l.legacyCustomer = null, l.legacyCustomerEmail = null " +
+            "where l.id in :ids")
+    int assignCustomer(@Param("ids") List<Long> ids, @Param("customerId") Long customerId);
+}
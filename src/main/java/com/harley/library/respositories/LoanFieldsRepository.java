@@ -0,0 +1,33 @@
+package com.harley.library.respositories;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+
+public interface LoanFieldsRepository {
+
+    String CUSTOMER_JOIN = "left join l.customer c";
+
+    String BOOK_JOIN = "join l.book b";
+
+    SparseFields LOAN_FIELDS = new SparseFields("Loan", "l")
+            .field("id", "l.id")
+            .field("customer", "c.name", CUSTOMER_JOIN)
+            .field("customerEmail", "c.email", CUSTOMER_JOIN)
+            .field("isbn", "b.isbn", BOOK_JOIN)
+            .field("book.id", "l.book.id")
+            .field("book.title", "b.title", BOOK_JOIN)
+            .field("book.author", "b.author", BOOK_JOIN)
+            .field("book.isbn", "b.isbn", BOOK_JOIN)
+            .field("version", "l.version");
+
+    /**
+     * Same rows as {@link LoanRepository#findByBookIsbnOrCustomer}, selecting only the fields.
+     */
+    Page<Map<String, Object>> findFieldsByBookIsbnOrCustomer(List<String> fields, String isbn, String customer,
+                                                             Pageable pageable);
+
+    Page<Map<String, Object>> findFieldsByBookId(List<String> fields, Long bookId, Pageable pageable);
+}
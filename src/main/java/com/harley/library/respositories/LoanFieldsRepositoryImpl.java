@@ -0,0 +1,45 @@
+package com.harley.library.respositories;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Map;
+
+public class LoanFieldsRepositoryImpl implements LoanFieldsRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<Map<String, Object>> findFieldsByBookIsbnOrCustomer(List<String> fields, String isbn, String customer,
+                                                                    Pageable pageable) {
+        // like the typed query, a missing isbn or customer matches nothing, so the book is only joined for an isbn
+        if (isbn == null && customer == null) {
+            return Page.empty(pageable);
+        }
+        SparseFields.SelectQuery query = LOAN_FIELDS.select(entityManager, fields);
+        if (isbn == null) {
+            return query.join(CUSTOMER_JOIN).where("where c.name = :customer").parameter("customer", customer).getPage(pageable);
+        }
+        if (customer == null) {
+            return query.join(BOOK_JOIN).where("where b.isbn = :isbn").parameter("isbn", isbn).getPage(pageable);
+        }
+        return query.join(BOOK_JOIN)
+                .join(CUSTOMER_JOIN)
+                .where("where b.isbn = :isbn or c.name = :customer")
+                .parameter("isbn", isbn)
+                .parameter("customer", customer)
+                .getPage(pageable);
+    }
+
+    @Override
+    public Page<Map<String, Object>> findFieldsByBookId(List<String> fields, Long bookId, Pageable pageable) {
+        return LOAN_FIELDS.select(entityManager, fields)
+                .where("where l.book.id = :bookId")
+                .parameter("bookId", bookId)
+                .getPage(pageable);
+    }
+}
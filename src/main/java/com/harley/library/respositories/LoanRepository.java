@@ -1,30 +1,134 @@
 package com.harley.library.respositories;
 
+import com.harley.library.dtos.LegacyCustomerDTO;
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.dtos.LoanReminderDTO;
 import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
 import com.harley.library.entities.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanFieldsRepository {
 
     @Query(value = "select case when (count(l.id) > 0) then true else false end " +
             "from Loan l where l.book = :book and (l.returned is null or l.returned is not true)")
     boolean existsByBookAndNotReturned(@Param("book") Book book);
 
-    @Query(value = "select l from Loan l join l.book as b where b.isbn = :isbn or l.customer = :customer")
-    Page<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+    @Query(value = "select new com.harley.library.dtos.LoanDTO(l.id, c.name, c.email, b.id, b.title, b.author, b.isbn, l.version) " +
+            "from Loan l join l.book b left join l.customer c where b.isbn = :isbn or c.name = :customer",
+            countQuery = "select count(l) from Loan l join l.book b left join l.customer c " +
+                    "where b.isbn = :isbn or c.name = :customer")
+    Page<LoanDTO> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+
+    @Query(value = "select new com.harley.library.dtos.LoanDTO(l.id, c.name, c.email, b.id, b.title, b.author, b.isbn, l.version) " +
+            "from Loan l join l.book b left join l.customer c where b.id = :bookId",
+            countQuery = "select count(l) from Loan l where l.book.id = :bookId")
+    Page<LoanDTO> findByBookId(@Param("bookId") Long bookId, Pageable pageable);
+
+    @Query(value = "select new com.harley.library.dtos.LoanDTO(l.id, c.name, c.email, b.id, b.title, b.author, b.isbn, l.version) " +
+            "from Loan l join l.book b join l.customer c " +
+            "where c.id = :customerId and (l.returned is null or l.returned = false)",
+            countQuery = "select count(l) from Loan l " +
+                    "where l.customer.id = :customerId and (l.returned is null or l.returned = false)")
+    Page<LoanDTO> findOpenByCustomerId(@Param("customerId") Long customerId, Pageable pageable);
+
+    @Query(value = "select new com.harley.library.dtos.LoanDTO(l.id, c.name, c.email, b.id, b.title, b.author, b.isbn, l.version) " +
+            "from Loan l join l.book b join l.customer c where c.id = :customerId and l.returned = true",
+            countQuery = "select count(l) from Loan l where l.customer.id = :customerId and l.returned = true")
+    Page<LoanDTO> findReturnedByCustomerId(@Param("customerId") Long customerId, Pageable pageable);
+
+    @Query("select new com.harley.library.dtos.LoanDTO(l.id, c.name, c.email, b.id, b.title, b.author, b.isbn, l.version) " +
+            "from Loan l join l.book b left join l.customer c where l.id in :ids")
+    List<LoanDTO> findAllDTOByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.harley.library.dtos.LoanExportDTO(l.id, b.id, b.isbn, c.id, c.name, c.email, l.date, l.returned) " +
+            "from Loan l join l.book b left join l.customer c where l.id = :id")
+    Optional<LoanExportDTO> findExportById(@Param("id") Long id);
+
+    // a returned loan leaves the reminder index; a loan already in the requested state isn't touched
+    @Modifying(clearAutomatically = true)
+    @Query("update Loan l set l.returned = :returned, l.version = l.version + 1, " +
+            "l.nextReminder = case when :returned = true then null else l.nextReminder end " +
+            "where l.id = :id and (:version is null or l.version = :version) " +
+            "and coalesce(l.returned, false) <> :returned")
+    int updateReturned(@Param("id") Long id, @Param("returned") Boolean returned, @Param("version") Long version);
+
+    @Query("select l.version from Loan l where l.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select new com.harley.library.dtos.LoanReminderDTO(l.id, c.email, coalesce(l.reminderCount, 0)) " +
+            "from Loan l left join l.customer c where l.nextReminder <= :today and l.date <= :lateSince " +
+            "and (l.returned is null or l.returned = false) order by l.id")
+    List<LoanReminderDTO> findDueForReminder(@Param("today") LocalDate today, @Param("lateSince") LocalDate lateSince);
+
+    @Modifying
+    @Query("update Loan l set l.lastNotified = :notified, l.reminderCount = :reminderCount, " +
+            "l.nextReminder = :nextReminder where l.id in :ids")
+    int markReminded(@Param("ids") List<Long> ids, @Param("notified") LocalDate notified,
+                     @Param("reminderCount") Integer reminderCount, @Param("nextReminder") LocalDate nextReminder);
+
+    @Modifying
+    @Query("update Loan l set l.nextReminder = :nextReminder where l.id = :id")
+    int scheduleReminder(@Param("id") Long id, @Param("nextReminder") LocalDate nextReminder);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select distinct l.book.id from Loan l where l.returned is null or l.returned is not true")
+    Stream<Long> streamLentBookIds();
+
+    // open loans saved before reminders were scheduled; a loan whose reminders ran out has a reminder count
+    @Query("select l.id from Loan l where l.nextReminder is null and coalesce(l.reminderCount, 0) = 0 " +
+            "and l.date is not null and (l.returned is null or l.returned = false) order by l.id")
+    List<Long> findIdsWithoutReminder(Pageable pageable);
+
+    // due from the loan date on: the reminder query still waits until the loan is late
+    @Modifying
+    @Query("update Loan l set l.nextReminder = l.date where l.id in :ids")
+    int scheduleFirstReminder(@Param("ids") List<Long> ids);
+
+    // locked, so a loan can't be un-returned while it is being moved to the archive
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l.id from Loan l where l.returned = true and l.date < :before order by l.id")
+    List<Long> findArchivableIds(@Param("before") LocalDate before, Pageable pageable);
+
+    @Modifying
+    @Query("delete from Loan l where l.id in :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.harley.library.dtos.LoanExportDTO(l.id, b.id, b.isbn, c.id, c.name, c.email, l.date, l.returned) " +
+            "from Loan l join l.book b left join l.customer c " +
+            "where (:isbn is null and :customer is null) or b.isbn = :isbn or c.name = :customer " +
+            "order by l.id")
+    Stream<LoanExportDTO> streamByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
 
-    Page<Loan> findByBook(Book book, Pageable pageable);
+    @Query("select new com.harley.library.dtos.LegacyCustomerDTO(l.id, l.legacyCustomer, l.legacyCustomerEmail) " +
+            "from Loan l where l.customer is null " +
+            "and (l.legacyCustomer is not null or l.legacyCustomerEmail is not null) order by l.id")
+    List<LegacyCustomerDTO> findLegacyCustomers(Pageable pageable);
 
-    @Query("select l from Loan l where l.date <= :threeDaysAgo and (l.returned is null or l.returned is false)")
-    List<Loan> findAllLateLoans(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+    @Modifying
+    @Query("update Loan l set l.customer = :customer, l.legacyCustomer = null, l.legacyCustomerEmail = null " +
+            "where l.id in :ids")
+    int assignCustomer(@Param("ids") List<Long> ids, @Param("customer") Customer customer);
 }
@@ -0,0 +1,28 @@
+package com.harley.library.respositories;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+/**
+ * A page that starts at any row instead of a multiple of its size, for reading the rest of a page from a second
+ * table once the first one ran out.
+ */
+public class OffsetPageRequest extends PageRequest {
+
+    private final long offset;
+
+    public OffsetPageRequest(long offset, int size, Sort sort) {
+        super(0, size, sort);
+        this.offset = offset;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public PageRequest next() {
+        return new OffsetPageRequest(offset + getPageSize(), getPageSize(), getSort());
+    }
+}
@@ -0,0 +1,166 @@
+package com.harley.library.respositories;
+
+import com.harley.library.exceptions.BusinessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The fields a list endpoint lets callers pick with {@code fields=}, each mapped to the JPQL path that selects it.
+ * Only the picked paths are selected, and a join is only added when a picked field or the filter needs it. A dotted
+ * name like {@code book.title} ends up nested in the row, and {@code book} picks every field under it.
+ */
+public class SparseFields {
+
+    private final String entity;
+    private final String alias;
+    private final Map<String, String> paths = new LinkedHashMap<>();
+    private final Map<String, String> joins = new HashMap<>();
+
+    public SparseFields(String entity, String alias) {
+        this.entity = entity;
+        this.alias = alias;
+    }
+
+    public SparseFields field(String name, String path) {
+        paths.put(name, path);
+        return this;
+    }
+
+    public SparseFields field(String name, String path, String join) {
+        joins.put(name, join);
+        return field(name, path);
+    }
+
+    /**
+     * Returns the known fields matching the requested names, in the order they were declared.
+     */
+    public List<String> resolve(Collection<String> requested) {
+        Set<String> selected = new HashSet<>();
+        for (String field : requested) {
+            String name = field.trim();
+            boolean known = false;
+            for (String candidate : paths.keySet()) {
+                if (candidate.equals(name) || candidate.startsWith(name + ".")) {
+                    selected.add(candidate);
+                    known = true;
+                }
+            }
+            if (!known) {
+                throw new BusinessException("Unknown field: " + name + ", pick from " + paths.keySet());
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new BusinessException("Inform at least one field, pick from " + paths.keySet());
+        }
+        return paths.keySet().stream().filter(selected::contains).collect(Collectors.toList());
+    }
+
+    public SelectQuery select(EntityManager entityManager, List<String> fields) {
+        return new SelectQuery(entityManager, fields);
+    }
+
+    public class SelectQuery {
+
+        private final EntityManager entityManager;
+        private final List<String> fields;
+        private final Set<String> joinClauses = new LinkedHashSet<>();
+        private final Map<String, Object> parameters = new HashMap<>();
+        private String where = "";
+
+        SelectQuery(EntityManager entityManager, List<String> fields) {
+            this.entityManager = entityManager;
+            this.fields = fields;
+            for (String field : fields) {
+                if (!paths.containsKey(field)) {
+                    throw new IllegalArgumentException("Unknown field: " + field);
+                }
+                if (joins.containsKey(field)) {
+                    joinClauses.add(joins.get(field));
+                }
+            }
+        }
+
+        public SelectQuery join(String joinClause) {
+            joinClauses.add(joinClause);
+            return this;
+        }
+
+        public SelectQuery where(String condition) {
+            where = condition;
+            return this;
+        }
+
+        public SelectQuery parameter(String name, Object value) {
+            parameters.put(name, value);
+            return this;
+        }
+
+        public String toJpql() {
+            return "select " + fields.stream().map(paths::get).collect(Collectors.joining(", ")) + from();
+        }
+
+        public List<Map<String, Object>> getList(Pageable pageable) {
+            // without a requested order the id keeps the pages stable
+            Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("id");
+            Query query = entityManager.createQuery(QueryUtils.applySorting(toJpql(), sort, alias));
+            parameters.forEach(query::setParameter);
+            if (pageable.isPaged()) {
+                query.setFirstResult((int) pageable.getOffset());
+                query.setMaxResults(pageable.getPageSize());
+            }
+            List<?> results = query.getResultList();
+            List<Map<String, Object>> rows = new ArrayList<>(results.size());
+            for (Object result : results) {
+                rows.add(toRow(result));
+            }
+            return rows;
+        }
+
+        public long count() {
+            Query query = entityManager.createQuery("select count(" + alias + ")" + from());
+            parameters.forEach(query::setParameter);
+            return (Long) query.getSingleResult();
+        }
+
+        public Page<Map<String, Object>> getPage(Pageable pageable) {
+            return PageableExecutionUtils.getPage(getList(pageable), pageable, this::count);
+        }
+
+        private String from() {
+            return " from " + entity + " " + alias + " " + String.join(" ", joinClauses) + " " + where;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<String, Object> toRow(Object result) {
+            Object[] values = fields.size() == 1 ? new Object[]{result} : (Object[]) result;
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                String field = fields.get(i);
+                int dot = field.indexOf('.');
+                if (dot < 0) {
+                    row.put(field, values[i]);
+                } else {
+                    ((Map<String, Object>) row.computeIfAbsent(field.substring(0, dot), group -> new LinkedHashMap<>()))
+                            .put(field.substring(dot + 1), values[i]);
+                }
+            }
+            return row;
+        }
+    }
+}
@@ -1,21 +1,45 @@
 package com.harley.library.services;
 
+import com.harley.library.dtos.AvailabilityCountDTO;
+import com.harley.library.dtos.BookAvailabilityDTO;
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.BookPatchDTO;
+import com.harley.library.dtos.BookSuggestionDTO;
+import com.harley.library.dtos.MultiGetDTO;
 import com.harley.library.entities.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 public interface BookService {
     Book save(Book book);
 
     Optional<Book> getById(Long id);
 
+    Optional<byte[]> getSerializedById(Long id, Function<Book, byte[]> serializer);
+
+    MultiGetDTO<BookDTO> getByIds(List<Long> ids);
+
     void delete(Book book);
 
     Book update(Book book);
 
-    Page find(Book book, Pageable pageable);
+    boolean updatePartially(Long id, BookPatchDTO patch);
+
+    Page<BookDTO> find(BookDTO filter, Boolean available, Pageable pageable);
+
+    Page<Map<String, Object>> find(BookDTO filter, Boolean available, Set<String> fields, Pageable pageable);
+
+    List<BookSuggestionDTO> suggest(String prefix, int limit);
+
+    Optional<BookAvailabilityDTO> getAvailability(Long id);
+
+    AvailabilityCountDTO countAvailability();
 
     Optional<Book> getBookByIsbn(String isbn);
 }
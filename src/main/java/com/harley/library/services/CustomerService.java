@@ -0,0 +1,13 @@
+package com.harley.library.services;
+
+import com.harley.library.entities.Customer;
+
+import java.util.Optional;
+
+public interface CustomerService {
+    Customer resolve(String name, String email);
+
+    Optional<Customer> getById(Long id);
+
+    Optional<Customer> getByEmail(String email);
+}
@@ -0,0 +1,14 @@
+package com.harley.library.services;
+
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.enums.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ExportService {
+    void exportBooks(BookDTO filter, ExportFormat format, OutputStream outputStream) throws IOException;
+
+    void exportLoans(LoanDTO filter, ExportFormat format, OutputStream outputStream) throws IOException;
+}
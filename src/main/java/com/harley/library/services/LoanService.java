@@ -1,24 +1,42 @@
 package com.harley.library.services;
 
 import com.harley.library.dtos.LoanDTO;
-import com.harley.library.entities.Book;
+import com.harley.library.dtos.LoanReminderDTO;
+import com.harley.library.dtos.MultiGetDTO;
 import com.harley.library.entities.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface LoanService {
     Loan save(Loan loan);
 
     Optional<Loan> getById(Long id);
 
+    MultiGetDTO<LoanDTO> getByIds(List<Long> ids);
+
     Loan update(Loan loan);
 
-    Page<Loan> find(LoanDTO loanDTO, Pageable pageable);
+    boolean updateReturned(Long id, Boolean returned, Long version);
+
+    Page<LoanDTO> find(LoanDTO loanDTO, Pageable pageable);
+
+    Page<Map<String, Object>> find(LoanDTO loanDTO, Set<String> fields, Pageable pageable);
+
+    Page<LoanDTO> getLoansByBook(Long bookId, Pageable pageable);
+
+    Page<Map<String, Object>> getLoansByBook(Long bookId, Set<String> fields, Pageable pageable);
+
+    Page<LoanDTO> getOpenLoansByCustomer(Long customerId, Pageable pageable);
+
+    Page<LoanDTO> getPastLoansByCustomer(Long customerId, Pageable pageable);
 
-    Page<Loan> getLoansByBook(Book book, Pageable pageable);
+    List<LoanReminderDTO> getLoansDueForReminder(LocalDate today);
 
-    List<Loan> getAllLateLoans();
+    void markReminded(List<Long> ids, int reminderCount, LocalDate nextReminder, LocalDate notified);
 }
\ No newline at end of file
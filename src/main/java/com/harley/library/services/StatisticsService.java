@@ -0,0 +1,21 @@
+package com.harley.library.services;
+
+import com.harley.library.dtos.BookLoanCountDTO;
+import com.harley.library.dtos.CustomerLoanCountDTO;
+import com.harley.library.dtos.DailyLoanCountDTO;
+import com.harley.library.dtos.LoanSummaryDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface StatisticsService {
+    LoanSummaryDTO getSummary();
+
+    List<DailyLoanCountDTO> getLoansPerDay(LocalDate from, LocalDate to);
+
+    List<BookLoanCountDTO> getMostBorrowedBooks(int limit);
+
+    List<CustomerLoanCountDTO> getMostBorrowingCustomers(int limit);
+
+    boolean rebuild();
+}
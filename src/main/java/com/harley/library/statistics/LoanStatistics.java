@@ -0,0 +1,191 @@
+package com.harley.library.statistics;
+
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.events.LoanEvent;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Loan counters kept up to date from the loan events, so dashboards never group the loan table. A rebuild folds the
+ * loan history into fresh counters while events keep being applied to the current ones, then replays the events it
+ * missed and swaps them in. Applying an event the history already contains changes nothing, since the counted loan
+ * ids are kept and a loan is only counted the first time it is checked out, whatever order the checkouts commit in.
+ */
+public class LoanStatistics {
+
+    private volatile Counters counters = new Counters();
+    // events applied while a rebuild reads the history, guarded by this
+    private List<LoanEvent> missedEvents;
+
+    public synchronized void apply(LoanEvent event) {
+        counters.apply(event);
+        if (missedEvents != null) {
+            missedEvents.add(event);
+        }
+    }
+
+    /**
+     * Replaces the counters with ones folded from the loan history. Returns false when a rebuild is already running.
+     */
+    public boolean rebuild(Supplier<Stream<LoanExportDTO>> history) {
+        synchronized (this) {
+            if (missedEvents != null) {
+                return false;
+            }
+            missedEvents = new ArrayList<>();
+        }
+        Counters rebuilt = new Counters();
+        try (Stream<LoanExportDTO> loans = history.get()) {
+            loans.forEach(rebuilt::add);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                missedEvents = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            missedEvents.forEach(rebuilt::apply);
+            counters = rebuilt;
+            missedEvents = null;
+        }
+        return true;
+    }
+
+    public long getTotalLoans() {
+        return counters.totalLoans;
+    }
+
+    public int getOpenLoans() {
+        return counters.openLoans.size();
+    }
+
+    /**
+     * Open loans taken on or before the cutoff.
+     */
+    public long getOverdueLoans(LocalDate cutoff) {
+        return counters.openLoansByDay.headMap(cutoff, true).values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Checkouts per day between the two dates, inclusive, with the days without loans left out.
+     */
+    public NavigableMap<LocalDate, Long> getLoansPerDay(LocalDate from, LocalDate to) {
+        return counters.loansByDay.subMap(from, true, to, true);
+    }
+
+    public List<Map.Entry<Long, Long>> getMostBorrowedBooks(int limit) {
+        return top(counters.loansByBook, limit);
+    }
+
+    /**
+     * Loan counts keyed by customer id.
+     */
+    public List<Map.Entry<Long, Long>> getMostBorrowingCustomers(int limit) {
+        return top(counters.loansByCustomer, limit);
+    }
+
+    /**
+     * The name the customer had on their latest counted loan.
+     */
+    public String getCustomerName(Long customerId) {
+        return counters.customerNames.get(customerId);
+    }
+
+    // Keeps the limit largest counts in a heap instead of sorting every key.
+    private static <K extends Comparable<K>> List<Map.Entry<K, Long>> top(Map<K, Long> counts, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        Comparator<Map.Entry<K, Long>> order = Map.Entry.<K, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<K, Long>> heap = new PriorityQueue<>(limit + 1, order.reversed());
+        for (Map.Entry<K, Long> count : counts.entrySet()) {
+            heap.add(Map.entry(count.getKey(), count.getValue()));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Map.Entry<K, Long>> top = new ArrayList<>(heap);
+        top.sort(order);
+        return top;
+    }
+
+    private static class Counters {
+
+        private final NavigableMap<LocalDate, Long> loansByDay = new ConcurrentSkipListMap<>();
+        private final Map<Long, LocalDate> openLoans = new ConcurrentHashMap<>();
+        private final NavigableMap<LocalDate, Long> openLoansByDay = new ConcurrentSkipListMap<>();
+        private final Map<Long, Long> loansByBook = new ConcurrentHashMap<>();
+        private final Map<Long, Long> loansByCustomer = new ConcurrentHashMap<>();
+        private final Map<Long, String> customerNames = new ConcurrentHashMap<>();
+        // only touched while the counters are built or under the LoanStatistics lock
+        private final Roaring64Bitmap countedLoans = new Roaring64Bitmap();
+        private volatile long totalLoans;
+
+        void add(LoanExportDTO loan) {
+            count(loan.getId(), loan.getBookId(), loan.getCustomerId(), loan.getCustomer(), loan.getDate());
+            if (!Boolean.TRUE.equals(loan.getReturned())) {
+                open(loan.getId(), loan.getDate());
+            }
+        }
+
+        void apply(LoanEvent event) {
+            if (event.getType() == LoanEvent.Type.RETURNED) {
+                LocalDate date = openLoans.remove(event.getLoanId());
+                if (date != null) {
+                    openLoansByDay.computeIfPresent(date, (day, loans) -> loans == 1 ? null : loans - 1);
+                }
+                return;
+            }
+            LocalDate date = Instant.ofEpochMilli(event.getTimestamp()).atZone(ZoneId.systemDefault()).toLocalDate();
+            // a return being undone reopens the loan without adding one
+            if (event.getType() == LoanEvent.Type.CHECKED_OUT) {
+                count(event.getLoanId(), event.getBookId(), event.getCustomerId(), event.getCustomer(), date);
+            }
+            if (!openLoans.containsKey(event.getLoanId())) {
+                open(event.getLoanId(), date);
+            }
+        }
+
+        private void count(long loanId, Long bookId, Long customerId, String customer, LocalDate date) {
+            if (countedLoans.contains(loanId)) {
+                return;
+            }
+            countedLoans.addLong(loanId);
+            totalLoans++;
+            if (date != null) {
+                loansByDay.merge(date, 1L, Long::sum);
+            }
+            if (bookId != null) {
+                loansByBook.merge(bookId, 1L, Long::sum);
+            }
+            if (customerId != null) {
+                loansByCustomer.merge(customerId, 1L, Long::sum);
+                if (customer != null) {
+                    customerNames.put(customerId, customer);
+                }
+            }
+        }
+
+        private void open(long loanId, LocalDate date) {
+            if (date == null) {
+                return;
+            }
+            openLoans.put(loanId, date);
+            openLoansByDay.merge(date, 1L, Long::sum);
+        }
+    }
+}
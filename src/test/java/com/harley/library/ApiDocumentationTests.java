@@ -0,0 +1,29 @@
+package com.harley.library;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Packaging writes this document to static/api-docs/swagger.json with ApiDocumentationGenerator.
+@SpringBootTest
+@AutoConfigureMockMvc
+class ApiDocumentationTests {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Test
+	void documentTheApi() throws Exception {
+		mockMvc.perform(get("/v2/api-docs"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("paths['/api/books']").exists())
+				.andExpect(jsonPath("paths['/api/loans']").exists());
+	}
+
+}
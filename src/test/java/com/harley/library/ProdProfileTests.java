@@ -0,0 +1,23 @@
+package com.harley.library;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import springfox.documentation.spring.web.plugins.Docket;
+
+@SpringBootTest
+@ActiveProfiles("prod")
+class ProdProfileTests {
+
+	@Autowired
+	ApplicationContext applicationContext;
+
+	@Test
+	void contextLoadsWithoutRuntimeSwaggerScan() {
+		Assertions.assertThat(applicationContext.getBeanNamesForType(Docket.class)).isEmpty();
+	}
+
+}
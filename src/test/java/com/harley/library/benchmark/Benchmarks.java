@@ -0,0 +1,98 @@
+package com.harley.library.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The harness shared by the benchmarks and the load test: warms a task up, times every iteration of it on the
+ * calling thread and writes the reports as JSON under target/benchmarks.
+ */
+public final class Benchmarks {
+
+    private static final Path OUTPUT = Path.of("target", "benchmarks");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private Benchmarks() {
+    }
+
+    public static Measurement measure(int warmup, int iterations, Iteration iteration) throws Exception {
+        warmUp(warmup, iteration);
+        return time(iterations, iteration);
+    }
+
+    public static void warmUp(int warmup, Iteration iteration) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            iteration.run(i);
+        }
+    }
+
+    public static Measurement time(int iterations, Iteration iteration) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] latencies = new long[iterations];
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            iteration.run(i);
+            latencies[i] = System.nanoTime() - start;
+        }
+        return new Measurement(latencies, threads.getCurrentThreadAllocatedBytes() - bytesBefore);
+    }
+
+    /**
+     * Writes the report to target/benchmarks/{name}.json and returns its path.
+     */
+    public static Path write(String name, Object report) throws IOException {
+        Path output = OUTPUT.resolve(name + ".json");
+        Files.createDirectories(OUTPUT);
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), report);
+        return output;
+    }
+
+    @FunctionalInterface
+    public interface Iteration {
+        void run(int index) throws Exception;
+    }
+
+    public static final class Measurement {
+
+        private final long[] sortedNanos;
+        private final long totalNanos;
+        private final long allocatedBytes;
+
+        private Measurement(long[] nanos, long allocatedBytes) {
+            this.totalNanos = Arrays.stream(nanos).sum();
+            this.sortedNanos = nanos;
+            Arrays.sort(sortedNanos);
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public int getIterations() {
+            return sortedNanos.length;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double meanMicros() {
+            return totalNanos / 1_000.0 / sortedNanos.length;
+        }
+
+        public double p50Micros() {
+            return sortedNanos[sortedNanos.length / 2] / 1_000.0;
+        }
+
+        public double p99Micros() {
+            return sortedNanos[sortedNanos.length * 99 / 100] / 1_000.0;
+        }
+
+        public long allocatedBytesPerIteration() {
+            return allocatedBytes / sortedNanos.length;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.harley.library.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harley.library.cache.BookCache;
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.entities.Book;
+import com.harley.library.implementations.BookServiceImp;
+import com.harley.library.indexes.BookAvailabilityIndex;
+import com.harley.library.indexes.BookSuggestIndex;
+import com.harley.library.indexes.IsbnIndex;
+import com.harley.library.respositories.BookChangeRepository;
+import com.harley.library.respositories.BookRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.modelmapper.ModelMapper;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Compares GET /api/books/{id} mapping the cached book with ModelMapper and serializing it with Jackson on every
+// call (the previous path) against the cached response bytes. Run with: mvn test -Pbenchmark -Dtest=BookResponseBenchmark
+@Tag("benchmark")
+class BookResponseBenchmark {
+
+    private static final int BOOKS = 1_000;
+    private static final int WARMUP = 20_000;
+    private static final int REQUESTS = 100_000;
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    @DisplayName("Compare latency and allocation per request of mapping and serializing against cached bytes")
+    void compareSerializingWithCachedBytes() throws Exception {
+        BookServiceImp bookService = createBookService();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("books", BOOKS);
+        report.put("mapAndSerialize", measure(id -> toJson(bookService.getById(id).orElseThrow())));
+        report.put("cachedBytes", measure(id -> bookService.getSerializedById(id, this::toJson).orElseThrow()));
+
+        Benchmarks.write("book-response", report);
+    }
+
+    private Map<String, Object> measure(LongFunction<byte[]> request) throws Exception {
+        Benchmarks.warmUp(WARMUP, i -> assertThat(request.apply(1 + i % BOOKS)).isNotEmpty());
+        Benchmarks.Measurement measurement = Benchmarks.time(REQUESTS, i -> request.apply(1 + i % BOOKS));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("p50Micros", measurement.p50Micros());
+        result.put("p99Micros", measurement.p99Micros());
+        result.put("allocatedBytesPerRequest", measurement.allocatedBytesPerIteration());
+        return result;
+    }
+
+    private byte[] toJson(Book book) {
+        try {
+            return objectMapper.writeValueAsBytes(modelMapper.map(book, BookDTO.class));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Every book is loaded once and then served from the book cache, as on a warm instance.
+    private BookServiceImp createBookService() {
+        BookRepository bookRepository = Mockito.mock(BookRepository.class);
+        Mockito.when(bookRepository.findById(Mockito.anyLong())).thenAnswer(invocation -> {
+            long id = invocation.getArgument(0);
+            return Optional.of(Book.builder()
+                    .id(id)
+                    .title("The Book Number " + id)
+                    .author("Author " + id % 100)
+                    .isbn("978000000" + id)
+                    .version(0L)
+                    .build());
+        });
+        BookCache bookCache = new BookCache(Caffeine.newBuilder().build(), Caffeine.newBuilder().build());
+        return new BookServiceImp(bookRepository, Mockito.mock(BookChangeRepository.class), bookCache,
+                new BookAvailabilityIndex(), new BookSuggestIndex(), new IsbnIndex());
+    }
+}
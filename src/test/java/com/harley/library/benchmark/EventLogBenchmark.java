@@ -0,0 +1,69 @@
+package com.harley.library.benchmark;
+
+import com.harley.library.eventlog.LoanEventLog;
+import com.harley.library.events.LoanEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Appends a few million checkouts and returns to the loan event log and measures how long replaying them
+// takes. Run with: mvn test -Pbenchmark -Dtest=EventLogBenchmark [-Deventlog.events=...]
+@Tag("benchmark")
+class EventLogBenchmark {
+
+    private static final int EVENTS = Integer.getInteger("eventlog.events", 4_050_000);
+    private static final int BOOKS = 100_000;
+    private static final int CUSTOMERS = 20_000;
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Measure append throughput and the time to replay the log")
+    void measureAppendAndReplay() throws Exception {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("events", EVENTS);
+
+        long start = System.nanoTime();
+        int segments;
+        long syncs;
+        try (LoanEventLog log = new LoanEventLog(directory, SEGMENT_SIZE, 256, 50)) {
+            // every book is lent in one round and returned in the next one
+            for (int i = 0; i < EVENTS; i++) {
+                int round = i / BOOKS;
+                int book = i % BOOKS;
+                long loanId = (long) (round / 2) * BOOKS + book;
+                LoanEvent.Type type = round % 2 == 0 ? LoanEvent.Type.CHECKED_OUT : LoanEvent.Type.RETURNED;
+                log.append(new LoanEvent(type, loanId, book, (long) (book % CUSTOMERS) + 1,
+                        "customer-" + (book % CUSTOMERS), i));
+            }
+            segments = log.getSegmentCount();
+            syncs = log.getSyncs();
+        }
+        long appendNanos = System.nanoTime() - start;
+        report.put("appendEventsPerSecond", EVENTS / (appendNanos / 1e9));
+        report.put("segments", segments);
+        report.put("syncs", syncs);
+
+        try (LoanEventLog log = new LoanEventLog(directory, SEGMENT_SIZE, 256, 0)) {
+            long[] openLoans = new long[1];
+            start = System.nanoTime();
+            long replayed = log.replay(event -> openLoans[0] += event.getType() == LoanEvent.Type.CHECKED_OUT ? 1 : -1);
+            long replayNanos = System.nanoTime() - start;
+            assertThat(replayed).isEqualTo(EVENTS);
+            report.put("replayMillis", replayNanos / 1_000_000);
+            report.put("replayEventsPerSecond", EVENTS / (replayNanos / 1e9));
+            report.put("openLoans", openLoans[0]);
+        }
+
+        Benchmarks.write("event-log", report);
+    }
+}
@@ -0,0 +1,157 @@
+package com.harley.library.benchmark;
+
+import com.harley.library.entities.Book;
+import com.harley.library.indexes.IsbnIndex;
+import com.harley.library.indexes.IsbnKeys;
+import com.harley.library.indexes.LongLongHashMap;
+import com.harley.library.respositories.BookRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+// Compares the String-keyed isbn path with the numeric isbn index: the retained heap of a String -> Long map
+// against the primitive map for the same isbns, and the lookup latency of the isbn column query against an index
+// hit followed by the primary key load. Run with: mvn test -Pbenchmark -Dtest=IsbnIndexBenchmark
+@Tag("benchmark")
+@DataJpaTest
+class IsbnIndexBenchmark {
+
+    private static final int KEYS = 1_000_000;
+    private static final int BOOKS = 20_000;
+    private static final int WARMUP = 2_000;
+    private static final int QUERIES = 10_000;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Test
+    @DisplayName("Compare memory and lookup time of String isbns against numeric isbn keys")
+    void compareStringIsbnsWithIsbnKeys() throws Exception {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("memory", compareMemory());
+        report.put("lookups", compareLookups());
+
+        Benchmarks.write("isbn-index", report);
+    }
+
+    private Map<String, Object> compareMemory() {
+        String[] isbns = isbns(KEYS);
+        long before = usedHeap();
+        Map<String, Long> strings = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            // a copy, so the map is measured with its own strings as it would be when loaded from the database
+            strings.put(new String(isbns[i]), (long) i);
+        }
+        long stringBytes = usedHeap() - before;
+
+        before = usedHeap();
+        LongLongHashMap keys = new LongLongHashMap(KEYS, IsbnIndex.MISSING);
+        for (int i = 0; i < KEYS; i++) {
+            keys.put(IsbnKeys.toKey(isbns[i]), i);
+        }
+        long keyBytes = usedHeap() - before;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", KEYS);
+        result.put("stringMapBytesPerEntry", stringBytes / KEYS);
+        result.put("isbnKeyMapBytesPerEntry", keyBytes / KEYS);
+        result.put("isbnKeyMapTableBytesPerEntry", keys.getTableBytes() / KEYS);
+        result.put("stringMapLookupNanos", nanosPerLookup(isbns, isbn -> strings.get(isbn)));
+        result.put("isbnKeyMapLookupNanos", nanosPerLookup(isbns, isbn -> keys.get(IsbnKeys.toKey(isbn))));
+        // keep both maps reachable until they are measured
+        result.put("sizes", strings.size() + keys.size());
+        return result;
+    }
+
+    private Map<String, Object> compareLookups() throws Exception {
+        String[] isbns = isbns(BOOKS);
+        IsbnIndex index = new IsbnIndex();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = Book.builder().title("Book " + i).author("Author " + (i % 500)).isbn(isbns[i]).build();
+            entityManager.persist(book);
+            index.put(book.getIsbnKey(), book.getId());
+            if (i % 1_000 == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("books", BOOKS);
+        result.put("isbnColumn", measure(isbns, isbn -> {
+            bookRepository.findByIsbn(isbn);
+            entityManager.clear();
+        }));
+        result.put("isbnIndex", measure(isbns, isbn -> {
+            bookRepository.findById(index.get(IsbnKeys.toKey(isbn)));
+            entityManager.clear();
+        }));
+        return result;
+    }
+
+    // the isbns are drawn up front, so drawing them isn't timed
+    private Map<String, Object> measure(String[] isbns, Consumer<String> lookup) throws Exception {
+        Random random = new Random(42);
+        String[] picks = new String[WARMUP + QUERIES];
+        for (int i = 0; i < picks.length; i++) {
+            picks[i] = isbns[random.nextInt(isbns.length)];
+        }
+        Benchmarks.warmUp(WARMUP, i -> lookup.accept(picks[i]));
+        Benchmarks.Measurement measurement = Benchmarks.time(QUERIES, i -> lookup.accept(picks[WARMUP + i]));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("p50Micros", measurement.p50Micros());
+        result.put("p99Micros", measurement.p99Micros());
+        return result;
+    }
+
+    private static double nanosPerLookup(String[] isbns, Consumer<String> lookup) {
+        for (int round = 0; round < 3; round++) {
+            for (String isbn : isbns) {
+                lookup.accept(isbn);
+            }
+        }
+        long start = System.nanoTime();
+        for (String isbn : isbns) {
+            lookup.accept(isbn);
+        }
+        return (System.nanoTime() - start) / (double) isbns.length;
+    }
+
+    // Distinct hyphenated ISBN-13s, written the way users type them.
+    private static String[] isbns(int count) {
+        String[] isbns = new String[count];
+        for (int i = 0; i < count; i++) {
+            String body = String.format("978%09d", i * 7L + 100_000_000L);
+            int sum = 0;
+            for (int d = 0; d < 12; d++) {
+                sum += (body.charAt(d) - '0') * (d % 2 == 0 ? 1 : 3);
+            }
+            String isbn = body + (10 - sum % 10) % 10;
+            isbns[i] = isbn.substring(0, 3) + "-" + isbn.substring(3, 4) + "-" + isbn.substring(4, 7) + "-"
+                    + isbn.substring(7, 12) + "-" + isbn.substring(12);
+        }
+        return isbns;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
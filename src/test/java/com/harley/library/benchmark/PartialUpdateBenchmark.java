@@ -0,0 +1,86 @@
+package com.harley.library.benchmark;
+
+import com.harley.library.entities.Book;
+import com.harley.library.respositories.BookRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+// Compares the previous update path (load the book, change it, save and flush) against the single
+// versioned UPDATE statement. Run with: mvn test -Pbenchmark -Dtest=PartialUpdateBenchmark
+@Tag("benchmark")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class PartialUpdateBenchmark {
+
+    private static final int BOOKS = 500;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @Test
+    @DisplayName("Compare statements and time per update of load-and-save against the single statement update")
+    void compareLoadAndSaveWithPartialUpdate() throws Exception {
+        seed();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("updates", BOOKS);
+        report.put("loadAndSave", measure(id -> {
+            Book book = bookRepository.findById(id).orElseThrow();
+            book.setTitle("Title " + System.nanoTime());
+            bookRepository.save(book);
+        }));
+        report.put("partialUpdate", measure(id -> bookRepository.updatePartially(id, "Title " + System.nanoTime(), null, null)));
+
+        Benchmarks.write("partial-updates", report);
+    }
+
+    private Map<String, Object> measure(LongConsumer update) throws Exception {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        Benchmarks.warmUp(WARMUP, i -> runAll(update));
+        statistics.clear();
+        Benchmarks.Measurement measurement = Benchmarks.time(ITERATIONS, i -> runAll(update));
+        long updates = (long) BOOKS * ITERATIONS;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statementsPerUpdate", (double) statistics.getPrepareStatementCount() / updates);
+        result.put("entitiesLoadedPerUpdate", (double) statistics.getEntityLoadCount() / updates);
+        result.put("microsPerUpdate", measurement.meanMicros() / BOOKS);
+        return result;
+    }
+
+    // Every update is flushed and the context cleared, as it would be at the end of its own request.
+    private void runAll(LongConsumer update) {
+        for (Long id : ids) {
+            update.accept(id);
+            entityManager.flush();
+            entityManager.clear();
+        }
+    }
+
+    private void seed() {
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = Book.builder().title("Title " + i).author("Author " + i).isbn("isbn-" + i).build();
+            entityManager.persist(book);
+            ids.add(book.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
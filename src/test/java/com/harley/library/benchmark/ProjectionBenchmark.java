@@ -0,0 +1,108 @@
+package com.harley.library.benchmark;
+
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
+import com.harley.library.entities.Loan;
+import com.harley.library.respositories.LoanRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Compares a large loan page loaded as managed entities and mapped with ModelMapper (the previous list path)
+// against the DTO projection query. Run with: mvn test -Pbenchmark -Dtest=ProjectionBenchmark
+@Tag("benchmark")
+@DataJpaTest
+class ProjectionBenchmark {
+
+    private static final int ROWS = 2_000;
+    private static final int PAGE_SIZE = 1_000;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    private final ModelMapper modelMapper = new ModelMapper();
+
+    @Test
+    @DisplayName("Compare heap and CPU per row of entity mapping against DTO projection")
+    void compareEntityMappingWithProjection() throws Exception {
+        seed();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("pageSize", PAGE_SIZE);
+        report.put("entities", measure(this::loadEntities));
+        report.put("projection", measure(this::loadProjection));
+
+        Benchmarks.write("projections", report);
+    }
+
+    private List<LoanDTO> loadEntities() {
+        List<Loan> loans = entityManager
+                .createQuery("select l from Loan l join l.book b left join l.customer c where b.isbn = :isbn or c.name = :customer", Loan.class)
+                .setParameter("isbn", "none")
+                .setParameter("customer", "Harley")
+                .setMaxResults(PAGE_SIZE)
+                .getResultList();
+        return loans.stream().map(loan -> {
+            LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
+            loanDTO.setBook(modelMapper.map(loan.getBook(), BookDTO.class));
+            return loanDTO;
+        }).collect(Collectors.toList());
+    }
+
+    private List<LoanDTO> loadProjection() {
+        return loanRepository.findByBookIsbnOrCustomer("none", "Harley", PageRequest.of(0, PAGE_SIZE)).getContent();
+    }
+
+    // the persistence context is cleared after every page, as at the end of its request, and counted with it
+    private Map<String, Object> measure(Supplier<List<LoanDTO>> load) throws Exception {
+        Benchmarks.warmUp(WARMUP, i -> {
+            assertThat(load.get()).hasSize(PAGE_SIZE);
+            entityManager.clear();
+        });
+        Benchmarks.Measurement measurement = Benchmarks.time(ITERATIONS, i -> {
+            load.get();
+            entityManager.clear();
+        });
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("allocatedKilobytesPerPage", measurement.allocatedBytesPerIteration() / 1024.0);
+        result.put("microsPerRow", measurement.meanMicros() / PAGE_SIZE);
+        return result;
+    }
+
+    private void seed() {
+        Customer customer = Customer.builder().name("Harley").email("harley@email.com").build();
+        entityManager.persist(customer);
+        for (int i = 0; i < ROWS; i++) {
+            Book book = Book.builder().title("Title " + i).author("Author " + i).isbn("isbn-" + i).build();
+            entityManager.persist(book);
+            entityManager.persist(Loan.builder()
+                    .book(book)
+                    .customer(customer)
+                    .date(LocalDate.now())
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
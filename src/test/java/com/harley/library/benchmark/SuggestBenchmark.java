@@ -0,0 +1,94 @@
+package com.harley.library.benchmark;
+
+import com.harley.library.entities.Book;
+import com.harley.library.indexes.BookSuggestIndex;
+import com.harley.library.respositories.BookRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+// Compares the search box's previous round trip (containing LIKE page plus count query) with the in-memory
+// suggest index, for the prefixes typed one keystroke at a time. Run with: mvn test -Pbenchmark -Dtest=SuggestBenchmark
+@Tag("benchmark")
+@DataJpaTest
+class SuggestBenchmark {
+
+    private static final int BOOKS = 50_000;
+    private static final int LIMIT = 10;
+    private static final int WARMUP = 200;
+    private static final int QUERIES = 1_000;
+    private static final String[] WORDS = {"adventure", "history", "garden", "ocean", "machine", "winter",
+            "river", "shadow", "empire", "journey", "science", "secret", "island", "dream", "city", "war"};
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Test
+    @DisplayName("Compare latency per keystroke of the LIKE query against the suggest index")
+    void compareLikeQueryWithSuggestIndex() throws Exception {
+        BookSuggestIndex index = new BookSuggestIndex();
+        seed(index);
+        String[] prefixes = prefixes();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("books", BOOKS);
+        report.put("likeQuery", measure(prefixes,
+                prefix -> bookRepository.findByFilter(prefix, null, null, PageRequest.of(0, LIMIT))));
+        report.put("suggestIndex", measure(prefixes, prefix -> index.suggest(prefix, LIMIT)));
+
+        Benchmarks.write("suggest", report);
+    }
+
+    private Map<String, Object> measure(String[] prefixes, Consumer<String> query) throws Exception {
+        Benchmarks.Measurement measurement = Benchmarks.measure(WARMUP, QUERIES,
+                i -> query.accept(prefixes[i % prefixes.length]));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("p50Micros", measurement.p50Micros());
+        result.put("p99Micros", measurement.p99Micros());
+        return result;
+    }
+
+    // Every prefix of a random word, as typed one keystroke at a time.
+    private String[] prefixes() {
+        Random random = new Random(42);
+        String[] prefixes = new String[QUERIES];
+        int i = 0;
+        while (i < QUERIES) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            for (int length = 1; length <= word.length() && i < QUERIES; length++) {
+                prefixes[i++] = word.substring(0, length);
+            }
+        }
+        return prefixes;
+    }
+
+    private void seed(BookSuggestIndex index) {
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = Book.builder()
+                    .title(WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " " + i)
+                    .author("Author " + (i % 500))
+                    .isbn("isbn-" + i)
+                    .build();
+            entityManager.persist(book);
+            index.put(book.getId(), book.getTitle(), book.getAuthor());
+            if (i % 1_000 == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
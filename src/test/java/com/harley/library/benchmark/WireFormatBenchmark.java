@@ -0,0 +1,101 @@
+package com.harley.library.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.LoanDTO;
+import lombok.Data;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Run with: mvn test -Pbenchmark -Dtest=WireFormatBenchmark
+@Tag("benchmark")
+class WireFormatBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    @Test
+    @DisplayName("Compare bytes on the wire and serialize/parse cost of a loan page per format")
+    void compareWireFormats() throws Exception {
+        Page<LoanDTO> page = createLoanPage();
+        Map<String, ObjectMapper> formats = new LinkedHashMap<>();
+        formats.put("json", Jackson2ObjectMapperBuilder.json().build());
+        formats.put("cbor", Jackson2ObjectMapperBuilder.cbor().factory(new CBORFactory()).build());
+        formats.put("smile", Jackson2ObjectMapperBuilder.smile().factory(new SmileFactory()).build());
+
+        Map<String, Map<String, Object>> report = new LinkedHashMap<>();
+        for (Map.Entry<String, ObjectMapper> format : formats.entrySet()) {
+            ObjectMapper mapper = format.getValue();
+            byte[] bytes = mapper.writeValueAsBytes(page);
+            LoanPage parsed = mapper.readValue(bytes, LoanPage.class);
+            assertThat(parsed.getContent()).hasSize(PAGE_SIZE);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("bytes", bytes.length);
+            result.put("gzipBytes", gzip(bytes).length);
+            result.put("serializeMicros", Benchmarks.measure(WARMUP, ITERATIONS,
+                    i -> mapper.writeValueAsBytes(page)).meanMicros());
+            result.put("parseMicros", Benchmarks.measure(WARMUP, ITERATIONS,
+                    i -> mapper.readValue(bytes, LoanPage.class)).meanMicros());
+            report.put(format.getKey(), result);
+        }
+
+        Benchmarks.write("wire-formats", report);
+    }
+
+    private byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(bytes);
+        }
+        return output.toByteArray();
+    }
+
+    private Page<LoanDTO> createLoanPage() {
+        List<LoanDTO> loans = IntStream.range(0, PAGE_SIZE)
+                .mapToObj(i -> LoanDTO.builder()
+                        .id((long) i)
+                        .isbn("978000000" + i)
+                        .customer("Customer " + i)
+                        .customerEmail("customer" + i + "@email.com")
+                        .book(BookDTO.builder()
+                                .id((long) i)
+                                .title("The Book Number " + i)
+                                .author("Author " + (i % 10))
+                                .isbn("978000000" + i)
+                                .build())
+                        .build())
+                .collect(Collectors.toList());
+        return new PageImpl<>(loans, PageRequest.of(0, PAGE_SIZE), 10_000);
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class LoanPage {
+        private List<LoanDTO> content;
+        private long totalElements;
+        private int totalPages;
+        private int number;
+        private int size;
+    }
+}
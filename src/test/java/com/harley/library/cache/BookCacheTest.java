@@ -0,0 +1,72 @@
+package com.harley.library.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harley.library.entities.Book;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class BookCacheTest {
+
+    private final BookCache bookCache = new BookCache(Caffeine.newBuilder().build(), Caffeine.newBuilder().build());
+
+    @Test
+    @DisplayName("Must keep a book loaded while nothing was evicted")
+    void givenNoEviction_WhenPut_ThenKeepBook() {
+        // Scenary
+        long stamp = bookCache.stamp();
+
+        // Execution
+        bookCache.put(Book.builder().id(1l).title("Old").build(), stamp);
+
+        // Verification
+        Assertions.assertThat(bookCache.get(1l).getTitle()).isEqualTo("Old");
+    }
+
+    @Test
+    @DisplayName("Must not keep a book whose load overlapped an eviction")
+    void givenEvictionDuringLoad_WhenPut_ThenDropBook() {
+        // Scenary
+        long stamp = bookCache.stamp();
+        bookCache.evict(1l);
+
+        // Execution
+        bookCache.put(Book.builder().id(1l).title("Old").build(), stamp);
+
+        // Verification
+        Assertions.assertThat(bookCache.get(1l)).isNull();
+        Assertions.assertThat(bookCache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Must only return serialized bytes written from the requested version")
+    void givenOtherVersion_WhenGetSerialized_ThenReturnNull() {
+        // Scenary
+        byte[] bytes = {1, 2, 3};
+
+        // Execution
+        bookCache.putSerialized(1l, 2l, bytes, bookCache.stamp());
+
+        // Verification
+        Assertions.assertThat(bookCache.getSerialized(1l, 2l)).isSameAs(bytes);
+        Assertions.assertThat(bookCache.getSerialized(1l, 3l)).isNull();
+    }
+
+    @Test
+    @DisplayName("Must drop the serialized bytes when the book is evicted")
+    void givenEviction_WhenGetSerialized_ThenReturnNull() {
+        // Scenary
+        long stamp = bookCache.stamp();
+        bookCache.putSerialized(1l, 2l, new byte[]{1}, stamp);
+        bookCache.putSerialized(2l, 1l, new byte[]{2}, stamp);
+
+        // Execution
+        bookCache.evict(1l);
+        bookCache.putSerialized(3l, 1l, new byte[]{3}, stamp);
+
+        // Verification
+        Assertions.assertThat(bookCache.getSerialized(1l, 2l)).isNull();
+        Assertions.assertThat(bookCache.getSerialized(2l, 1l)).isNotNull();
+        Assertions.assertThat(bookCache.getSerialized(3l, 1l)).isNull();
+    }
+}
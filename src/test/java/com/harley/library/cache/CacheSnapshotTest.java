@@ -0,0 +1,78 @@
+package com.harley.library.cache;
+
+import com.harley.library.entities.Book;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+class CacheSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Must read back the books and ISBN entries that were written")
+    void givenSnapshot_WhenWriteAndRead_ThenReturnSameContents() throws Exception {
+        // Scenary
+        Path file = directory.resolve("books.snapshot");
+        Instant createdAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Book book = Book.builder().id(1l).title("My Adventures").author(null).isbn("978-0-306-40615-7").version(3l).build();
+        CacheSnapshot snapshot = new CacheSnapshot(createdAt, 5l, 9l, new long[]{9780306406157l, 1l}, List.of(book));
+
+        // Execution
+        snapshot.writeTo(file);
+        CacheSnapshot read = CacheSnapshot.readFrom(file).orElseThrow();
+
+        // Verification
+        Assertions.assertThat(read.getCreatedAt()).isEqualTo(createdAt);
+        Assertions.assertThat(read.getChangeId()).isEqualTo(5l);
+        Assertions.assertThat(read.getMaxBookId()).isEqualTo(9l);
+        Assertions.assertThat(read.getIsbnEntries()).containsExactly(9780306406157l, 1l);
+        Assertions.assertThat(read.getBooks()).singleElement().satisfies(restored -> {
+            Assertions.assertThat(restored.getTitle()).isEqualTo("My Adventures");
+            Assertions.assertThat(restored.getAuthor()).isNull();
+            Assertions.assertThat(restored.getVersion()).isEqualTo(3l);
+            Assertions.assertThat(restored.getIsbnKey()).isEqualTo(9780306406157l);
+        });
+        try (var files = Files.list(directory)) {
+            Assertions.assertThat(files).containsExactly(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Must ignore a snapshot that is missing, corrupted or from another format version")
+    void givenUnusableSnapshot_WhenRead_ThenReturnEmpty() throws Exception {
+        // Scenary
+        Path missing = directory.resolve("missing.snapshot");
+        Path corrupted = directory.resolve("corrupted.snapshot");
+        Path otherVersion = directory.resolve("other-version.snapshot");
+        CacheSnapshot snapshot = new CacheSnapshot(Instant.now(), 0l, 1l, new long[0],
+                List.of(Book.builder().id(1l).title("My Adventures").build()));
+        snapshot.writeTo(corrupted);
+        byte[] bytes = Files.readAllBytes(corrupted);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(corrupted, bytes);
+        // a well formed file with a valid checksum, only the format version differs
+        snapshot.writeTo(otherVersion);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(otherVersion));
+        buffer.putShort(4, (short) (CacheSnapshot.FORMAT_VERSION + 1));
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.array(), 0, buffer.capacity() - 4);
+        buffer.putInt(buffer.capacity() - 4, (int) checksum.getValue());
+        Files.write(otherVersion, buffer.array());
+
+        // Execution / Verification
+        Assertions.assertThat(CacheSnapshot.readFrom(missing)).isEmpty();
+        Assertions.assertThat(CacheSnapshot.readFrom(corrupted)).isEmpty();
+        Assertions.assertThat(CacheSnapshot.readFrom(otherVersion)).isEmpty();
+    }
+}
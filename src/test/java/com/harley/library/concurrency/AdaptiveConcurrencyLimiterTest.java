@@ -0,0 +1,81 @@
+package com.harley.library.concurrency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    @DisplayName("Should reject requests once the in-flight limit is reached")
+    void givenFullLimit_whenTryAcquire_thenReject() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, THRESHOLD, 0.5);
+
+        assertThat(limiter.tryAcquire(RequestPriority.READ)).isTrue();
+        assertThat(limiter.tryAcquire(RequestPriority.READ)).isTrue();
+        assertThat(limiter.tryAcquire(RequestPriority.READ)).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        assertThat(limiter.getRejected(RequestPriority.READ)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should shed bulk requests before single reads")
+    void givenHalfUsedLimit_whenTryAcquire_thenRejectOnlyBulk() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10, THRESHOLD, 0.5);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(RequestPriority.READ);
+        }
+
+        assertThat(limiter.tryAcquire(RequestPriority.BULK)).isFalse();
+        assertThat(limiter.tryAcquire(RequestPriority.WRITE)).isTrue();
+        assertThat(limiter.tryAcquire(RequestPriority.READ)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should shrink the limit on slow samples without going under the minimum")
+    void givenSlowSamples_whenRelease_thenDecreaseLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(40, 5, 100, THRESHOLD, 0.5);
+
+        limiter.tryAcquire(RequestPriority.READ);
+        limiter.release(THRESHOLD * 2);
+        assertThat(limiter.getLimit()).isEqualTo(20);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(RequestPriority.READ);
+            limiter.release(THRESHOLD * 2);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(5);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should grow the limit on fast samples while it is in use")
+    void givenFastSamplesUnderLoad_whenRelease_thenIncreaseLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 100, THRESHOLD, 0.5);
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire(RequestPriority.READ);
+        }
+
+        for (int i = 0; i < 40; i++) {
+            limiter.release(THRESHOLD / 2);
+            limiter.tryAcquire(RequestPriority.READ);
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(4);
+    }
+
+    @Test
+    @DisplayName("Should rank single resource reads above writes and bulk reads")
+    void givenRequests_whenClassify_thenReturnPriority() {
+        assertThat(RequestPriority.of(new MockHttpServletRequest("GET", "/api/books/1"))).isEqualTo(RequestPriority.READ);
+        assertThat(RequestPriority.of(new MockHttpServletRequest("POST", "/api/loans"))).isEqualTo(RequestPriority.WRITE);
+        assertThat(RequestPriority.of(new MockHttpServletRequest("GET", "/api/books"))).isEqualTo(RequestPriority.BULK);
+        assertThat(RequestPriority.of(new MockHttpServletRequest("GET", "/api/books/1/loans"))).isEqualTo(RequestPriority.BULK);
+    }
+}
@@ -0,0 +1,72 @@
+package com.harley.library.concurrency;
+
+import com.harley.library.exceptions.BulkheadFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadsTest {
+
+    private final Bulkheads bulkheads = new Bulkheads(
+            Map.of(OperationClass.HISTORY, 1), Map.of(OperationClass.HISTORY, 1), 3);
+
+    @AfterEach
+    void shutdown() {
+        bulkheads.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should reject a task once the pool threads are busy and its queue is full")
+    void givenFullBulkhead_whenSupply_thenReject() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> running = bulkheads.supply(OperationClass.HISTORY, () -> {
+            started.countDown();
+            await(release);
+            return "first";
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> queued = bulkheads.supply(OperationClass.HISTORY, () -> "second");
+
+        assertThat(bulkheads.getActive(OperationClass.HISTORY)).isEqualTo(1);
+        assertThat(bulkheads.getQueued(OperationClass.HISTORY)).isEqualTo(1);
+        assertThatThrownBy(() -> bulkheads.supply(OperationClass.HISTORY, () -> "third"))
+                .isInstanceOf(BulkheadFullException.class)
+                .hasFieldOrPropertyWithValue("retryAfterSeconds", 3);
+        assertThat(bulkheads.getRejected(OperationClass.HISTORY)).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("second");
+    }
+
+    @Test
+    @DisplayName("Should keep serving other operation classes while one bulkhead is full")
+    void givenFullHistoryBulkhead_whenSupplyCheckout_thenRun() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        bulkheads.run(OperationClass.HISTORY, () -> await(release));
+        bulkheads.run(OperationClass.HISTORY, () -> await(release));
+
+        assertThat(bulkheads.supply(OperationClass.CHECKOUT, () -> 42L).get(5, TimeUnit.SECONDS)).isEqualTo(42L);
+        assertThat(bulkheads.getThreads(OperationClass.CHECKOUT))
+                .isEqualTo(OperationClass.CHECKOUT.getDefaultThreads());
+        assertThat(bulkheads.getQueueCapacity(OperationClass.HISTORY)).isEqualTo(1);
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.harley.library.concurrency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    @Test
+    @DisplayName("Should answer 503 with Retry-After when the limit is reached")
+    void givenFullLimit_whenFilter_thenShedRequest() throws Exception {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, TimeUnit.SECONDS.toNanos(1), 0.5);
+        limiter.tryAcquire(RequestPriority.READ);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiter, new ObjectMapper(), 2);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // When
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books/1"), response, chain);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(response.getContentAsString()).contains("Server is overloaded, retry later");
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should release the slot once the request is handled")
+    void givenFreeLimit_whenFilter_thenReleaseAfterChain() throws Exception {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, TimeUnit.SECONDS.toNanos(1), 0.5);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiter, new ObjectMapper(), 1);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // When
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books"), response, chain);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(limiter.getInFlight()).isZero();
+    }
+}
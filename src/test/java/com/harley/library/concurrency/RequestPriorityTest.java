@@ -0,0 +1,39 @@
+package com.harley.library.concurrency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestPriorityTest {
+
+    @ParameterizedTest(name = "{0} {1} is {2}")
+    @CsvSource({
+            "GET, /api/books/1, READ",
+            "GET, /api/books/1/availability, READ",
+            "GET, /api/books/batch, READ",
+            "GET, /api/books/availability, READ",
+            "GET, /api/loans/batch, READ",
+            "GET, /api/books, BULK",
+            "GET, /api/books/export, BULK",
+            "GET, /api/books/suggest, BULK",
+            "GET, /api/books/1/loans, BULK",
+            "GET, /api/customers/1/loans/past, BULK",
+            "GET, /api/stats/top-books, BULK",
+            "POST, /api/books, WRITE",
+            "PATCH, /api/loans/1, WRITE"
+    })
+    @DisplayName("Should classify a request by the route it is mapped to")
+    void givenRequest_whenClassify_thenUseItsRoute(String method, String path, RequestPriority expected) {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+
+        // When
+        RequestPriority priority = RequestPriority.of(request);
+
+        // Then
+        assertThat(priority).isEqualTo(expected);
+    }
+}
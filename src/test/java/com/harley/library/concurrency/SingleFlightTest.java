@@ -0,0 +1,96 @@
+package com.harley.library.concurrency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class SingleFlightTest {
+
+    @Test
+    @DisplayName("Should run one load for concurrent callers of the same key")
+    void givenConcurrentCallers_whenExecute_thenLoadOnce() throws Exception {
+        // Given
+        SingleFlight<String, StringBuilder> singleFlight = new SingleFlight<>(value -> new StringBuilder(value));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        List<Future<StringBuilder>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return new StringBuilder("value");
+        })));
+        loading.await(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 7; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                loads.incrementAndGet();
+                return new StringBuilder("other");
+            })));
+        }
+        while (singleFlight.getCollapsed() < 7) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        // Then
+        List<StringBuilder> values = new ArrayList<>();
+        for (Future<StringBuilder> result : results) {
+            values.add(result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(singleFlight.getLoads()).isEqualTo(1);
+        assertThat(singleFlight.getCollapsed()).isEqualTo(7);
+        assertThat(values).allSatisfy(value -> assertThat(value.toString()).isEqualTo("value"));
+        assertThat(values.stream().distinct().count()).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("Should load again once the previous load has finished")
+    void givenSequentialCallers_whenExecute_thenLoadEachTime() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(value -> value);
+
+        singleFlight.execute("key", () -> "first");
+        String second = singleFlight.execute("key", () -> "second");
+
+        assertThat(second).isEqualTo("second");
+        assertThat(singleFlight.getLoads()).isEqualTo(2);
+        assertThat(singleFlight.getCollapsed()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should propagate the loader failure")
+    void givenFailingLoader_whenExecute_thenThrow() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(value -> value);
+
+        Throwable throwable = catchThrowable(() -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("database down");
+        }));
+
+        assertThat(throwable).isInstanceOf(IllegalStateException.class).hasMessage("database down");
+        assertThat(singleFlight.execute("key", () -> "value")).isEqualTo("value");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.harley.library.controllers;
+
+import com.harley.library.config.AvailabilityStreamConfig;
+import com.harley.library.dtos.BookAvailabilityDTO;
+import com.harley.library.entities.Book;
+import com.harley.library.events.AvailabilityBroadcaster;
+import com.harley.library.services.BookService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Optional;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = AvailabilityStreamController.class)
+@Import(AvailabilityStreamConfig.class)
+@AutoConfigureMockMvc
+class AvailabilityStreamControllerTest {
+    static final String BOOK_API = "/api/books";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    AvailabilityBroadcaster availabilityBroadcaster;
+
+    @MockBean
+    BookService bookService;
+
+    @Test
+    @DisplayName("Must stream the current availability of the book and then its changes")
+    void givenBook_WhenStream_ThenSendCurrentStateAndChanges() throws Exception {
+        // Given
+        BDDMockito.given(bookService.getAvailability(1l)).willReturn(Optional.of(new BookAvailabilityDTO(1l, true)));
+
+        // When
+        MvcResult result = mockMvc.perform(get(BOOK_API + "/1/availability/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result, "\"available\":true");
+        availabilityBroadcaster.publish(1l, false);
+
+        // Then
+        String content = awaitContent(result, "\"available\":false");
+        Assertions.assertThat(content).contains("event:availability").contains("\"bookId\":1");
+        result.getRequest().getAsyncContext().complete();
+    }
+
+    @Test
+    @DisplayName("Must not lose a change made while the current availability is read")
+    void givenChangeWhileSubscribing_WhenStream_ThenSendTheChange() throws Exception {
+        // Given
+        BDDMockito.given(bookService.getAvailability(1l))
+                .willReturn(Optional.of(new BookAvailabilityDTO(1l, true)))
+                .willAnswer(invocation -> {
+                    // the book is lent while its stale availability is being read
+                    availabilityBroadcaster.publish(1l, false);
+                    return Optional.of(new BookAvailabilityDTO(1l, true));
+                });
+
+        // When
+        MvcResult result = mockMvc.perform(get(BOOK_API + "/1/availability/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        String content = awaitContent(result, "\"available\":false");
+        Assertions.assertThat(content).doesNotContain("\"available\":true");
+        result.getRequest().getAsyncContext().complete();
+    }
+
+    @Test
+    @DisplayName("Must resolve the isbns to books when subscribing")
+    void givenIsbns_WhenStream_ThenSendTheirAvailability() throws Exception {
+        // Given
+        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Optional.of(Book.builder().id(2l).build()));
+        BDDMockito.given(bookService.getBookByIsbn("456")).willReturn(Optional.empty());
+        BDDMockito.given(bookService.getAvailability(2l)).willReturn(Optional.of(new BookAvailabilityDTO(2l, false)));
+
+        // When
+        MvcResult result = mockMvc.perform(get(BOOK_API + "/availability/stream").param("isbn", "123,456"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        Assertions.assertThat(awaitContent(result, "\"bookId\":2")).contains("\"available\":false");
+        result.getRequest().getAsyncContext().complete();
+    }
+
+    @Test
+    @DisplayName("Must return not found for an unknown book")
+    void givenUnknownBook_WhenStream_ThenNotFound() throws Exception {
+        BDDMockito.given(bookService.getAvailability(9l)).willReturn(Optional.empty());
+
+        mockMvc.perform(get(BOOK_API + "/9/availability/stream"))
+                .andExpect(status().isNotFound());
+    }
+
+    private String awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = result.getResponse().getContentAsString();
+        }
+        Assertions.assertThat(content).contains(expected);
+        return content;
+    }
+}
@@ -4,10 +4,20 @@ package com.harley.library.controllers;
 //Using JUnit 5
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.harley.library.config.BulkheadConfig;
+import com.harley.library.dtos.AvailabilityCountDTO;
+import com.harley.library.dtos.BookAvailabilityDTO;
 import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.BookPatchDTO;
+import com.harley.library.dtos.BookSuggestionDTO;
+import com.harley.library.dtos.MultiGetDTO;
 import com.harley.library.entities.Book;
 import com.harley.library.exceptions.BusinessException;
+import com.harley.library.enums.ExportFormat;
 import com.harley.library.services.BookService;
+import com.harley.library.services.ExportService;
+import com.harley.library.services.LoanService;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,24 +28,39 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = BookController.class)
 @AutoConfigureMockMvc
+@Import(BulkheadConfig.class)
 class BookControllerTest {
 
     static String BOOK_API = "/api/books";
@@ -43,9 +68,18 @@ class BookControllerTest {
     @Autowired
     MockMvc mockMvc;
 
+    @Autowired
+    RequestMappingHandlerAdapter handlerAdapter;
+
     @MockBean
     BookService bookService;
 
+    @MockBean
+    LoanService loanService;
+
+    @MockBean
+    ExportService exportService;
+
     @Test
     @DisplayName("Must successfully create a book.")
     void createBookTest() throws Exception {
@@ -122,7 +156,8 @@ class BookControllerTest {
         // Given
         Long id =  1l;
         Book book = getCreateNewBook();
-        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(book));
+        BDDMockito.given(bookService.getSerializedById(Mockito.eq(id), Mockito.any()))
+                .willAnswer(invocation -> Optional.of(invocation.<Function<Book, byte[]>>getArgument(1).apply(book)));
 
         // When
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -139,12 +174,45 @@ class BookControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("isbn").value(bookDTO.getIsbn()));
     }
 
+    @Test
+    @DisplayName("Must encode the book as cbor when the client asks for it")
+    void getBookDetailsAsCbor() throws Exception {
+        // Given
+        BDDMockito.given(bookService.getById(1l)).willReturn(Optional.of(getCreateNewBook()));
+
+        // When
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + 1))
+                .accept(MediaType.parseMediaType("application/cbor"));
+
+        // Then
+        byte[] body = mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+        BookDTO bookDTO = new ObjectMapper(new CBORFactory()).readValue(body, BookDTO.class);
+        org.assertj.core.api.Assertions.assertThat(bookDTO.getTitle()).isEqualTo("My Adventures");
+    }
+
+    @Test
+    @DisplayName("Must keep a single cbor and smile converter")
+    void binaryConvertersAreNotDuplicated() {
+        // When
+        List<HttpMessageConverter<?>> converters = handlerAdapter.getMessageConverters();
+
+        // Then
+        org.assertj.core.api.Assertions.assertThat(converters)
+                .filteredOn(MappingJackson2CborHttpMessageConverter.class::isInstance).hasSize(1);
+        org.assertj.core.api.Assertions.assertThat(converters)
+                .filteredOn(MappingJackson2SmileHttpMessageConverter.class::isInstance).hasSize(1);
+    }
+
     @Test
     @DisplayName("Should return an exception when not finding a book with the id passed.")
     void bookNotFound() throws Exception {
 
         // Given
-        BDDMockito.given(bookService.getById(Mockito.anyLong()))
+        BDDMockito.given(bookService.getSerializedById(Mockito.anyLong(), Mockito.any()))
                 .willReturn(Optional.empty());
 
         // When
@@ -240,14 +308,73 @@ class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Must partially update a book in a single statement")
+    void patchBookTest() throws Exception {
+        // Given
+        BookPatchDTO patch = BookPatchDTO.builder().title("New title").version(2l).build();
+        BDDMockito.given(bookService.updatePartially(Mockito.eq(1l), Mockito.any(BookPatchDTO.class))).willReturn(true);
+
+        // When
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("/" + 1))
+                .content(new ObjectMapper().writeValueAsString(patch))
+                .contentType(MediaType.APPLICATION_JSON);
+
+        // Then
+        mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isNoContent());
+
+        Mockito.verify(bookService).updatePartially(Mockito.eq(1l), Mockito.argThat(dto ->
+                "New title".equals(dto.getTitle()) && dto.getAuthor() == null && dto.getVersion() == 2l));
+        Mockito.verify(bookService, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Should give an error 404 when trying to patch a book that doesn't exist.")
+    void errorWhenPatchABook() throws Exception {
+        // Given
+        BDDMockito.given(bookService.updatePartially(Mockito.anyLong(), Mockito.any(BookPatchDTO.class))).willReturn(false);
+
+        // When
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("/" + 1))
+                .content("{\"title\":\"New title\"}")
+                .contentType(MediaType.APPLICATION_JSON);
+
+        // Then
+        mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Should give an error 409 when patching a book with a stale version.")
+    void conflictWhenPatchABook() throws Exception {
+        // Given
+        BDDMockito.given(bookService.updatePartially(Mockito.anyLong(), Mockito.any(BookPatchDTO.class)))
+                .willThrow(new OptimisticLockingFailureException("Book was changed by another request"));
+
+        // When
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("/" + 1))
+                .content("{\"title\":\"New title\",\"version\":0}")
+                .contentType(MediaType.APPLICATION_JSON);
+
+        // Then
+        mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Book was changed by another request"));
+    }
+
     @Test
     @DisplayName("Should filter books")
     void findBooksTest() throws Exception {
         // Scenary
         Book book = getCreateNewBook();
+        BookDTO bookDTO = new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), 0l);
 
-        BDDMockito.given(bookService.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
-                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 100), 1));
+        BDDMockito.given(bookService.find(Mockito.any(BookDTO.class), Mockito.isNull(), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<BookDTO>(Arrays.asList(bookDTO), PageRequest.of(0, 100), 1));
 
         // Execution
         String url = String.format("?title=%s&author=%s&page=0&size=100", book.getTitle(), book.getAuthor());
@@ -256,7 +383,7 @@ class BookControllerTest {
                 .accept(MediaType.APPLICATION_JSON);
 
         // Verification
-        mockMvc.perform(request)
+        performAsync(request)
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
                 .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(1))
@@ -264,6 +391,172 @@ class BookControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("pageable.pageNumber").value(0));
     }
 
+    @Test
+    @DisplayName("Should return only the requested fields of the books")
+    void findBookFieldsTest() throws Exception {
+        // Scenary
+        BDDMockito.given(bookService.find(Mockito.any(BookDTO.class), Mockito.isNull(), Mockito.eq(Set.of("id", "title")),
+                        Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Arrays.asList(Map.of("id", 1, "title", "My book")), PageRequest.of(0, 20), 1));
+
+        // Execution
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?fields=id,title"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        // Verification
+        performAsync(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].title").value("My book"))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].author").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Should return the books of the ids and the ids not found")
+    void getBooksByIdsTest() throws Exception {
+        // Scenary
+        BDDMockito.given(bookService.getByIds(List.of(3l, 1l)))
+                .willReturn(new MultiGetDTO<>(List.of(new BookDTO(3l, "Third", "Mary", "123", 0l)), List.of(1l)));
+
+        // Execution
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/batch?ids=3,1"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        // Verification
+        performAsync(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("items[0].id").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("items[0].title").value("Third"))
+                .andExpect(MockMvcResultMatchers.jsonPath("missingIds[0]").value(1));
+    }
+
+    @Test
+    @DisplayName("Should reject more ids than a batch takes")
+    void getTooManyBooksByIdsTest() throws Exception {
+        // Scenary
+        String ids = String.join(",", Collections.nCopies(101, "1"));
+
+        // Execution / Verification
+        mockMvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/batch?ids=" + ids)))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        Mockito.verify(bookService, Mockito.never()).getByIds(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Should pass the availability filter to the service")
+    void findAvailableBooksTest() throws Exception {
+        // Scenary
+        BDDMockito.given(bookService.find(Mockito.any(BookDTO.class), Mockito.eq(true), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<BookDTO>(Arrays.asList(), PageRequest.of(0, 20), 0));
+
+        // Execution
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?available=true"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        // Verification
+        performAsync(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(0));
+    }
+
+    @Test
+    @DisplayName("Should suggest books for the typed text and cap the limit")
+    void suggestTest() throws Exception {
+        // Scenary
+        BDDMockito.given(bookService.suggest("har", 50))
+                .willReturn(Arrays.asList(new BookSuggestionDTO(1l, "Harry Potter", "J. K. Rowling")));
+
+        // Execution
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/suggest?q=har&limit=500"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        // Verification
+        mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].title").value("Harry Potter"));
+        Mockito.verify(bookService, Mockito.never()).find(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Should answer whether a book is available")
+    void availabilityTest() throws Exception {
+        // Scenary
+        BDDMockito.given(bookService.getAvailability(1l)).willReturn(Optional.of(new BookAvailabilityDTO(1l, false)));
+
+        // Execution
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1/availability"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        // Verification
+        mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("bookId").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("available").value(false));
+        Mockito.verify(bookService, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Should give an error 404 when asking the availability of an unknown book")
+    void availabilityOfUnknownBookTest() throws Exception {
+        // Scenary
+        BDDMockito.given(bookService.getAvailability(Mockito.anyLong())).willReturn(Optional.empty());
+
+        // Execution and Verification
+        mockMvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1/availability")))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Should count available and lent books")
+    void countAvailabilityTest() throws Exception {
+        // Scenary
+        BDDMockito.given(bookService.countAvailability()).willReturn(new AvailabilityCountDTO(10l, 3l, 7l));
+
+        // Execution and Verification
+        mockMvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/availability")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("books").value(10))
+                .andExpect(MockMvcResultMatchers.jsonPath("lent").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("available").value(7));
+    }
+
+    @Test
+    @DisplayName("Should stream the filtered books as csv")
+    void exportBooksTest() throws Exception {
+        // When
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export?title=Adventures&format=csv"));
+
+        // Then
+        mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("Content-Disposition", "attachment; filename=books.csv"))
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("text/csv"));
+
+        Mockito.verify(exportService).exportBooks(
+                Mockito.argThat(filter -> "Adventures".equals(filter.getTitle())),
+                Mockito.eq(ExportFormat.CSV),
+                Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown export format")
+    void exportBooksWithInvalidFormatTest() throws Exception {
+        // When
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export?format=xml"));
+
+        // Then
+        mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Unsupported export format"));
+    }
+
     private BookDTO getCreateNewBookDTO() {
         return BookDTO.builder().title("My Adventures").author("Mary").isbn("1234").build();
     }
@@ -271,4 +564,12 @@ class BookControllerTest {
     private Book getCreateNewBook() {
         return Book.builder().id(1l).title("My Adventures").author("Mary").isbn("1234").build();
     }
+
+    // The handler returns a future, so the response is only written by the async dispatch.
+    private ResultActions performAsync(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
 }
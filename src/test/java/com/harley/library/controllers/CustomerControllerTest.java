@@ -0,0 +1,103 @@
+package com.harley.library.controllers;
+
+import com.harley.library.config.BulkheadConfig;
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.entities.Customer;
+import com.harley.library.services.CustomerService;
+import com.harley.library.services.LoanService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = CustomerController.class)
+@AutoConfigureMockMvc
+@Import(BulkheadConfig.class)
+class CustomerControllerTest {
+    static final String CUSTOMER_API = "/api/customers";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    CustomerService customerService;
+
+    @MockBean
+    LoanService loanService;
+
+    @Test
+    @DisplayName("Must find a customer by email")
+    void givenAnEmail_WhenFindByEmail_ThenReturnCustomer() throws Exception {
+        // Given
+        BDDMockito.given(customerService.getByEmail("harley@email.com"))
+                .willReturn(Optional.of(Customer.builder().id(1L).name("Harley").email("harley@email.com").build()));
+
+        // When / Then
+        mockMvc.perform(get(CUSTOMER_API).param("email", "harley@email.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("id").value(1))
+                .andExpect(jsonPath("name").value("Harley"));
+    }
+
+    @Test
+    @DisplayName("Must return the open loans of a customer")
+    void givenACustomer_WhenGetOpenLoans_ThenReturnLoanPage() throws Exception {
+        // Given
+        BDDMockito.given(customerService.getById(1L)).willReturn(Optional.of(Customer.builder().id(1L).build()));
+        LoanDTO loan = new LoanDTO(7L, "Harley", "harley@email.com", 2L, "My Adventures", "Mary", "123");
+        BDDMockito.given(loanService.getOpenLoansByCustomer(Mockito.eq(1L), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(List.of(loan), PageRequest.of(0, 10), 1));
+
+        // When / Then
+        performAsync(get(CUSTOMER_API + "/1/loans/open?page=0&size=10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content[0].id").value(7))
+                .andExpect(jsonPath("content[0].book.title").value("My Adventures"))
+                .andExpect(jsonPath("totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("Must return not found for the past loans of an unknown customer")
+    void givenAnUnknownCustomer_WhenGetPastLoans_ThenNotFound() throws Exception {
+        // Given
+        BDDMockito.given(customerService.getById(9L)).willReturn(Optional.empty());
+
+        // When / Then
+        performAsync(get(CUSTOMER_API + "/9/loans/past"))
+                .andExpect(status().isNotFound());
+        Mockito.verifyNoInteractions(loanService);
+    }
+
+    private ResultActions performAsync(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+}
@@ -0,0 +1,53 @@
+package com.harley.library.controllers;
+
+import com.harley.library.diagnostics.SlowOperationRecorder;
+import com.harley.library.dtos.SlowOperationDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = DiagnosticsController.class)
+@AutoConfigureMockMvc
+class DiagnosticsControllerTest {
+    static final String DIAGNOSTICS_API = "/api/diagnostics";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    SlowOperationRecorder slowOperationRecorder;
+
+    @Test
+    @DisplayName("Must list the recent slow operations and cap the limit")
+    void givenSlowOperations_WhenGet_ThenReturnThem() throws Exception {
+        // Given
+        SlowOperationDTO search = new SlowOperationDTO("Book Search", Instant.parse("2026-01-01T10:00:00Z"), 350.5,
+                "http-nio-8080-exec-1", Map.of("filter", "title", "rows", 10));
+        BDDMockito.given(slowOperationRecorder.getRecent(100)).willReturn(List.of(search));
+
+        // When / Then
+        mockMvc.perform(get(DIAGNOSTICS_API + "/slow-operations").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].operation").value("Book Search"))
+                .andExpect(jsonPath("[0].durationMillis").value(350.5))
+                .andExpect(jsonPath("[0].details.filter").value("title"));
+    }
+}
@@ -1,13 +1,20 @@
 package com.harley.library.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.harley.library.concurrency.Bulkheads;
+import com.harley.library.concurrency.OperationClass;
+import com.harley.library.config.BulkheadConfig;
 import com.harley.library.dtos.LoanDTO;
 import com.harley.library.dtos.ReturnedLoanDTO;
 import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
 import com.harley.library.entities.Loan;
+import com.harley.library.exceptions.BulkheadFullException;
 import com.harley.library.exceptions.BusinessException;
 import com.harley.library.service.LoanServiceTest;
+import com.harley.library.enums.ExportFormat;
 import com.harley.library.services.BookService;
+import com.harley.library.services.ExportService;
 import com.harley.library.services.LoanService;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -19,6 +26,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -26,13 +36,18 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -41,6 +56,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @WebMvcTest(controllers = LoanController.class)
 @AutoConfigureMockMvc
+@Import(BulkheadConfig.class)
 public class LoanControllerTest {
     static final String LOAN_API = "/api/loans";
 
@@ -53,6 +69,12 @@ public class LoanControllerTest {
     @MockBean
     private LoanService loanService;
 
+    @MockBean
+    private ExportService exportService;
+
+    @SpyBean
+    private Bulkheads bulkheads;
+
     @Test
     @DisplayName("Must create a loan when call the create method passing a loanDTO")
     void givenValidLoanDTO_WhenCallCreate_ThenReturnCreatedLoan() throws Exception {
@@ -62,7 +84,7 @@ public class LoanControllerTest {
 
         Book book = Book.builder().id(1l).isbn("123").build();
         BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Optional.of(book));
-        Loan loan =  Loan.builder().id(1l).customer("Harley").book(book).date(LocalDate.now()).build();
+        Loan loan =  Loan.builder().id(1l).customer(Customer.builder().id(1L).name("Harley").build()).book(book).date(LocalDate.now()).build();
         BDDMockito.given(loanService.save(Mockito.any(Loan.class))).willReturn(loan);
 
         // When
@@ -72,7 +94,7 @@ public class LoanControllerTest {
                 .content(json);
 
         // Then
-        mockMvc.perform(requestBuilder)
+        performAsync(requestBuilder)
                 .andExpect(status().isCreated())
                 .andExpect(MockMvcResultMatchers.content().string("1"));
     }
@@ -93,7 +115,7 @@ public class LoanControllerTest {
                 .content(json);
 
         // Then
-        mockMvc.perform(requestBuilder)
+        performAsync(requestBuilder)
                 .andExpect(status().isBadRequest())
                 .andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(1)))
                 .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Book not found for passed isbn"));
@@ -117,7 +139,7 @@ public class LoanControllerTest {
                 .content(json);
 
         // Then
-        mockMvc.perform(requestBuilder)
+        performAsync(requestBuilder)
                 .andExpect(status().isBadRequest())
                 .andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(1)))
                 .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Book already borrowed"));
@@ -129,17 +151,17 @@ public class LoanControllerTest {
         // Given
         ReturnedLoanDTO returnedLoanDTO = ReturnedLoanDTO.builder().returned(true).build();
         String json = new ObjectMapper().writeValueAsString(returnedLoanDTO);
-        Loan loan = Loan.builder().id(1l).build();
-        BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.of(loan));
+        BDDMockito.given(loanService.updateReturned(1l, true, null)).willReturn(true);
 
         // When and Then
-        mockMvc.perform(patch(LOAN_API.concat("/1"))
+        performAsync(patch(LOAN_API.concat("/1"))
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(json))
                 .andExpect(status().isOk());
 
-        Mockito.verify(loanService, Mockito.times(1)).update(Mockito.any());
+        Mockito.verify(loanService, Mockito.times(1)).updateReturned(1l, true, null);
+        Mockito.verify(loanService, Mockito.never()).getById(Mockito.anyLong());
     }
 
     @Test
@@ -149,39 +171,157 @@ public class LoanControllerTest {
         ReturnedLoanDTO returnedLoanDTO = ReturnedLoanDTO.builder().returned(true).build();
         String json = new ObjectMapper().writeValueAsString(returnedLoanDTO);
 
-        BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(loanService.updateReturned(Mockito.anyLong(), Mockito.any(), Mockito.any())).willReturn(false);
 
         // When and Then
-        mockMvc.perform(patch(LOAN_API.concat("/1"))
+        performAsync(patch(LOAN_API.concat("/1"))
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(json))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("should return conflict when the loan version is stale")
+    void givenStaleVersion_whenCallReturnedBook_thenReturnConflict() throws Exception {
+        // Given
+        ReturnedLoanDTO returnedLoanDTO = ReturnedLoanDTO.builder().returned(true).version(0l).build();
+        String json = new ObjectMapper().writeValueAsString(returnedLoanDTO);
+
+        BDDMockito.given(loanService.updateReturned(1l, true, 0l))
+                .willThrow(new OptimisticLockingFailureException("Loan was changed by another request"));
+
+        // When and Then
+        performAsync(patch(LOAN_API.concat("/1"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Loan was changed by another request"));
+    }
+
     @Test
     @DisplayName("Should filter books")
     void givenLoanDTO_whenCallFind_thenReturnLoanPage() throws Exception {
         // Scenary
-        Loan loan = LoanServiceTest.createLoan();
-        Book book = Book.builder().id(1l).isbn("1234").author("Harley").title("None").build();
-        loan.setBook(book);
+        LoanDTO loan = new LoanDTO(1l, "Harley", "harley@email.com", 1l, "None", "Harley", "1234");
 
         BDDMockito.given(loanService.find(Mockito.any(LoanDTO.class), Mockito.any(Pageable.class)))
                 .willReturn(new PageImpl<>(Arrays.asList(loan), PageRequest.of(0, 100), 1));
 
         // Execution
-        String url = String.format("?isbn=%s&customer=%s&page=0&size=100", loan.getBook().getIsbn(), loan.getCustomer());
+        String url = String.format("?isbn=%s&customer=%s&page=0&size=100", loan.getIsbn(), loan.getCustomer());
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .get(LOAN_API.concat(url))
                 .accept(MediaType.APPLICATION_JSON);
 
         // Verification
-        mockMvc.perform(request)
+        performAsync(request)
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].book.title").value("None"))
                 .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(1))
                 .andExpect(MockMvcResultMatchers.jsonPath("pageable.pageSize").value(100))
                 .andExpect(MockMvcResultMatchers.jsonPath("pageable.pageNumber").value(0));
     }
+
+    @Test
+    @DisplayName("Should list the loan version and accept it back when the loan is returned")
+    void givenListedLoanVersion_whenCallReturnedBook_thenCheckThatVersion() throws Exception {
+        // Scenary
+        LoanDTO loan = new LoanDTO(1l, "Harley", "harley@email.com", 1l, "None", "Harley", "1234", 3l);
+        BDDMockito.given(loanService.find(Mockito.any(LoanDTO.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Arrays.asList(loan), PageRequest.of(0, 100), 1));
+        BDDMockito.given(loanService.updateReturned(1l, true, 3l)).willReturn(true);
+
+        // Execution
+        String page = performAsync(MockMvcRequestBuilders.get(LOAN_API.concat("?customer=Harley"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].version").value(3))
+                .andReturn().getResponse().getContentAsString();
+        long version = new ObjectMapper().readTree(page).path("content").path(0).path("version").asLong();
+        String json = new ObjectMapper().writeValueAsString(
+                ReturnedLoanDTO.builder().returned(true).version(version).build());
+
+        // Verification
+        performAsync(patch(LOAN_API.concat("/1"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk());
+        Mockito.verify(loanService).updateReturned(1l, true, 3l);
+    }
+
+    @Test
+    @DisplayName("Should return only the requested fields of the loans")
+    void givenFields_whenCallFind_thenReturnOnlyThoseFields() throws Exception {
+        // Scenary
+        BDDMockito.given(loanService.find(Mockito.any(LoanDTO.class), Mockito.eq(Set.of("id", "customer", "isbn")),
+                        Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Arrays.asList(Map.of("id", 1, "customer", "Harley", "isbn", "1234")),
+                        PageRequest.of(0, 20), 1));
+
+        // Execution
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(LOAN_API.concat("?customer=Harley&fields=id,customer,isbn"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        // Verification
+        performAsync(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].isbn").value("1234"))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].book").doesNotExist());
+        Mockito.verify(loanService, Mockito.never()).find(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown field")
+    void givenUnknownField_whenCallFind_thenBadRequest() throws Exception {
+        // Scenary
+        BDDMockito.given(loanService.find(Mockito.any(LoanDTO.class), Mockito.anySet(), Mockito.any(Pageable.class)))
+                .willThrow(new BusinessException("Unknown field: password"));
+
+        // Execution / Verification
+        performAsync(MockMvcRequestBuilders.get(LOAN_API.concat("?customer=Harley&fields=password")))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Unknown field: password"));
+    }
+
+    @Test
+    @DisplayName("Should answer 503 with Retry-After when the checkout bulkhead is full")
+    void givenFullCheckoutBulkhead_whenCallCreate_thenServiceUnavailable() throws Exception {
+        // Given
+        Mockito.doThrow(new BulkheadFullException("Too many checkout requests, retry later", 2))
+                .when(bulkheads).supply(Mockito.eq(OperationClass.CHECKOUT), Mockito.any());
+        String json = new ObjectMapper().writeValueAsString(LoanDTO.builder().isbn("123").customer("Harley").build());
+
+        // When / Then
+        mockMvc.perform(MockMvcRequestBuilders.post(LOAN_API).contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "2"))
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Too many checkout requests, retry later"));
+        Mockito.verify(loanService, Mockito.never()).save(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Should stream the loans as ndjson by default")
+    void givenNoFormat_whenCallExport_thenStreamNdjson() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/export?customer=Harley")))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("application/x-ndjson"));
+
+        Mockito.verify(loanService, Mockito.never()).find(Mockito.any(), Mockito.any());
+        Mockito.verify(exportService).exportLoans(
+                Mockito.argThat(filter -> "Harley".equals(filter.getCustomer())),
+                Mockito.eq(ExportFormat.NDJSON),
+                Mockito.any());
+    }
+
+    // The handler returns a future, so the response is only written by the async dispatch.
+    private ResultActions performAsync(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
 }
@@ -0,0 +1,102 @@
+package com.harley.library.controllers;
+
+import com.harley.library.dtos.BookLoanCountDTO;
+import com.harley.library.dtos.DailyLoanCountDTO;
+import com.harley.library.dtos.LoanSummaryDTO;
+import com.harley.library.services.StatisticsService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = StatisticsController.class)
+@AutoConfigureMockMvc
+class StatisticsControllerTest {
+    static final String STATS_API = "/api/stats";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    StatisticsService statisticsService;
+
+    @Test
+    @DisplayName("Must return the loan summary")
+    void givenStatistics_WhenGetSummary_ThenReturnCounts() throws Exception {
+        // Given
+        BDDMockito.given(statisticsService.getSummary()).willReturn(new LoanSummaryDTO(10l, 3l, 1l));
+
+        // When / Then
+        mockMvc.perform(get(STATS_API))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("totalLoans").value(10))
+                .andExpect(jsonPath("openLoans").value(3))
+                .andExpect(jsonPath("overdueLoans").value(1));
+    }
+
+    @Test
+    @DisplayName("Must return the loans per day of the period")
+    void givenPeriod_WhenGetLoansPerDay_ThenReturnDays() throws Exception {
+        // Given
+        LocalDate from = LocalDate.of(2026, 1, 1);
+        LocalDate to = LocalDate.of(2026, 1, 2);
+        BDDMockito.given(statisticsService.getLoansPerDay(from, to))
+                .willReturn(List.of(new DailyLoanCountDTO(from, 2l), new DailyLoanCountDTO(to, 0l)));
+
+        // When / Then
+        mockMvc.perform(get(STATS_API + "/loans-per-day").param("from", "2026-01-01").param("to", "2026-01-02"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].date").value("2026-01-01"))
+                .andExpect(jsonPath("[0].loans").value(2))
+                .andExpect(jsonPath("[1].loans").value(0));
+    }
+
+    @Test
+    @DisplayName("Must reject a period that ends before it starts")
+    void givenInvertedPeriod_WhenGetLoansPerDay_ThenBadRequest() throws Exception {
+        mockMvc.perform(get(STATS_API + "/loans-per-day").param("from", "2026-01-02").param("to", "2026-01-01"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verifyNoInteractions(statisticsService);
+    }
+
+    @Test
+    @DisplayName("Must clamp the ranking size")
+    void givenLargeLimit_WhenGetTopBooks_ThenClampLimit() throws Exception {
+        // Given
+        BDDMockito.given(statisticsService.getMostBorrowedBooks(100)).willReturn(List.of(new BookLoanCountDTO(1l, 5l)));
+
+        // When / Then
+        mockMvc.perform(get(STATS_API + "/top-books").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].bookId").value(1))
+                .andExpect(jsonPath("[0].loans").value(5));
+    }
+
+    @Test
+    @DisplayName("Must answer conflict when a rebuild is already running")
+    void givenRunningRebuild_WhenRebuild_ThenConflict() throws Exception {
+        BDDMockito.given(statisticsService.rebuild()).willReturn(true, false);
+
+        mockMvc.perform(post(STATS_API + "/rebuild")).andExpect(status().isNoContent());
+        mockMvc.perform(post(STATS_API + "/rebuild")).andExpect(status().isConflict());
+    }
+}
@@ -0,0 +1,45 @@
+package com.harley.library.diagnostics;
+
+import com.harley.library.dtos.SlowOperationDTO;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+class SlowOperationRecorderTest {
+
+    @Test
+    @DisplayName("Must keep the most recent slow operations streamed from the flight recorder, newest first")
+    void givenSlowOperations_WhenStreamed_ThenKeepTheMostRecent() throws Exception {
+        try (SlowOperationRecorder recorder = new SlowOperationRecorder(Duration.ZERO, 2)) {
+            // Scenary
+            recorder.start();
+
+            // Execution
+            for (long bookId = 1; bookId <= 3; bookId++) {
+                LoanCheckoutEvent checkout = new LoanCheckoutEvent();
+                checkout.begin();
+                checkout.setBookId(bookId);
+                checkout.setSucceeded(true);
+                checkout.commit();
+            }
+
+            // Verification
+            List<SlowOperationDTO> recent = recorder.getRecent(10);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!(recent.size() == 2 && recent.get(0).getDetails().get("bookId").equals(3l))
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                recent = recorder.getRecent(10);
+            }
+            Assertions.assertThat(recent).hasSize(2);
+            Assertions.assertThat(recent).extracting(operation -> operation.getDetails().get("bookId"))
+                    .containsExactly(3l, 2l);
+            Assertions.assertThat(recent.get(0).getOperation()).isEqualTo("Loan Checkout");
+            Assertions.assertThat(recent.get(0).getDetails()).containsEntry("succeeded", true);
+            Assertions.assertThat(recorder.getRecent(1)).hasSize(1);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.harley.library.eventlog;
+
+import com.harley.library.events.LoanEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class LoanEventLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should replay the appended events in order after the log is reopened")
+    void givenAppendedEvents_whenReopen_thenReplayInOrder() throws IOException {
+        // Given
+        LoanEvent checkout = new LoanEvent(LoanEvent.Type.CHECKED_OUT, 1L, 10L, 100L, "Harley", 1_000L);
+        LoanEvent returned = new LoanEvent(LoanEvent.Type.RETURNED, 1L, 10L, 100L, "Harley", 2_000L);
+        LoanEvent anonymous = new LoanEvent(LoanEvent.Type.CHECKED_OUT, 2L, 11L, null, null, 3_000L);
+        try (LoanEventLog log = new LoanEventLog(directory, 1024, 2, 0)) {
+            log.append(checkout);
+            log.append(returned);
+            log.append(anonymous);
+        }
+
+        // When
+        List<LoanEvent> events = new ArrayList<>();
+        long count;
+        try (LoanEventLog log = new LoanEventLog(directory, 1024, 2, 0)) {
+            count = log.replay(events::add);
+        }
+
+        // Then
+        assertThat(count).isEqualTo(3);
+        assertThat(events).containsExactly(checkout, returned, anonymous);
+    }
+
+    @Test
+    @DisplayName("Should start a new segment when the active one is full")
+    void givenSmallSegments_whenAppend_thenRollOver() throws IOException {
+        // Given
+        try (LoanEventLog log = new LoanEventLog(directory, 160, 64, 0)) {
+            // When
+            for (long i = 0; i < 10; i++) {
+                log.append(new LoanEvent(LoanEvent.Type.CHECKED_OUT, i, i, 100L, "Harley", i));
+            }
+
+            // Then
+            List<LoanEvent> events = new ArrayList<>();
+            assertThat(log.getSegmentCount()).isEqualTo(4);
+            assertThat(log.replay(events::add)).isEqualTo(10);
+            assertThat(events).extracting(LoanEvent::getLoanId).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop a torn record at the tail and keep appending after the last complete one")
+    void givenTornTail_whenReopen_thenDiscardIt() throws IOException {
+        // Given
+        try (LoanEventLog log = new LoanEventLog(directory, 1024, 1, 0)) {
+            log.append(new LoanEvent(LoanEvent.Type.CHECKED_OUT, 1L, 10L, 100L, "Harley", 1_000L));
+            log.append(new LoanEvent(LoanEvent.Type.CHECKED_OUT, 2L, 11L, 200L, "Mary", 2_000L));
+        }
+        int secondRecord = 8 + 35 + "Harley".length();
+        try (FileChannel channel = FileChannel.open(directory.resolve("segment-0000000000.log"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), secondRecord + 12);
+        }
+
+        // When
+        List<LoanEvent> events = new ArrayList<>();
+        try (LoanEventLog log = new LoanEventLog(directory, 1024, 1, 0)) {
+            log.append(new LoanEvent(LoanEvent.Type.RETURNED, 1L, 10L, 100L, "Harley", 3_000L));
+            log.replay(events::add);
+        }
+
+        // Then
+        assertThat(events).extracting(LoanEvent::getType, LoanEvent::getLoanId).containsExactly(
+                tuple(LoanEvent.Type.CHECKED_OUT, 1L),
+                tuple(LoanEvent.Type.RETURNED, 1L));
+    }
+}
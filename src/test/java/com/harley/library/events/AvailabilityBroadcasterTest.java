@@ -0,0 +1,129 @@
+package com.harley.library.events;
+
+import com.harley.library.dtos.BookAvailabilityDTO;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+class AvailabilityBroadcasterTest {
+
+    // holds the drain tasks until the test runs them, like a sender that can't keep up
+    private final List<Runnable> queued = new ArrayList<>();
+
+    @Test
+    @DisplayName("Must refuse subscribers over the limit")
+    void givenFullBroadcaster_WhenSubscribe_ThenEmpty() {
+        // Scenary
+        AvailabilityBroadcaster broadcaster = new AvailabilityBroadcaster(queued::add, 4, 60_000, 60_000, 1);
+        broadcaster.subscribe(List.of(1l), AvailabilityBroadcasterTest::available);
+
+        // Execution
+        Optional<SseEmitter> refused = broadcaster.subscribe(List.of(2l), AvailabilityBroadcasterTest::available);
+
+        // Verification
+        Assertions.assertThat(refused).isEmpty();
+        Assertions.assertThat(broadcaster.getSubscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Must coalesce the changes of a book while the subscriber is behind")
+    void givenSlowSubscriber_WhenSameBookChanges_ThenKeepOnePendingChange() {
+        // Scenary
+        AvailabilityBroadcaster broadcaster = new AvailabilityBroadcaster(queued::add, 16, 60_000, 60_000, 10);
+        broadcaster.subscribe(List.of(1l), AvailabilityBroadcasterTest::available);
+
+        // Execution
+        for (int i = 0; i < 10; i++) {
+            broadcaster.publish(1l, i % 2 == 0);
+        }
+
+        // Verification
+        Assertions.assertThat(queued).hasSize(1);
+        runQueued();
+        Assertions.assertThat(broadcaster.getSent()).isEqualTo(1);
+        Assertions.assertThat(broadcaster.getOverflowed()).isZero();
+        Assertions.assertThat(broadcaster.getSubscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Must send one change per task, so a subscriber never holds a sender thread for long")
+    void givenPendingChanges_WhenDrain_ThenWriteOneAndRequeue() {
+        // Scenary
+        AvailabilityBroadcaster broadcaster = new AvailabilityBroadcaster(queued::add, 4, 60_000, 60_000, 10);
+        broadcaster.subscribe(List.of(1l, 2l, 3l), AvailabilityBroadcasterTest::available);
+
+        // Execution
+        Runnable first = queued.remove(0);
+        first.run();
+
+        // Verification
+        Assertions.assertThat(broadcaster.getSent()).isEqualTo(1);
+        Assertions.assertThat(queued).hasSize(1);
+        runQueued();
+        Assertions.assertThat(broadcaster.getSent()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Must disconnect a subscriber whose changes waited longer than the send timeout")
+    void givenStalledSubscriber_WhenSendTimeoutPasses_ThenDisconnect() throws InterruptedException {
+        // Scenary
+        AvailabilityBroadcaster broadcaster = new AvailabilityBroadcaster(queued::add, 16, 60_000, 1, 10);
+        broadcaster.subscribe(List.of(1l), AvailabilityBroadcasterTest::available);
+        Thread.sleep(10);
+
+        // Execution
+        broadcaster.publish(1l, false);
+
+        // Verification
+        Assertions.assertThat(broadcaster.getOverflowed()).isEqualTo(1);
+        Assertions.assertThat(broadcaster.getSubscriberCount()).isZero();
+        runQueued();
+        Assertions.assertThat(broadcaster.getSent()).isZero();
+    }
+
+    @Test
+    @DisplayName("Must disconnect a subscriber that gets more changes than its buffer between two writes")
+    void givenSlowSubscriber_WhenBufferOverflows_ThenDisconnect() {
+        // Scenary
+        AvailabilityBroadcaster broadcaster = new AvailabilityBroadcaster(queued::add, 2, 60_000, 60_000, 10);
+        broadcaster.subscribe(List.of(1l, 2l, 3l), AvailabilityBroadcasterTest::available);
+
+        // Verification
+        Assertions.assertThat(broadcaster.getOverflowed()).isEqualTo(1);
+        Assertions.assertThat(broadcaster.getSubscriberCount()).isZero();
+
+        broadcaster.publish(1l, false);
+        runQueued();
+        Assertions.assertThat(broadcaster.getSent()).isZero();
+    }
+
+    @Test
+    @DisplayName("Must not deliver changes of books the subscriber didn't ask for")
+    void givenSubscriber_WhenOtherBookChanges_ThenNothingQueued() {
+        // Scenary
+        AvailabilityBroadcaster broadcaster = new AvailabilityBroadcaster(queued::add, 4, 60_000, 60_000, 10);
+        broadcaster.subscribe(List.of(1l), AvailabilityBroadcasterTest::available);
+        queued.clear();
+
+        // Execution
+        broadcaster.publish(2l, false);
+
+        // Verification
+        Assertions.assertThat(queued).isEmpty();
+    }
+
+    private void runQueued() {
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+        }
+    }
+
+    private static Optional<BookAvailabilityDTO> available(Long bookId) {
+        return Optional.of(new BookAvailabilityDTO(bookId, true));
+    }
+}
@@ -0,0 +1,253 @@
+package com.harley.library.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyFilterTest {
+
+    private final Cache<String, StoredResponse> responses = Caffeine.newBuilder().maximumSize(100).build();
+    private final IdempotencyFilter filter = new IdempotencyFilter(responses, new ObjectMapper(), 1024, Duration.ofMinutes(1));
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    @DisplayName("Should replay the stored response to a retry without running the request again")
+    void givenARetryWithTheSameKey_whenFilter_thenReplayStoredResponse() throws Exception {
+        // Given
+        MockHttpServletResponse first = send("key-1", "{\"isbn\":\"123\"}", 201);
+
+        // When
+        MockHttpServletResponse retry = send("key-1", "{\"isbn\":\"123\"}", 201);
+
+        // Then
+        assertThat(executions).hasValue(1);
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(first.getContentAsString()).isEqualTo("{\"echo\":{\"isbn\":\"123\"}}");
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(retry.getContentType()).isEqualTo(MediaType.APPLICATION_JSON_VALUE);
+        assertThat(retry.getHeader(HttpHeaders.LOCATION)).isEqualTo("/api/books/1");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    @DisplayName("Should refuse a key reused with a different body and run requests with other keys")
+    void givenAReusedKeyOrANewKey_whenFilter_thenRejectOrRun() throws Exception {
+        // Given
+        send("key-1", "{\"isbn\":\"123\"}", 201);
+
+        // When
+        MockHttpServletResponse reused = send("key-1", "{\"isbn\":\"456\"}", 201);
+        MockHttpServletResponse other = send("key-2", "{\"isbn\":\"456\"}", 201);
+
+        // Then
+        assertThat(reused.getStatus()).isEqualTo(422);
+        assertThat(reused.getContentAsString()).contains("already used for a different request");
+        assertThat(other.getStatus()).isEqualTo(201);
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Should not store server errors, so the retry runs the request again")
+    void givenAServerError_whenRetry_thenRunAgain() throws Exception {
+        // Given
+        send("key-1", "{}", 503);
+
+        // When
+        MockHttpServletResponse retry = send("key-1", "{}", 201);
+
+        // Then
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Should answer 409 to a retry that arrives while the first request still runs")
+    void givenARequestInFlight_whenRetry_thenConflict() throws Exception {
+        // Given
+        MockHttpServletResponse[] retry = new MockHttpServletResponse[1];
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response)
+                    throws IOException, ServletException {
+                retry[0] = send("key-1", "{}", 201);
+                response.setStatus(201);
+            }
+        };
+
+        // When
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request("key-1", "{}"), first, new MockFilterChain(servlet));
+
+        // Then
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(retry[0].getStatus()).isEqualTo(409);
+    }
+
+    @Test
+    @DisplayName("Should free the key when the asynchronous dispatch of a request fails")
+    void givenAFailingAsyncDispatch_whenRetry_thenRunAgain() throws Exception {
+        // Given
+        MockHttpServletRequest request = startAsync("key-1");
+        request.setDispatcherType(DispatcherType.ASYNC);
+        request.setAsyncStarted(false);
+        HttpServlet failing = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                throw new IllegalStateException("dispatch failed");
+            }
+        };
+
+        // When
+        assertThatThrownBy(() -> filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain(failing)))
+                .isInstanceOf(IllegalStateException.class);
+        MockHttpServletResponse retry = send("key-1", "{}", 201);
+
+        // Then
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should free the key when an asynchronous request ends with an error dispatch")
+    void givenAnErrorDispatch_whenRetry_thenRunAgain() throws Exception {
+        // Given
+        MockHttpServletRequest request = startAsync("key-1");
+        request.setDispatcherType(DispatcherType.ERROR);
+        request.setAsyncStarted(false);
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        MockHttpServletResponse retry = send("key-1", "{}", 201);
+
+        // Then
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(responses.getIfPresent("POST /api/books key-1").getStatus()).isEqualTo(201);
+    }
+
+    @Test
+    @DisplayName("Should hand the buffered body to a read listener")
+    void givenAReadListener_whenRead_thenReceiveTheWholeBody() throws Exception {
+        // Given
+        StringBuilder received = new StringBuilder();
+        boolean[] allRead = new boolean[1];
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                ServletInputStream input = request.getInputStream();
+                input.setReadListener(new ReadListener() {
+                    @Override
+                    public void onDataAvailable() throws IOException {
+                        while (input.isReady() && !input.isFinished()) {
+                            received.append((char) input.read());
+                        }
+                    }
+
+                    @Override
+                    public void onAllDataRead() {
+                        allRead[0] = true;
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+                });
+                response.setStatus(201);
+            }
+        };
+
+        // When
+        filter.doFilter(request("key-1", "{\"isbn\":\"123\"}"), new MockHttpServletResponse(), new MockFilterChain(servlet));
+
+        // Then
+        assertThat(received).hasToString("{\"isbn\":\"123\"}");
+        assertThat(allRead[0]).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should run every request sent without a key")
+    void givenNoKey_whenFilter_thenRunEveryTime() throws Exception {
+        // When
+        send(null, "{}", 201);
+        send(null, "{}", 201);
+
+        // Then
+        assertThat(executions).hasValue(2);
+        assertThat(responses.estimatedSize()).isZero();
+    }
+
+    private MockHttpServletResponse send(String key, String body, int status) throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                executions.incrementAndGet();
+                String received = StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
+                response.setStatus(status);
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.setHeader(HttpHeaders.LOCATION, "/api/books/1");
+                response.getWriter().write("{\"echo\":" + received + "}");
+            }
+        };
+        filter.doFilter(request(key, body), response, new MockFilterChain(servlet));
+        return response;
+    }
+
+    private MockHttpServletRequest startAsync(String key) throws IOException, ServletException {
+        MockHttpServletRequest request = request(key, "{}");
+        request.setAsyncSupported(true);
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+                try {
+                    WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+                    asyncManager.setAsyncWebRequest(new StandardServletAsyncWebRequest(request, response));
+                    asyncManager.startDeferredResultProcessing(new DeferredResult<>());
+                } catch (Exception e) {
+                    throw new ServletException(e);
+                }
+            }
+        };
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain(servlet));
+        assertThat(send(key, "{}", 201).getStatus()).isEqualTo(409);
+        return request;
+    }
+
+    private static MockHttpServletRequest request(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/books");
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        }
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
@@ -0,0 +1,70 @@
+package com.harley.library.indexes;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookAvailabilityIndexTest {
+
+    @Test
+    @DisplayName("Should track lent books and count the available ones")
+    void givenSeededIndex_whenReserveAndRelease_thenTrackAvailability() {
+        // Given
+        BookAvailabilityIndex index = new BookAvailabilityIndex();
+        index.seed(LongStream.rangeClosed(1, 5), LongStream.of(2));
+
+        // When
+        boolean reserved = index.reserve(3);
+        boolean reservedTwice = index.reserve(3);
+        index.release(2);
+        index.removeBook(5);
+
+        // Then
+        assertThat(reserved).isTrue();
+        assertThat(reservedTwice).isFalse();
+        assertThat(index.isLent(2)).isFalse();
+        assertThat(index.isLent(3)).isTrue();
+        assertThat(index.contains(5)).isFalse();
+        assertThat(index.getLentIds()).containsExactly(3L);
+        assertThat(index.getBookCount()).isEqualTo(4);
+        assertThat(index.getLentCount()).isEqualTo(1);
+        assertThat(index.getAvailableCount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should grant one reservation when the same book is checked out concurrently")
+    void givenConcurrentCheckouts_whenReserve_thenOnlyOneSucceeds() throws Exception {
+        // Given
+        BookAvailabilityIndex index = new BookAvailabilityIndex();
+        index.addBook(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return index.reserve(1);
+            }));
+        }
+        start.countDown();
+        int granted = 0;
+        for (Future<Boolean> result : results) {
+            granted += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(granted).isEqualTo(1);
+    }
+}
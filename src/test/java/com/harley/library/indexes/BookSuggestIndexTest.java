@@ -0,0 +1,63 @@
+package com.harley.library.indexes;
+
+import com.harley.library.dtos.BookSuggestionDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookSuggestIndexTest {
+
+    @Test
+    @DisplayName("Should suggest books with a title or author word starting with the text")
+    void givenIndexedBooks_whenSuggest_thenMatchWordPrefixes() {
+        // Given
+        BookSuggestIndex index = new BookSuggestIndex();
+        index.put(1L, "Harry Potter", "J. K. Rowling");
+        index.put(2L, "Pottery for Beginners", "Mary");
+        index.put(3L, "Cem Anos de Solidão", "Gabriel García Márquez");
+
+        // When / Then
+        assertThat(index.suggest("pot", 10)).extracting(BookSuggestionDTO::getId).containsExactly(1L, 2L);
+        assertThat(index.suggest("Harry P", 10)).extracting(BookSuggestionDTO::getId).containsExactly(1L);
+        assertThat(index.suggest("SOLIDAO", 10)).extracting(BookSuggestionDTO::getId).containsExactly(3L);
+        assertThat(index.suggest("garc", 10)).extracting(BookSuggestionDTO::getTitle).containsExactly("Cem Anos de Solidão");
+        assertThat(index.suggest("row", 10)).extracting(BookSuggestionDTO::getId).containsExactly(1L);
+        assertThat(index.suggest("tter", 10)).isEmpty();
+        assertThat(index.suggest("  ", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should return each book once and stop at the limit")
+    void givenManyMatches_whenSuggest_thenDeduplicateAndLimit() {
+        // Given
+        BookSuggestIndex index = new BookSuggestIndex();
+        index.put(1L, "Mary Mary", "Mary");
+        for (long id = 2; id <= 20; id++) {
+            index.put(id, "Marine life " + id, "Author");
+        }
+
+        // When / Then
+        assertThat(index.suggest("mar", 5)).hasSize(5).extracting(BookSuggestionDTO::getId).doesNotHaveDuplicates();
+        assertThat(index.suggest("mary", 5)).extracting(BookSuggestionDTO::getId).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("Should follow updates, partial updates and deletes")
+    void givenChanges_whenSuggest_thenReflectTheCurrentBooks() {
+        // Given
+        BookSuggestIndex index = new BookSuggestIndex();
+        index.put(1L, "Old Title", "Mary");
+        index.put(2L, "Another", "John");
+
+        // When
+        index.merge(1L, "New Title", null);
+        index.remove(2L);
+
+        // Then
+        assertThat(index.suggest("old", 10)).isEmpty();
+        assertThat(index.suggest("new", 10)).extracting(BookSuggestionDTO::getAuthor).containsExactly("Mary");
+        assertThat(index.suggest("john", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+}
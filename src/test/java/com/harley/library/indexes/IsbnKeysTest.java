@@ -0,0 +1,34 @@
+package com.harley.library.indexes;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsbnKeysTest {
+
+    @Test
+    @DisplayName("Should give every way of writing the same isbn the same key")
+    void givenIsbn10AndIsbn13_whenToKey_thenSameKey() {
+        // When / Then
+        assertThat(IsbnKeys.toKey("9780306406157")).isEqualTo(9780306406157L);
+        assertThat(IsbnKeys.toKey("978-0-306-40615-7")).isEqualTo(9780306406157L);
+        assertThat(IsbnKeys.toKey("0306406152")).isEqualTo(9780306406157L);
+        assertThat(IsbnKeys.toKey("0 306 40615 2")).isEqualTo(9780306406157L);
+        assertThat(IsbnKeys.toKey("080442957X")).isEqualTo(9780804429573L);
+        assertThat(IsbnKeys.toKey("080442957x")).isEqualTo(9780804429573L);
+    }
+
+    @Test
+    @DisplayName("Should not give a key to text that isn't an isbn")
+    void givenInvalidIsbn_whenToKey_thenNull() {
+        // When / Then
+        assertThat(IsbnKeys.toKey(null)).isNull();
+        assertThat(IsbnKeys.toKey("1234")).isNull();
+        assertThat(IsbnKeys.toKey("0306406153")).isNull();
+        assertThat(IsbnKeys.toKey("X306406152")).isNull();
+        assertThat(IsbnKeys.toKey("97803064061570")).isNull();
+        assertThat(IsbnKeys.toKey("isbn-0306406152")).isNull();
+        assertThat(IsbnKeys.toKey("978030640615٧")).isNull();
+    }
+}
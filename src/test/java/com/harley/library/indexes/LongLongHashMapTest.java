@@ -0,0 +1,66 @@
+package com.harley.library.indexes;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongLongHashMapTest {
+
+    @Test
+    @DisplayName("Should put, replace and remove entries including the key zero")
+    void givenEntries_whenPutAndRemove_thenGetReflectsThem() {
+        // Given
+        LongLongHashMap map = new LongLongHashMap(4, -1);
+
+        // When
+        map.put(0, 10);
+        map.put(9780306406157L, 1);
+        map.put(9780306406157L, 2);
+        map.put(-5, 3);
+
+        // Then
+        assertThat(map.size()).isEqualTo(3);
+        assertThat(map.get(0)).isEqualTo(10);
+        assertThat(map.get(9780306406157L)).isEqualTo(2);
+        assertThat(map.get(-5)).isEqualTo(3);
+        assertThat(map.get(42)).isEqualTo(-1);
+        assertThat(map.remove(0)).isEqualTo(10);
+        assertThat(map.remove(0)).isEqualTo(-1);
+        assertThat(map.remove(9780306406157L)).isEqualTo(2);
+        assertThat(map.get(9780306406157L)).isEqualTo(-1);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should match a HashMap through growth and random removals")
+    void givenRandomOperations_whenCompareWithHashMap_thenSameContent() {
+        // Given
+        LongLongHashMap map = new LongLongHashMap(1, -1);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        // When
+        for (int i = 0; i < 200_000; i++) {
+            // a small key range so that probe chains and removals inside them are frequent
+            long key = random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertThat(map.remove(key)).isEqualTo(removed == null ? -1 : removed);
+            } else {
+                expected.put(key, (long) i);
+                map.put(key, i);
+            }
+        }
+
+        // Then
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 0; key < 20_000; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.getOrDefault(key, -1L));
+        }
+    }
+}
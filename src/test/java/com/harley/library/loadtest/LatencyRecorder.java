@@ -0,0 +1,56 @@
+package com.harley.library.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Not thread safe: every worker keeps its own recorders, merged once the run is over.
+class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private final Map<Integer, Long> statuses = new TreeMap<>();
+
+    void record(long nanos, int status) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+        statuses.merge(status, 1L, Long::sum);
+    }
+
+    void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = other.latencies[i];
+        }
+        other.statuses.forEach((status, total) -> statuses.merge(status, total, Long::sum));
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getErrors() {
+        return statuses.entrySet().stream()
+                .filter(entry -> entry.getKey() >= 500 || entry.getKey() < 0)
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+    }
+
+    Map<Integer, Long> getStatuses() {
+        return statuses;
+    }
+
+    double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))] / 1_000_000.0;
+    }
+}
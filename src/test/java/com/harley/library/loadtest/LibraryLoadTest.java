@@ -0,0 +1,261 @@
+package com.harley.library.loadtest;
+
+import com.harley.library.benchmark.Benchmarks;
+import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
+import com.harley.library.entities.Loan;
+import com.harley.library.indexes.BookAvailabilityIndex;
+import com.harley.library.loadtest.TrafficMix.Operation;
+import com.harley.library.respositories.BookRepository;
+import com.harley.library.respositories.CustomerRepository;
+import com.harley.library.respositories.LoanRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Drives a configurable traffic mix against the REST endpoints of an application started on the embedded
+// H2 database. Run with: mvn test -Ploadtest [-Dloadtest.books=...] and read target/benchmarks/load-test.json.
+//   loadtest.books / loadtest.loans   seeded volumes (open loans are created for the first books)
+//   loadtest.threads                  concurrent closed-loop clients
+//   loadtest.warmupSeconds            requests sent but not recorded
+//   loadtest.durationSeconds          measured window
+//   loadtest.mix                      weights per operation, e.g. bookSearch=40,bookGet=30,loanCreate=10,...
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class LibraryLoadTest {
+
+    private static final int BOOKS = Integer.getInteger("loadtest.books", 5_000);
+    private static final int LOANS = Integer.getInteger("loadtest.loans", 1_000);
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 16);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmupSeconds", 5);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.durationSeconds", 30);
+    private static final String MIX = System.getProperty("loadtest.mix",
+            "bookSearch=35,bookGet=35,loanCreate=10,loanReturn=10,loanSearch=10");
+    private static final int CUSTOMERS = 500;
+    private static final int SKIPPED = 0;
+    private static final int IO_ERROR = -1;
+    private static final String[] WORDS = {"adventure", "history", "garden", "ocean", "machine", "winter",
+            "river", "shadow", "empire", "journey", "science", "secret", "island", "dream", "city", "war"};
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    BookAvailabilityIndex availabilityIndex;
+
+    @Autowired
+    @Qualifier("bookAvailabilitySeeder")
+    SmartInitializingSingleton bookAvailabilitySeeder;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final Queue<Long> openLoans = new ConcurrentLinkedQueue<>();
+    private final List<Long> bookIds = new ArrayList<>();
+
+    @Test
+    @DisplayName("Drive the configured traffic mix and report throughput and latency percentiles per endpoint")
+    void runLoadTest() throws Exception {
+        seed();
+        Assertions.assertThat(availabilityIndex.getLentCount()).isEqualTo(Math.min(LOANS, BOOKS));
+        TrafficMix mix = new TrafficMix(MIX);
+
+        long measureFrom = System.nanoTime() + Duration.ofSeconds(WARMUP_SECONDS).toNanos();
+        long endAt = measureFrom + Duration.ofSeconds(DURATION_SECONDS).toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        List<Future<Map<Operation, LatencyRecorder>>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(workers.submit(() -> drive(mix, measureFrom, endAt)));
+        }
+
+        Map<Operation, LatencyRecorder> merged = new EnumMap<>(Operation.class);
+        for (Future<Map<Operation, LatencyRecorder>> result : results) {
+            result.get().forEach((operation, recorder) ->
+                    merged.computeIfAbsent(operation, key -> new LatencyRecorder()).merge(recorder));
+        }
+        workers.shutdown();
+
+        Benchmarks.write("load-test", report(mix, merged));
+
+        Assertions.assertThat(merged.values().stream().mapToInt(LatencyRecorder::getCount).sum()).isPositive();
+    }
+
+    private void seed() {
+        List<Book> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(Book.builder()
+                    .title(WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " " + i)
+                    .author("Author " + (i % 200))
+                    .isbn(isbn(i))
+                    .build());
+        }
+        bookRepository.saveAll(books).forEach(book -> bookIds.add(book.getId()));
+
+        List<Customer> customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customers.add(Customer.builder().name(customer(i)).email(customer(i) + "@email.com").build());
+        }
+        customerRepository.saveAll(customers);
+
+        List<Loan> loans = new ArrayList<>(LOANS);
+        for (int i = 0; i < Math.min(LOANS, BOOKS); i++) {
+            loans.add(Loan.builder()
+                    .book(books.get(i))
+                    .customer(customers.get(i % CUSTOMERS))
+                    .date(LocalDate.now().minusDays(i % 10))
+                    .build());
+        }
+        loanRepository.saveAll(loans).forEach(loan -> openLoans.add(loan.getId()));
+        // the index was seeded when the application started, before these books and loans existed
+        bookAvailabilitySeeder.afterSingletonsInstantiated();
+    }
+
+    private Map<Operation, LatencyRecorder> drive(TrafficMix mix, long measureFrom, long endAt) {
+        Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        while (System.nanoTime() < endAt) {
+            Operation operation = mix.next();
+            long start = System.nanoTime();
+            int status = execute(operation);
+            long elapsed = System.nanoTime() - start;
+            if (status != SKIPPED && start >= measureFrom) {
+                recorders.computeIfAbsent(operation, key -> new LatencyRecorder()).record(elapsed, status);
+            }
+        }
+        return recorders;
+    }
+
+    private int execute(Operation operation) {
+        Random random = ThreadLocalRandom.current();
+        int book = random.nextInt(BOOKS);
+        int customer = random.nextInt(CUSTOMERS);
+        try {
+            switch (operation) {
+                case BOOK_SEARCH:
+                    return send(get("/api/books?title=" + WORDS[random.nextInt(WORDS.length)] + "&page=0&size=20"));
+                case BOOK_GET:
+                    return send(get("/api/books/" + bookIds.get(book)));
+                case LOAN_CREATE:
+                    String loan = String.format("{\"isbn\":\"%s\",\"customer\":\"%s\",\"customerEmail\":\"%s@email.com\"}",
+                            isbn(book), customer(customer), customer(customer));
+                    HttpResponse<String> created = httpClient.send(json("/api/loans", "POST", loan),
+                            HttpResponse.BodyHandlers.ofString());
+                    if (created.statusCode() == 201) {
+                        openLoans.add(Long.valueOf(created.body()));
+                    }
+                    return created.statusCode();
+                case LOAN_RETURN:
+                    Long loanId = openLoans.poll();
+                    if (loanId == null) {
+                        return SKIPPED;
+                    }
+                    return send(json("/api/loans/" + loanId, "PATCH", "{\"returned\":true}"));
+                case LOAN_SEARCH:
+                    return send(get("/api/loans?customer=" + customer(customer) + "&isbn=" + isbn(book) + "&page=0&size=20"));
+                default:
+                    throw new IllegalStateException("Unexpected operation " + operation);
+            }
+        } catch (IOException e) {
+            return IO_ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return IO_ERROR;
+        }
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).header("Accept", "application/json").GET().build();
+    }
+
+    private HttpRequest json(String path, String method, String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private Map<String, Object> report(TrafficMix mix, Map<Operation, LatencyRecorder> recorders) {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("books", BOOKS);
+        config.put("loans", LOANS);
+        config.put("threads", THREADS);
+        config.put("warmupSeconds", WARMUP_SECONDS);
+        config.put("durationSeconds", DURATION_SECONDS);
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        mix.getWeights().forEach((operation, weight) -> weights.put(operation.key, weight));
+        config.put("mix", weights);
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<Operation, LatencyRecorder> entry : recorders.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            total += recorder.getCount();
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("requests", recorder.getCount());
+            endpoint.put("errors", recorder.getErrors());
+            endpoint.put("throughputPerSecond", (double) recorder.getCount() / DURATION_SECONDS);
+            endpoint.put("p50Millis", recorder.percentileMillis(50));
+            endpoint.put("p99Millis", recorder.percentileMillis(99));
+            endpoint.put("p999Millis", recorder.percentileMillis(99.9));
+            endpoint.put("maxMillis", recorder.percentileMillis(100));
+            endpoint.put("statuses", recorder.getStatuses());
+            endpoints.put(entry.getKey().key, endpoint);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("requests", total);
+        report.put("throughputPerSecond", (double) total / DURATION_SECONDS);
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    private static String isbn(int index) {
+        return String.format("978%010d", index);
+    }
+
+    private static String customer(int index) {
+        return "customer-" + index;
+    }
+}
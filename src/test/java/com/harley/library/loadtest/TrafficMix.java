@@ -0,0 +1,73 @@
+package com.harley.library.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+class TrafficMix {
+
+    enum Operation {
+        BOOK_SEARCH("bookSearch"),
+        BOOK_GET("bookGet"),
+        LOAN_CREATE("loanCreate"),
+        LOAN_RETURN("loanReturn"),
+        LOAN_SEARCH("loanSearch");
+
+        final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        static Operation of(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation in traffic mix: " + key);
+        }
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+    private final int[] cumulativeWeights;
+    private final Map<Operation, Integer> weights = new LinkedHashMap<>();
+
+    // Parses "bookSearch=40,bookGet=30,..." into a weighted mix.
+    TrafficMix(String definition) {
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (String entry : definition.split(",")) {
+            String[] pair = entry.trim().split("=");
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight <= 0) {
+                continue;
+            }
+            Operation operation = Operation.of(pair[0].trim());
+            total += weight;
+            operations.add(operation);
+            cumulative.add(total);
+            weights.put(operation, weight);
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("Traffic mix has no operation with a positive weight");
+        }
+        cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    Operation next() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations.get(i);
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    Map<Operation, Integer> getWeights() {
+        return weights;
+    }
+}
@@ -1,7 +1,10 @@
 package com.harley.library.repositories;
 
 
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.IsbnKeyDTO;
 import com.harley.library.entities.Book;
+import com.harley.library.entities.Loan;
 import com.harley.library.respositories.BookRepository;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -11,10 +14,17 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -54,6 +64,23 @@ class BookRepositoryTest {
         // Verification
         Assertions.assertThat(exist).isFalse();
     }
+    @Test
+    @DisplayName("Must select only the requested book fields of the filtered books")
+    void findFieldsByFilter() {
+        // Scenary
+        Book book = createValidBook();
+        testEntityManager.persist(book);
+
+        // Execution
+        Page<Map<String, Object>> result = bookRepository.findFieldsByFilter(List.of("id", "title"), null, null, "1234",
+                true, PageRequest.of(0, 10));
+
+        // Verification
+        Assertions.assertThat(result.getTotalElements()).isEqualTo(1);
+        Assertions.assertThat(result.getContent())
+                .containsExactly(Map.of("id", book.getId(), "title", book.getTitle()));
+    }
+
     @Test
     @DisplayName("Must find a book by id")
     public void findBookById() {
@@ -97,6 +124,97 @@ class BookRepositoryTest {
         Assertions.assertThat(deleteBook).isNull();
     }
 
+    @Test
+    @DisplayName("Must stream the books matching the filter")
+    public void streamBooksByFilter() {
+        // Scenary
+        testEntityManager.persist(createValidBook());
+        testEntityManager.persist(Book.builder().title("Other Story").author("John").isbn("5678").build());
+
+        // Execution
+        List<BookDTO> result;
+        try (Stream<BookDTO> stream = bookRepository.streamByFilter("adventures", null, null)) {
+            result = stream.collect(Collectors.toList());
+        }
+
+        // Verification
+        Assertions.assertThat(result).hasSize(1);
+        Assertions.assertThat(result.get(0).getIsbn()).isEqualTo("1234");
+        Assertions.assertThat(result.get(0).getAuthor()).isEqualTo("Mary");
+    }
+
+    @Test
+    @DisplayName("Must update only the informed fields and bump the version")
+    public void updateBookPartially() {
+        // Scenary
+        Book book = testEntityManager.persistFlushFind(createValidBook());
+
+        // Execution
+        int updated = bookRepository.updatePartially(book.getId(), "New title", null, book.getVersion());
+
+        // Verification
+        Book found = testEntityManager.find(Book.class, book.getId());
+        Assertions.assertThat(updated).isEqualTo(1);
+        Assertions.assertThat(found.getTitle()).isEqualTo("New title");
+        Assertions.assertThat(found.getAuthor()).isEqualTo("Mary");
+        Assertions.assertThat(found.getVersion()).isEqualTo(book.getVersion() + 1);
+    }
+
+    @Test
+    @DisplayName("Must not update a book when the version is stale")
+    public void updateBookPartiallyWithStaleVersion() {
+        // Scenary
+        Book book = testEntityManager.persistFlushFind(createValidBook());
+
+        // Execution
+        int updated = bookRepository.updatePartially(book.getId(), "New title", null, book.getVersion() + 1);
+
+        // Verification
+        Assertions.assertThat(updated).isZero();
+        Assertions.assertThat(testEntityManager.find(Book.class, book.getId()).getTitle()).isEqualTo("My Adventures");
+    }
+
+    @Test
+    @DisplayName("Must filter the books with or without an open loan")
+    public void findBooksByFilterAndAvailability() {
+        // Scenary
+        Book lent = testEntityManager.persist(createValidBook());
+        Book available = testEntityManager.persist(Book.builder().title("My Adventures II").author("Mary").isbn("5678").build());
+        testEntityManager.persist(Loan.builder().book(lent).date(LocalDate.now()).returned(false).build());
+        testEntityManager.persist(Loan.builder().book(available).date(LocalDate.now()).returned(true).build());
+
+        // Execution
+        Page<BookDTO> lentBooks = bookRepository.findLentByFilter("adventures", null, null, PageRequest.of(0, 10));
+        Page<BookDTO> availableBooks = bookRepository.findAvailableByFilter("adventures", null, null, PageRequest.of(0, 10));
+        Page<Map<String, Object>> lentFields = bookRepository.findFieldsByFilter(List.of("id"), "adventures", null, null,
+                false, PageRequest.of(0, 10));
+
+        // Verification
+        Assertions.assertThat(lentBooks.getContent()).extracting(BookDTO::getId).containsExactly(lent.getId());
+        Assertions.assertThat(availableBooks.getContent()).extracting(BookDTO::getId).containsExactly(available.getId());
+        Assertions.assertThat(availableBooks.getTotalElements()).isEqualTo(1);
+        Assertions.assertThat(lentFields.getContent()).containsExactly(Map.of("id", lent.getId()));
+    }
+
+    @Test
+    @DisplayName("Must find a book by the numeric key of its isbn however the isbn was written")
+    public void findBookByIsbnKey() {
+        // Scenary
+        Book book = testEntityManager.persist(Book.builder().title("My Adventures").author("Mary").isbn("0-306-40615-2").build());
+        testEntityManager.persist(createValidBook());
+
+        // Execution
+        Optional<Book> found = bookRepository.findByIsbnKey(9780306406157L);
+        List<IsbnKeyDTO> keys;
+        try (Stream<IsbnKeyDTO> stream = bookRepository.streamIsbnKeys()) {
+            keys = stream.collect(Collectors.toList());
+        }
+
+        // Verification
+        Assertions.assertThat(found).map(Book::getId).contains(book.getId());
+        Assertions.assertThat(bookRepository.existsByIsbnKey(9780306406157L)).isTrue();
+        Assertions.assertThat(keys).containsExactly(new IsbnKeyDTO(9780306406157L, book.getId()));
+    }
 
     private Book createValidBook() {
         return Book.builder().title("My Adventures").author("Mary").isbn("1234").build();
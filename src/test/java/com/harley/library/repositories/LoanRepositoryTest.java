@@ -1,8 +1,13 @@
 package com.harley.library.repositories;
 
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.dtos.LoanReminderDTO;
+import com.harley.library.entities.Customer;
 import com.harley.library.entities.Loan;
 import com.harley.library.respositories.LoanRepository;
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,6 +21,9 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.harley.library.service.LoanServiceTest.*;
 
@@ -27,6 +35,12 @@ public class LoanRepositoryTest {
     LoanRepository loanRepository;
     @Autowired
     TestEntityManager entityManager;
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = entityManager.persist(Customer.builder().name("Harley").email("harley@email.com").build());
+    }
 
     @Test
     @DisplayName("Should check if there is a loan for an unreturned book")
@@ -34,6 +48,7 @@ public class LoanRepositoryTest {
         Loan loan = createLoan();
         loan.setId(null);
         loan.getBook().setId(null);
+        loan.setCustomer(customer);
         entityManager.persist(loan.getBook());
         entityManager.persist(loan);
 
@@ -48,45 +63,255 @@ public class LoanRepositoryTest {
         Loan loan = createLoan();
         loan.setId(null);
         loan.getBook().setId(null);
+        loan.setCustomer(customer);
         entityManager.persist(loan.getBook());
         entityManager.persist(loan);
 
-        Page<Loan> result = loanRepository.findByBookIsbnOrCustomer("123", "Harley", PageRequest.of(0, 10));
+        Page<LoanDTO> result = loanRepository.findByBookIsbnOrCustomer("123", "Harley", PageRequest.of(0, 10));
 
         Assertions.assertThat(result.getContent()).hasSize(1);
-        Assertions.assertThat(result.getContent()).contains(loan);
+        Assertions.assertThat(result.getContent().get(0).getId()).isEqualTo(loan.getId());
+        Assertions.assertThat(result.getContent().get(0).getCustomer()).isEqualTo("Harley");
+        Assertions.assertThat(result.getContent().get(0).getBook().getId()).isEqualTo(loan.getBook().getId());
         Assertions.assertThat(result.getPageable().getPageSize()).isEqualTo(10);
         Assertions.assertThat(result.getPageable().getPageNumber()).isZero();
         Assertions.assertThat(result.getTotalElements()).isEqualTo(1);
     }
 
     @Test
-    @DisplayName("Should return a loan list")
-    void givenADeadline_WhenCallGetLateLoan_ThenReturnAListLoan() {
+    @DisplayName("Should select only the requested loan fields")
+    void givenFields_whenCallFindFieldsByBookIsbnOrCustomer_ThenReturnOnlyThoseFields() {
+        Loan loan = persistLoan("123", LocalDate.now(), null);
+
+        Page<Map<String, Object>> result = loanRepository.findFieldsByBookIsbnOrCustomer(
+                List.of("id", "customer", "isbn"), null, "Harley", PageRequest.of(0, 10));
+
+        Assertions.assertThat(result.getTotalElements()).isEqualTo(1);
+        Assertions.assertThat(result.getContent().get(0))
+                .containsExactly(Map.entry("id", loan.getId()), Map.entry("customer", "Harley"), Map.entry("isbn", "123"));
+    }
+
+    @Test
+    @DisplayName("Should nest the requested book fields of the loans of a book")
+    void givenBookFields_whenCallFindFieldsByBookId_ThenReturnNestedBook() {
+        Loan loan = persistLoan("123", LocalDate.now(), null);
+
+        Page<Map<String, Object>> result = loanRepository.findFieldsByBookId(
+                List.of("id", "book.id"), loan.getBook().getId(), PageRequest.of(0, 10));
+
+        Assertions.assertThat(result.getContent()).containsExactly(
+                Map.of("id", loan.getId(), "book", Map.of("id", loan.getBook().getId())));
+    }
+
+    @Test
+    @DisplayName("Should return the loans of the ids in one query")
+    void givenIds_whenCallFindAllDTOByIdIn_ThenReturnTheExistingLoans() {
+        Loan loan = persistLoan("123", LocalDate.now(), null);
+
+        List<LoanDTO> result = loanRepository.findAllDTOByIdIn(List.of(loan.getId(), loan.getId() + 1));
+
+        Assertions.assertThat(result).extracting(LoanDTO::getId).containsExactly(loan.getId());
+        Assertions.assertThat(result.get(0).getBook().getIsbn()).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("Should return the loans of a book")
+    void givenABookId_whenCallFindByBookId_ThenReturnLoanPage() {
         Loan loan = createLoan();
-        loan.setDate(LocalDate.now().minusDays(5));
         loan.setId(null);
         loan.getBook().setId(null);
+        loan.setCustomer(customer);
+        loan.getBook().setTitle("My Adventures");
         entityManager.persist(loan.getBook());
         entityManager.persist(loan);
 
-        List<Loan> result = loanRepository.findAllLateLoans(LocalDate.now().minusDays(4));
+        Page<LoanDTO> result = loanRepository.findByBookId(loan.getBook().getId(), PageRequest.of(0, 10));
 
-        Assertions.assertThat(result).hasSize(1).contains(loan);
+        Assertions.assertThat(result.getTotalElements()).isEqualTo(1);
+        Assertions.assertThat(result.getContent().get(0).getBook().getTitle()).isEqualTo("My Adventures");
     }
 
     @Test
-    @DisplayName("Should return a empty loan list when there aren't any late loan")
-    void givenADeadline_WhenCallGetLateLoan_ThenReturnAnEmptyListLoan() {
+    @DisplayName("Should stream every loan when no filter is informed")
+    void givenNoFilter_WhenCallStreamByBookIsbnOrCustomer_ThenReturnAllLoans() {
         Loan loan = createLoan();
-        loan.setDate(LocalDate.now());
         loan.setId(null);
         loan.getBook().setId(null);
+        loan.setCustomer(customer);
+        loan.getBook().setIsbn("123");
         entityManager.persist(loan.getBook());
         entityManager.persist(loan);
 
-        List<Loan> result = loanRepository.findAllLateLoans(LocalDate.now().minusDays(4));
+        List<LoanExportDTO> all;
+        try (Stream<LoanExportDTO> stream = loanRepository.streamByBookIsbnOrCustomer(null, null)) {
+            all = stream.collect(Collectors.toList());
+        }
+        List<LoanExportDTO> none;
+        try (Stream<LoanExportDTO> stream = loanRepository.streamByBookIsbnOrCustomer("999", "Nobody")) {
+            none = stream.collect(Collectors.toList());
+        }
+
+        Assertions.assertThat(all).hasSize(1);
+        Assertions.assertThat(all.get(0).getIsbn()).isEqualTo("123");
+        Assertions.assertThat(all.get(0).getCustomer()).isEqualTo("Harley");
+        Assertions.assertThat(none).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should mark a loan as returned only when the version matches")
+    void givenALoanVersion_WhenCallUpdateReturned_ThenUpdateOnlyTheCurrentVersion() {
+        Loan loan = createLoan();
+        loan.setId(null);
+        loan.getBook().setId(null);
+        loan.setCustomer(customer);
+        entityManager.persist(loan.getBook());
+        entityManager.persistAndFlush(loan);
+        Long version = loan.getVersion();
+
+        int stale = loanRepository.updateReturned(loan.getId(), true, version + 1);
+        int updated = loanRepository.updateReturned(loan.getId(), true, version);
+        int unchanged = loanRepository.updateReturned(loan.getId(), true, null);
+
+        Loan found = entityManager.find(Loan.class, loan.getId());
+        Assertions.assertThat(stale).isZero();
+        Assertions.assertThat(updated).isEqualTo(1);
+        Assertions.assertThat(unchanged).isZero();
+        Assertions.assertThat(found.getReturned()).isTrue();
+        Assertions.assertThat(found.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    @DisplayName("Should list the loan version so it can be sent back when the loan is returned")
+    void givenListedLoan_WhenCallUpdateReturnedWithItsVersion_ThenUpdate() {
+        Loan loan = createLoan();
+        loan.setId(null);
+        loan.getBook().setId(null);
+        loan.setCustomer(customer);
+        entityManager.persist(loan.getBook());
+        entityManager.persistAndFlush(loan);
+
+        LoanDTO listed = loanRepository.findByBookIsbnOrCustomer("123", "Harley", PageRequest.of(0, 10))
+                .getContent().get(0);
+        Map<String, Object> fields = loanRepository.findFieldsByBookIsbnOrCustomer(
+                List.of("id", "version"), "123", "Harley", PageRequest.of(0, 10)).getContent().get(0);
+        int updated = loanRepository.updateReturned(listed.getId(), true, listed.getVersion());
+        int stale = loanRepository.updateReturned(listed.getId(), false, listed.getVersion());
+
+        Assertions.assertThat(listed.getVersion()).isEqualTo(loan.getVersion());
+        Assertions.assertThat(fields).containsEntry("version", loan.getVersion());
+        Assertions.assertThat(updated).isEqualTo(1);
+        Assertions.assertThat(stale).isZero();
+    }
+
+    @Test
+    @DisplayName("Should select only the late loans whose reminder is due and reschedule them")
+    void givenScheduledReminders_WhenCallFindDueForReminder_ThenReturnOnlyDueLoans() {
+        LocalDate today = LocalDate.now();
+        Loan due = persistLoan("123", today.minusDays(5), today);
+        persistLoan("456", today.minusDays(6), today.plusDays(2));
+        persistLoan("789", today, today.minusDays(1));
+
+        List<LoanReminderDTO> result = loanRepository.findDueForReminder(today, today.minusDays(4));
+        int reminded = loanRepository.markReminded(List.of(due.getId()), today, 1, today.plusDays(3));
+        entityManager.clear();
+
+        Loan found = entityManager.find(Loan.class, due.getId());
+        Assertions.assertThat(result).containsExactly(new LoanReminderDTO(due.getId(), "harley@email.com", 0));
+        Assertions.assertThat(reminded).isEqualTo(1);
+        Assertions.assertThat(found.getReminderCount()).isEqualTo(1);
+        Assertions.assertThat(found.getLastNotified()).isEqualTo(today);
+        Assertions.assertThat(loanRepository.findDueForReminder(today, today.minusDays(4))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should stop the reminders of a returned loan")
+    void givenAScheduledReminder_WhenCallUpdateReturned_ThenClearNextReminder() {
+        LocalDate today = LocalDate.now();
+        Loan loan = persistLoan("123", today.minusDays(5), today);
+
+        loanRepository.updateReturned(loan.getId(), true, null);
+
+        Assertions.assertThat(entityManager.find(Loan.class, loan.getId()).getNextReminder()).isNull();
+        Assertions.assertThat(loanRepository.findDueForReminder(today, today.minusDays(4))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should stream the ids of the books that are lent out")
+    void givenOpenAndReturnedLoans_WhenCallStreamLentBookIds_ThenReturnOnlyOpenOnes() {
+        Loan open = createLoan();
+        open.setId(null);
+        open.getBook().setId(null);
+        open.setCustomer(customer);
+        entityManager.persist(open.getBook());
+        entityManager.persist(open);
+        Loan returned = createLoan();
+        returned.setId(null);
+        returned.getBook().setId(null);
+        returned.setCustomer(open.getCustomer());
+        returned.getBook().setIsbn("456");
+        returned.setReturned(true);
+        entityManager.persist(returned.getBook());
+        entityManager.persist(returned);
+
+        List<Long> lent;
+        try (Stream<Long> stream = loanRepository.streamLentBookIds()) {
+            lent = stream.collect(Collectors.toList());
+        }
+
+        Assertions.assertThat(lent).containsExactly(open.getBook().getId());
+    }
+
+    @Test
+    @DisplayName("Should page the open and the returned loans of a customer apart")
+    void givenLoansOfTwoCustomers_WhenCallFindByCustomerId_ThenReturnOnlyThatCustomersLoans() {
+        Loan open = persistLoan("123", LocalDate.now(), null);
+        Loan returned = persistLoan("456", LocalDate.now(), null);
+        loanRepository.updateReturned(returned.getId(), true, null);
+        Customer other = entityManager.persist(Customer.builder().name("Mary").email("mary@email.com").build());
+        Loan othersLoan = persistLoan("789", LocalDate.now(), null);
+        othersLoan.setCustomer(other);
+        entityManager.flush();
 
-        Assertions.assertThat(result).isEmpty();
+        Page<LoanDTO> openLoans = loanRepository.findOpenByCustomerId(customer.getId(), PageRequest.of(0, 10));
+        Page<LoanDTO> returnedLoans = loanRepository.findReturnedByCustomerId(customer.getId(), PageRequest.of(0, 10));
+
+        Assertions.assertThat(openLoans.getContent()).extracting(LoanDTO::getId).containsExactly(open.getId());
+        Assertions.assertThat(openLoans.getContent().get(0).getCustomerEmail()).isEqualTo("harley@email.com");
+        Assertions.assertThat(returnedLoans.getContent()).extracting(LoanDTO::getId).containsExactly(returned.getId());
+        Assertions.assertThat(returnedLoans.getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should schedule a first reminder only for the open loans that never had one")
+    void givenLoansWithoutReminder_WhenCallScheduleFirstReminder_ThenOnlyOpenUnremindedLoansAreScheduled() {
+        Loan legacy = persistLoan("123", LocalDate.now().minusDays(10), null);
+        Loan scheduled = persistLoan("456", LocalDate.now(), LocalDate.now().plusDays(4));
+        Loan exhausted = persistLoan("789", LocalDate.now().minusDays(30), null);
+        exhausted.setReminderCount(3);
+        Loan returned = persistLoan("321", LocalDate.now().minusDays(10), null);
+        returned.setReturned(true);
+        entityManager.flush();
+
+        List<Long> ids = loanRepository.findIdsWithoutReminder(PageRequest.of(0, 10));
+        int updated = loanRepository.scheduleFirstReminder(ids);
+        entityManager.clear();
+
+        Assertions.assertThat(ids).containsExactly(legacy.getId());
+        Assertions.assertThat(updated).isEqualTo(1);
+        Assertions.assertThat(entityManager.find(Loan.class, legacy.getId()).getNextReminder()).isEqualTo(legacy.getDate());
+        Assertions.assertThat(loanRepository.findDueForReminder(LocalDate.now(), LocalDate.now().minusDays(4)))
+                .extracting(LoanReminderDTO::getId).containsExactly(legacy.getId());
+    }
+
+    private Loan persistLoan(String isbn, LocalDate date, LocalDate nextReminder) {
+        Loan loan = createLoan();
+        loan.setId(null);
+        loan.getBook().setId(null);
+        loan.setCustomer(customer);
+        loan.getBook().setIsbn(isbn);
+        loan.setDate(date);
+        loan.setNextReminder(nextReminder);
+        entityManager.persist(loan.getBook());
+        return entityManager.persistAndFlush(loan);
     }
 }
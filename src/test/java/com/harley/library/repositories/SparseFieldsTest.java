@@ -0,0 +1,41 @@
+package com.harley.library.repositories;
+
+import com.harley.library.exceptions.BusinessException;
+import com.harley.library.respositories.LoanFieldsRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.harley.library.respositories.LoanFieldsRepository.LOAN_FIELDS;
+
+class SparseFieldsTest {
+
+    @Test
+    @DisplayName("Must expand a group to its fields and keep the declared order")
+    void givenGroup_WhenResolve_ThenExpandInDeclaredOrder() {
+        List<String> fields = LOAN_FIELDS.resolve(List.of("book", " customer", "id"));
+
+        Assertions.assertThat(fields).containsExactly("id", "customer", "book.id", "book.title", "book.author", "book.isbn");
+    }
+
+    @Test
+    @DisplayName("Must reject an unknown field")
+    void givenUnknownField_WhenResolve_ThenThrow() {
+        Assertions.assertThatThrownBy(() -> LOAN_FIELDS.resolve(List.of("id", "password")))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageStartingWith("Unknown field: password");
+    }
+
+    @Test
+    @DisplayName("Must only join the book when a selected field needs it")
+    void givenLoanFields_WhenSelect_ThenJoinOnlyForBookFields() {
+        String withoutBook = LOAN_FIELDS.select(null, List.of("id", "customer", "book.id")).toJpql();
+        String withBook = LOAN_FIELDS.select(null, List.of("id", "isbn")).toJpql();
+
+        Assertions.assertThat(withoutBook).startsWith("select l.id, c.name, l.book.id from Loan l")
+                .doesNotContain(LoanFieldsRepository.BOOK_JOIN);
+        Assertions.assertThat(withBook).contains(LoanFieldsRepository.BOOK_JOIN);
+    }
+}
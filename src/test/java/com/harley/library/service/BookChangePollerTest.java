@@ -0,0 +1,135 @@
+package com.harley.library.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harley.library.LibraryApplication;
+import com.harley.library.cache.BookCache;
+import com.harley.library.entities.Book;
+import com.harley.library.entities.BookChange;
+import com.harley.library.implementations.BookChangePoller;
+import com.harley.library.respositories.BookChangeRepository;
+import com.harley.library.services.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Two instances of the application in one JVM sharing one database, each with its own book cache. Their pollers only
+// run when a test calls them, so the propagation is checked step by step.
+class BookChangePollerTest {
+
+    private static final String DATABASE = "book-change-feed-" + UUID.randomUUID();
+
+    static ConfigurableApplicationContext nodeA;
+    static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode("create");
+        nodeB = startNode("none");
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeB.close();
+        nodeA.close();
+    }
+
+    @Test
+    @DisplayName("Should evict a book updated on one instance from the cache of the others")
+    void givenBookCachedOnBothNodes_WhenUpdatedOnOne_ThenOtherEvictsIt() {
+        // Scenary
+        BookService bookServiceA = nodeA.getBean(BookService.class);
+        BookService bookServiceB = nodeB.getBean(BookService.class);
+        Long id = bookServiceA.save(Book.builder().title("Old title").author("Mary").isbn("111-" + DATABASE).build()).getId();
+        assertThat(bookServiceB.getById(id).get().getTitle()).isEqualTo("Old title");
+        Book book = bookServiceA.getById(id).get();
+        book.setTitle("New title");
+
+        // Execution
+        bookServiceA.update(book);
+
+        // Verification
+        assertThat(bookServiceA.getById(id).get().getTitle()).isEqualTo("New title");
+        assertThat(bookServiceB.getById(id).get().getTitle()).isEqualTo("Old title");
+        assertThat(nodeB.getBean(BookChangePoller.class).poll()).isEqualTo(1);
+        assertThat(bookServiceB.getById(id).get().getTitle()).isEqualTo("New title");
+        assertThat(nodeB.getBean(MeterRegistry.class).get("library.books.change-feed.delay").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should evict a book deleted on one instance from the cache of the others")
+    void givenBookCachedOnBothNodes_WhenDeletedOnOne_ThenOtherEvictsIt() {
+        // Scenary
+        BookService bookServiceA = nodeA.getBean(BookService.class);
+        BookService bookServiceB = nodeB.getBean(BookService.class);
+        Long id = bookServiceA.save(Book.builder().title("Gone").author("John").isbn("222-" + DATABASE).build()).getId();
+        assertThat(bookServiceB.getById(id)).isPresent();
+
+        // Execution
+        bookServiceA.delete(bookServiceA.getById(id).get());
+        nodeB.getBean(BookChangePoller.class).poll();
+
+        // Verification
+        assertThat(bookServiceB.getById(id)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should wait a while for a missing change id before moving past it")
+    void givenGapInChangeIds_WhenPoll_ThenStayBeforeTheGapUntilItTimesOut() {
+        // Scenary
+        BookChangeRepository repository = mock(BookChangeRepository.class);
+        BookCache bookCache = new BookCache(Caffeine.newBuilder().build(), Caffeine.newBuilder().build());
+        bookCache.put(Book.builder().id(7l).build(), bookCache.stamp());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BookChangePoller poller = new BookChangePoller(repository, bookCache, registry, 500, 60_000, 60);
+        BookChange first = new BookChange(1l, 5l, Instant.now());
+        BookChange afterGap = new BookChange(3l, 7l, Instant.now());
+        BookChange late = new BookChange(2l, 6l, Instant.now().minusSeconds(120));
+        when(repository.findAfter(eq(0l), any(Pageable.class))).thenReturn(List.of(first, afterGap));
+        when(repository.findAfter(eq(1l), any(Pageable.class))).thenReturn(List.of(late, afterGap));
+
+        // Execution
+        poller.poll();
+        long beforeGap = poller.getLastSeenId();
+        bookCache.put(Book.builder().id(6l).build(), bookCache.stamp());
+        poller.poll();
+
+        // Verification
+        assertThat(beforeGap).isEqualTo(1l);
+        assertThat(bookCache.get(7l)).isNull();
+        assertThat(bookCache.get(6l)).isNull();
+        assertThat(poller.getLastSeenId()).isEqualTo(3l);
+        assertThat(registry.get("library.books.change-feed.delay").timer().count()).isEqualTo(3);
+    }
+
+    private static ConfigurableApplicationContext startNode(String ddlAuto) {
+        return new SpringApplicationBuilder(LibraryApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + DATABASE + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                        "application.book-cache.change-feed.poll-interval-ms=3600000",
+                        "application.event-log.enabled=false",
+                        "application.diagnostics.slow-operations.enabled=false",
+                        "application.archive.enabled=false",
+                        "application.book-cache.snapshot.enabled=false")
+                .run();
+    }
+}
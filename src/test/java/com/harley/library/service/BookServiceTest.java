@@ -1,8 +1,21 @@
 package com.harley.library.service;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harley.library.cache.BookCache;
+import com.harley.library.dtos.AvailabilityCountDTO;
+import com.harley.library.dtos.BookAvailabilityDTO;
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.BookPatchDTO;
+import com.harley.library.dtos.BookSuggestionDTO;
+import com.harley.library.dtos.MultiGetDTO;
 import com.harley.library.entities.Book;
+import com.harley.library.entities.BookChange;
 import com.harley.library.exceptions.BusinessException;
 import com.harley.library.implementations.BookServiceImp;
+import com.harley.library.indexes.BookAvailabilityIndex;
+import com.harley.library.indexes.BookSuggestIndex;
+import com.harley.library.indexes.IsbnIndex;
+import com.harley.library.respositories.BookChangeRepository;
 import com.harley.library.respositories.BookRepository;
 import com.harley.library.services.BookService;
 import org.assertj.core.api.Assertions;
@@ -12,15 +25,24 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.*;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
@@ -30,10 +52,21 @@ class BookServiceTest {
     BookService bookService;
     @MockBean
     BookRepository bookRepository;
+    @MockBean
+    BookChangeRepository bookChangeRepository;
+    BookCache bookCache;
+    BookAvailabilityIndex availabilityIndex;
+    BookSuggestIndex suggestIndex;
+    IsbnIndex isbnIndex;
 
     @BeforeEach
     public void setUp() {
-        this.bookService = new BookServiceImp(bookRepository);
+        this.availabilityIndex = new BookAvailabilityIndex();
+        this.suggestIndex = new BookSuggestIndex();
+        this.isbnIndex = new IsbnIndex();
+        this.bookCache = new BookCache(Caffeine.newBuilder().build(), Caffeine.newBuilder().build());
+        this.bookService = new BookServiceImp(bookRepository, bookChangeRepository, bookCache, availabilityIndex,
+                suggestIndex, isbnIndex);
     }
 
     @Test
@@ -44,7 +77,7 @@ class BookServiceTest {
         Book book2 = createValidBook();
         book2.setId(1l);
         when(bookRepository.existsByIsbn(anyString())).thenReturn(false);
-        when(bookService.save(book)).thenReturn(book2);
+        when(bookRepository.save(book)).thenReturn(book2);
 
         // Execution
         Book savedBook = bookService.save(book);
@@ -95,6 +128,108 @@ class BookServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Should serve a book from the cache with a copy the caller can change")
+    void getCachedBookById() {
+        // Scenary
+        Book book = createValidBook();
+        book.setId(1l);
+        String title = book.getTitle();
+        when(bookRepository.findById(1l)).thenReturn(Optional.of(book));
+        bookService.getById(1l).get().setTitle("Changed by the caller");
+
+        // Execution
+        Optional<Book> foundBook = bookService.getById(1l);
+
+        // Verification
+        verify(bookRepository, times(1)).findById(1l);
+        Assertions.assertThat(foundBook.get().getTitle()).isEqualTo(title);
+    }
+
+    @Test
+    @DisplayName("Should record the change and evict the cached book when updating it")
+    void updateEvictsCachedBook() {
+        // Scenary
+        Book book = createValidBook();
+        book.setId(1l);
+        when(bookRepository.findById(1l)).thenReturn(Optional.of(book));
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Book changed = bookService.getById(1l).get();
+        changed.setTitle("New title");
+
+        // Execution
+        bookService.update(changed);
+
+        // Verification
+        Assertions.assertThat(bookCache.get(1l)).isNull();
+        verify(bookChangeRepository).save(argThat((BookChange change) -> change.getBookId() == 1l
+                && change.getChangedAt() != null));
+    }
+
+    @Test
+    @DisplayName("Should not cache a book loaded before an eviction for a caller that joined the load after it")
+    void collapsedLoadOverlappingAnEvictionIsNotCached() throws Exception {
+        // Scenary
+        Book book = createValidBook();
+        book.setId(1l);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findById(1l)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(book);
+        });
+
+        // Execution
+        CompletableFuture<Optional<Book>> first = CompletableFuture.supplyAsync(() -> bookService.getById(1l));
+        loading.await(5, TimeUnit.SECONDS);
+        bookCache.evict(1l);
+        Thread joining = new Thread(() -> bookService.getById(1l));
+        joining.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (joining.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        joining.join(5_000);
+
+        // Verification
+        verify(bookRepository, times(1)).findById(1l);
+        Assertions.assertThat(bookCache.get(1l)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should serialize a book once per version and again after it changes")
+    void getSerializedBookById() {
+        // Scenary
+        Book book = createValidBook();
+        book.setId(1l);
+        book.setVersion(0l);
+        when(bookRepository.findById(1l)).thenReturn(Optional.of(book));
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        AtomicInteger serializations = new AtomicInteger();
+        Function<Book, byte[]> serializer = b -> {
+            serializations.incrementAndGet();
+            return (b.getTitle() + "@" + b.getVersion()).getBytes(StandardCharsets.UTF_8);
+        };
+
+        // Execution
+        bookService.getSerializedById(1l, serializer);
+        byte[] cached = bookService.getSerializedById(1l, serializer).get();
+        Book changed = bookService.getById(1l).get();
+        changed.setTitle("New title");
+        changed.setVersion(1l);
+        bookService.update(changed);
+        when(bookRepository.findById(1l)).thenReturn(Optional.of(changed));
+        byte[] afterUpdate = bookService.getSerializedById(1l, serializer).get();
+
+        // Verification
+        Assertions.assertThat(new String(cached, StandardCharsets.UTF_8)).isEqualTo(book.getTitle() + "@0");
+        Assertions.assertThat(new String(afterUpdate, StandardCharsets.UTF_8)).isEqualTo("New title@1");
+        Assertions.assertThat(serializations).hasValue(2);
+    }
+
     @Test
     @DisplayName("Should return empty when trying to get a book.")
     void getEmptyBook() {
@@ -109,6 +244,23 @@ class BookServiceTest {
         Assertions.assertThat(foundBook.isPresent()).isFalse();
     }
 
+    @Test
+    @DisplayName("Should get the books of the ids with one query, in the order of the ids")
+    void getBooksByIds() {
+        // Scenary
+        BookDTO first = new BookDTO(1l, "First", "Mary", "123", 0l);
+        BookDTO third = new BookDTO(3l, "Third", "John", "456", 0l);
+        when(bookRepository.findAllDTOByIdIn(List.of(3l, 2l, 1l))).thenReturn(List.of(first, third));
+
+        // Execution
+        MultiGetDTO<BookDTO> result = bookService.getByIds(List.of(3l, 2l, 1l, 3l));
+
+        // Verification
+        Assertions.assertThat(result.getItems()).containsExactly(third, first);
+        Assertions.assertThat(result.getMissingIds()).containsExactly(2l);
+        verify(bookRepository, times(1)).findAllDTOByIdIn(anyCollection());
+    }
+
     @Test
     @DisplayName("Should successfully delete a book by the id passed.")
     void deleteABook() {
@@ -174,19 +326,88 @@ class BookServiceTest {
                 .hasMessage("Book id can't be null");
     }
 
+    @Test
+    @DisplayName("Should partially update a book without loading it")
+    void updateABookPartially() {
+        // Scenary
+        BookPatchDTO patch = BookPatchDTO.builder().title("New title").version(0l).build();
+        when(bookRepository.updatePartially(1l, "New title", null, 0l)).thenReturn(1);
+
+        // Execution
+        boolean updated = bookService.updatePartially(1l, patch);
+
+        // Verification
+        assertThat(updated).isTrue();
+        verify(bookRepository, never()).findById(anyLong());
+        verify(bookRepository, never()).save(any());
+        verify(bookChangeRepository).save(argThat((BookChange change) -> change.getBookId() == 1l));
+    }
+
+    @Test
+    @DisplayName("Should suggest a saved book and follow its partial updates")
+    void suggestSavedBook() {
+        // Scenary
+        Book book = createValidBook();
+        Book savedBook = createValidBook();
+        savedBook.setId(1l);
+        when(bookRepository.save(book)).thenReturn(savedBook);
+        when(bookRepository.updatePartially(1l, "Other Story", null, null)).thenReturn(1);
+
+        // Execution
+        bookService.save(book);
+        List<BookSuggestionDTO> beforeUpdate = bookService.suggest("adv", 10);
+        bookService.updatePartially(1l, BookPatchDTO.builder().title("Other Story").build());
+
+        // Verification
+        assertThat(beforeUpdate).containsExactly(new BookSuggestionDTO(1l, "My Adventures", "Mary"));
+        assertThat(bookService.suggest("adv", 10)).isEmpty();
+        assertThat(bookService.suggest("story", 10)).containsExactly(new BookSuggestionDTO(1l, "Other Story", "Mary"));
+        verify(bookRepository, never()).findByFilter(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should give a conflict when the book version is stale")
+    void updateABookPartiallyWithStaleVersion() {
+        // Scenary
+        BookPatchDTO patch = BookPatchDTO.builder().title("New title").version(0l).build();
+        when(bookRepository.updatePartially(1l, "New title", null, 0l)).thenReturn(0);
+        when(bookRepository.existsById(1l)).thenReturn(true);
+
+        // Execution
+        Throwable throwable = catchThrowable(() -> bookService.updatePartially(1l, patch));
+
+        // Verification
+        assertThat(throwable).isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    @Test
+    @DisplayName("Should not update a book that doesn't exist")
+    void updateMissingBookPartially() {
+        // Scenary
+        BookPatchDTO patch = BookPatchDTO.builder().title("New title").version(0l).build();
+        when(bookRepository.updatePartially(1l, "New title", null, 0l)).thenReturn(0);
+        when(bookRepository.existsById(1l)).thenReturn(false);
+
+        // Execution
+        boolean updated = bookService.updatePartially(1l, patch);
+
+        // Verification
+        assertThat(updated).isFalse();
+    }
+
     @Test
     @DisplayName("Should filter book by properties")
     void findBook() {
         // Scenary
-        Book book = createValidBook();
+        BookDTO filter = BookDTO.builder().title("My Adventures").author("Mary").build();
 
         PageRequest pageRequest = PageRequest.of(0, 10);
-        List<Book> bookList = Arrays.asList(book);
-        Page<Book> page = new PageImpl<>(bookList, pageRequest, 1);
-        when(bookRepository.findAll(any(Example.class), any(PageRequest.class))).thenReturn(page);
+        List<BookDTO> bookList = Arrays.asList(new BookDTO(1l, "My Adventures", "Mary", "1234", 0l));
+        Page<BookDTO> page = new PageImpl<>(bookList, pageRequest, 1);
+        when(bookRepository.findByFilter("My Adventures", "Mary", null, pageRequest)).thenReturn(page);
 
         // Execution
-        Page result = bookService.find(book, pageRequest);
+        Page<BookDTO> result = bookService.find(filter, null, pageRequest);
 
         // Verification
         Assertions.assertThat(result.getTotalElements()).isEqualTo(1);
@@ -195,6 +416,58 @@ class BookServiceTest {
         Assertions.assertThat(result.getPageable().getPageSize()).isEqualTo(10);
     }
 
+    @Test
+    @DisplayName("Should leave the lent books out when filtering available books")
+    void findAvailableBooks() {
+        // Scenary
+        BookDTO filter = BookDTO.builder().title("My Adventures").build();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Page<BookDTO> page = new PageImpl<>(Arrays.asList(new BookDTO(1l, "My Adventures", "Mary", "1234", 0l)), pageRequest, 1);
+        when(bookRepository.findAvailableByFilter("My Adventures", null, null, pageRequest)).thenReturn(page);
+
+        // Execution
+        Page<BookDTO> result = bookService.find(filter, true, pageRequest);
+
+        // Verification
+        Assertions.assertThat(result).isSameAs(page);
+    }
+
+    @Test
+    @DisplayName("Should ask the database for the lent books even when the index has none")
+    void findLentBooksWhenTheIndexHasNone() {
+        // Scenary
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        availabilityIndex.seed(LongStream.of(1l, 2l), LongStream.empty());
+        Page<BookDTO> page = new PageImpl<>(Arrays.asList(new BookDTO(2l, "My Adventures", "Mary", "1234", 0l)), pageRequest, 1);
+        when(bookRepository.findLentByFilter(null, null, null, pageRequest)).thenReturn(page);
+
+        // Execution
+        Page<BookDTO> result = bookService.find(new BookDTO(), false, pageRequest);
+
+        // Verification
+        Assertions.assertThat(result).isSameAs(page);
+    }
+
+    @Test
+    @DisplayName("Should answer the availability of a book from the index")
+    void getAvailability() {
+        // Scenary
+        availabilityIndex.seed(LongStream.of(1l, 2l, 3l), LongStream.of(2l));
+
+        // Execution
+        Optional<BookAvailabilityDTO> lent = bookService.getAvailability(2l);
+        Optional<BookAvailabilityDTO> available = bookService.getAvailability(1l);
+        Optional<BookAvailabilityDTO> unknown = bookService.getAvailability(9l);
+        AvailabilityCountDTO count = bookService.countAvailability();
+
+        // Verification
+        Assertions.assertThat(lent).contains(new BookAvailabilityDTO(2l, false));
+        Assertions.assertThat(available).contains(new BookAvailabilityDTO(1l, true));
+        Assertions.assertThat(unknown).isEmpty();
+        Assertions.assertThat(count).isEqualTo(new AvailabilityCountDTO(3l, 1l, 2l));
+        verifyNoInteractions(bookRepository);
+    }
+
     @Test
     @DisplayName("Must return a book when call method find")
     void givenAnIsbn_WhenCallFindByIsbn_ThenReturnBook() {
@@ -209,6 +482,35 @@ class BookServiceTest {
         verify(bookRepository, times(1)).findByIsbn(isbn);
     }
 
+    @Test
+    @DisplayName("Must find a book by isbn through the isbn index once it was looked up")
+    void givenAnIsbn13_WhenCallFindByIsbnTwice_ThenLoadItOnceByKey() {
+        Book book = Book.builder().id(1l).isbn("978-0-306-40615-7").build();
+        when(bookRepository.findByIsbnKey(9780306406157L)).thenReturn(Optional.of(book));
+        when(bookRepository.findById(1l)).thenReturn(Optional.of(book));
+
+        Optional<Book> firstLookup = bookService.getBookByIsbn("9780306406157");
+        Optional<Book> secondLookup = bookService.getBookByIsbn("0306406152");
+
+        assertThat(firstLookup).map(Book::getId).contains(1l);
+        assertThat(secondLookup).map(Book::getId).contains(1l);
+        assertThat(isbnIndex.get(9780306406157L)).isEqualTo(1l);
+        verify(bookRepository, times(1)).findByIsbnKey(9780306406157L);
+        verify(bookRepository, never()).findByIsbn(anyString());
+    }
+
+    @Test
+    @DisplayName("Should reject a book whose isbn is already indexed in another format")
+    void givenAnIndexedIsbn_WhenSaveTheIsbn10_ThenThrowBusinessException() {
+        isbnIndex.put(9780306406157L, 1l);
+        Book book = Book.builder().title("My Adventures").author("Mary").isbn("0-306-40615-2").build();
+
+        Throwable exception = catchThrowable(() -> bookService.save(book));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Isbn already registered");
+        verify(bookRepository, never()).save(book);
+    }
+
     private Book createValidBook() {
         return Book.builder().title("My Adventures").author("Mary").isbn("1234").build();
     }
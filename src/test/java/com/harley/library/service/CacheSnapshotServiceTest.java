@@ -0,0 +1,115 @@
+package com.harley.library.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harley.library.cache.BookCache;
+import com.harley.library.cache.CacheSnapshot;
+import com.harley.library.entities.Book;
+import com.harley.library.entities.BookChange;
+import com.harley.library.implementations.BookChangePoller;
+import com.harley.library.implementations.CacheSnapshotService;
+import com.harley.library.indexes.IsbnIndex;
+import com.harley.library.respositories.BookChangeRepository;
+import com.harley.library.respositories.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataJpaTest
+class CacheSnapshotServiceTest {
+
+    @TempDir
+    Path directory;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    BookChangeRepository bookChangeRepository;
+    @Autowired
+    TestEntityManager entityManager;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final BookChangePoller bookChangePoller = Mockito.mock(BookChangePoller.class);
+
+    @Test
+    @DisplayName("Should restore the snapshot without the books changed since, and index the books created since")
+    void givenChangesAfterSnapshot_WhenRestore_ThenSkipChangedBooksAndIndexNewOnes() {
+        // Scenary
+        Book kept = entityManager.persist(Book.builder().title("Kept").author("Mary").isbn("9780000000001").build());
+        Book changed = entityManager.persist(Book.builder().title("Changed").author("John").isbn("9780000000002").build());
+        entityManager.flush();
+        BookCache bookCache = newBookCache();
+        bookCache.put(kept, bookCache.stamp());
+        bookCache.put(changed, bookCache.stamp());
+        IsbnIndex isbnIndex = new IsbnIndex();
+        isbnIndex.put(9780000000001l, kept.getId());
+        isbnIndex.put(9780000000002l, changed.getId());
+        Mockito.when(bookChangePoller.getLastSeenId()).thenReturn(bookChangeRepository.findLastId());
+        newService(bookCache, isbnIndex).snapshot();
+
+        changed.setIsbn("9780000000003");
+        entityManager.persist(BookChange.builder().bookId(changed.getId()).changedAt(Instant.now()).build());
+        Book created = entityManager.persist(Book.builder().title("Created").author("Ann").isbn("9780000000004").build());
+        entityManager.flush();
+
+        // Execution
+        BookCache restartedCache = newBookCache();
+        IsbnIndex restartedIndex = new IsbnIndex();
+        CacheSnapshotService restarted = newService(restartedCache, restartedIndex);
+        boolean restored = restarted.restore();
+
+        // Verification
+        assertThat(restored).isTrue();
+        assertThat(restarted.getRestoredBooks()).isEqualTo(1);
+        assertThat(restartedCache.get(kept.getId()).getTitle()).isEqualTo("Kept");
+        assertThat(restartedCache.get(changed.getId())).isNull();
+        assertThat(restartedIndex.get(9780000000001l)).isEqualTo(kept.getId());
+        assertThat(restartedIndex.get(9780000000002l)).isEqualTo(IsbnIndex.MISSING);
+        assertThat(restartedIndex.get(9780000000003l)).isEqualTo(changed.getId());
+        assertThat(restartedIndex.get(9780000000004l)).isEqualTo(created.getId());
+    }
+
+    @Test
+    @DisplayName("Should not restore a snapshot older than the change feed retention")
+    void givenOldSnapshot_WhenRestore_ThenIgnoreIt() throws Exception {
+        // Scenary
+        Book book = entityManager.persist(Book.builder().title("Old").author("Mary").isbn("9780000000001").build());
+        new CacheSnapshot(Instant.now().minus(Duration.ofHours(2)), 0l, book.getId(),
+                new long[]{9780000000001l, book.getId()}, List.of(book))
+                .writeTo(directory.resolve("books.snapshot"));
+        BookCache bookCache = newBookCache();
+        IsbnIndex isbnIndex = new IsbnIndex();
+
+        // Execution
+        boolean restored = newService(bookCache, isbnIndex).restore();
+
+        // Verification
+        assertThat(restored).isFalse();
+        assertThat(bookCache.get(book.getId())).isNull();
+        assertThat(isbnIndex.size()).isZero();
+    }
+
+    private CacheSnapshotService newService(BookCache bookCache, IsbnIndex isbnIndex) {
+        return new CacheSnapshotService(bookCache, isbnIndex, bookRepository, bookChangeRepository, bookChangePoller,
+                transactionManager, new SimpleMeterRegistry(), directory.resolve("books.snapshot").toString(),
+                100, 2, 60);
+    }
+
+    private static BookCache newBookCache() {
+        return new BookCache(Caffeine.newBuilder().maximumSize(100).build(), Caffeine.newBuilder().build());
+    }
+}
@@ -0,0 +1,70 @@
+package com.harley.library.service;
+
+import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
+import com.harley.library.entities.Loan;
+import com.harley.library.entities.LoanArchive;
+import com.harley.library.implementations.CustomerMigrationService;
+import com.harley.library.implementations.CustomerServiceImp;
+import com.harley.library.respositories.CustomerRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({CustomerMigrationService.class, CustomerServiceImp.class})
+class CustomerMigrationServiceTest {
+
+    @Autowired
+    CustomerMigrationService customerMigrationService;
+    @Autowired
+    CustomerRepository customerRepository;
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Should move the free-text customers of loans and archived loans to customers, batch by batch")
+    void givenLegacyCustomers_WhenMigrate_ThenReferenceOneCustomerPerEmail() {
+        // Scenary
+        ReflectionTestUtils.setField(customerMigrationService, "batchSize", 2);
+        Book book = entityManager.persist(Book.builder().title("My Adventures").author("Mary").isbn("123").build());
+        Loan first = persistLegacyLoan(book, "Harley", "harley@email.com");
+        Loan second = persistLegacyLoan(book, "Harley", " Harley@Email.com");
+        Loan withoutEmail = persistLegacyLoan(book, "John", null);
+        LoanArchive archived = entityManager.persist(LoanArchive.builder().id(99L).bookId(book.getId())
+                .legacyCustomer("Harley").legacyCustomerEmail("harley@email.com").build());
+        entityManager.flush();
+
+        // Execution
+        int migrated = customerMigrationService.migrateLegacyCustomers();
+        entityManager.clear();
+
+        // Verification
+        assertThat(migrated).isEqualTo(4);
+        Customer harley = customerRepository.findByEmail("harley@email.com").orElseThrow();
+        Loan firstLoan = entityManager.find(Loan.class, first.getId());
+        assertThat(firstLoan.getCustomer()).isEqualTo(harley);
+        assertThat(firstLoan.getLegacyCustomer()).isNull();
+        assertThat(firstLoan.getLegacyCustomerEmail()).isNull();
+        assertThat(entityManager.find(Loan.class, second.getId()).getCustomer()).isEqualTo(harley);
+        assertThat(entityManager.find(Loan.class, withoutEmail.getId()).getCustomer().getName()).isEqualTo("John");
+        assertThat(entityManager.find(LoanArchive.class, archived.getId()).getCustomerId()).isEqualTo(harley.getId());
+        assertThat(customerRepository.count()).isEqualTo(2);
+        assertThat(customerMigrationService.migrateLegacyCustomers()).isZero();
+    }
+
+    private Loan persistLegacyLoan(Book book, String customer, String email) {
+        return entityManager.persist(Loan.builder().book(book).legacyCustomer(customer).legacyCustomerEmail(email)
+                .date(LocalDate.now()).returned(true).build());
+    }
+}
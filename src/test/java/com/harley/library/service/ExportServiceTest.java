@@ -0,0 +1,100 @@
+package com.harley.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.harley.library.dtos.BookDTO;
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.enums.ExportFormat;
+import com.harley.library.implementations.ExportServiceImp;
+import com.harley.library.respositories.BookRepository;
+import com.harley.library.respositories.LoanArchiveRepository;
+import com.harley.library.respositories.LoanRepository;
+import com.harley.library.services.ExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+class ExportServiceTest {
+
+    ExportService exportService;
+    @MockBean
+    BookRepository bookRepository;
+    @MockBean
+    LoanRepository loanRepository;
+    @MockBean
+    LoanArchiveRepository loanArchiveRepository;
+
+    @BeforeEach
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.exportService = new ExportServiceImp(bookRepository, loanRepository, loanArchiveRepository, objectMapper);
+    }
+
+    @Test
+    @DisplayName("Must write one json document per book")
+    void exportBooksAsNdjson() throws Exception {
+        // Scenary
+        when(bookRepository.streamByFilter("My", null, null)).thenReturn(Stream.of(
+                new BookDTO(1L, "My Adventures", "Mary", "1234", 0L),
+                new BookDTO(2L, "My Story", "John", "5678", 3L)));
+
+        // Execution
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        exportService.exportBooks(BookDTO.builder().title("My").build(), ExportFormat.NDJSON, output);
+
+        // Verification
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"id\":1,\"title\":\"My Adventures\",\"author\":\"Mary\",\"isbn\":\"1234\",\"version\":0}\n" +
+                "{\"id\":2,\"title\":\"My Story\",\"author\":\"John\",\"isbn\":\"5678\",\"version\":3}\n");
+    }
+
+    @Test
+    @DisplayName("Must write an empty body when no book matches")
+    void exportNoBooksAsNdjson() throws Exception {
+        // Scenary
+        when(bookRepository.streamByFilter(null, null, null)).thenReturn(Stream.empty());
+
+        // Execution
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        exportService.exportBooks(new BookDTO(), ExportFormat.NDJSON, output);
+
+        // Verification
+        assertThat(output.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Must write the loans as csv with a header and escaped values")
+    void exportLoansAsCsv() throws Exception {
+        // Scenary
+        LoanExportDTO loan = new LoanExportDTO(1L, 2L, "123", 3L, "Harley, Jr", "harley@email.com",
+                LocalDate.of(2022, 7, 1), true);
+        when(loanRepository.streamByBookIsbnOrCustomer("123", null)).thenReturn(Stream.of(loan));
+
+        // Execution
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        exportService.exportLoans(LoanDTO.builder().isbn("123").build(), ExportFormat.CSV, output);
+
+        // Verification
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "id,bookId,isbn,customer,customerEmail,date,returned\r\n" +
+                "1,2,123,\"Harley, Jr\",harley@email.com,2022-07-01,true\r\n");
+    }
+}
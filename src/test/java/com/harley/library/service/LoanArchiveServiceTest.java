@@ -0,0 +1,132 @@
+package com.harley.library.service;
+
+import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
+import com.harley.library.entities.Loan;
+import com.harley.library.entities.LoanArchive;
+import com.harley.library.implementations.LoanArchiveService;
+import com.harley.library.respositories.LoanArchiveRepository;
+import com.harley.library.respositories.LoanRepository;
+import com.harley.library.respositories.OffsetPageRequest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(LoanArchiveService.class)
+class LoanArchiveServiceTest {
+
+    @Autowired
+    LoanArchiveService loanArchiveService;
+    @Autowired
+    LoanRepository loanRepository;
+    @Autowired
+    LoanArchiveRepository loanArchiveRepository;
+    @Autowired
+    TestEntityManager entityManager;
+    private final Map<String, Customer> customers = new HashMap<>();
+
+    @Test
+    @DisplayName("Should move only old returned loans to the archive, batch by batch")
+    void givenOldAndRecentLoans_WhenArchive_ThenMoveOnlyOldReturnedLoans() {
+        // Scenary
+        ReflectionTestUtils.setField(loanArchiveService, "batchSize", 2);
+        LocalDate today = LocalDate.now();
+        Book book = entityManager.persist(Book.builder().title("My Adventures").author("Mary").isbn("123").build());
+        Loan oldest = persistLoan(book, "Mary", today.minusDays(300), true);
+        Loan old = persistLoan(book, "John", today.minusDays(200), true);
+        Loan older = persistLoan(book, "Ann", today.minusDays(250), true);
+        Loan openLoan = persistLoan(book, "Harley", today.minusDays(300), null);
+        Loan recent = persistLoan(book, "Harley", today.minusDays(10), true);
+
+        // Execution
+        int archived = loanArchiveService.archiveReturnedBefore(today.minusDays(180));
+        entityManager.clear();
+
+        // Verification
+        assertThat(archived).isEqualTo(3);
+        assertThat(loanRepository.findAll()).extracting(Loan::getId).containsExactlyInAnyOrder(openLoan.getId(), recent.getId());
+        assertThat(loanArchiveRepository.findAll()).extracting(LoanArchive::getId)
+                .containsExactlyInAnyOrder(oldest.getId(), old.getId(), older.getId());
+        LoanArchive archivedLoan = loanArchiveRepository.findById(oldest.getId()).orElseThrow();
+        assertThat(archivedLoan.getBookId()).isEqualTo(book.getId());
+        assertThat(archivedLoan.getCustomerId()).isEqualTo(customers.get("Mary").getId());
+        assertThat(loanArchiveService.archiveReturnedBefore(today.minusDays(180))).isZero();
+    }
+
+    @Test
+    @DisplayName("Should read archived loans with their book like current ones")
+    void givenArchivedLoans_WhenFindByBook_ThenReturnLoansWithBook() {
+        // Scenary
+        LocalDate today = LocalDate.now();
+        Book book = entityManager.persist(Book.builder().title("My Adventures").author("Mary").isbn("123").build());
+        persistLoan(book, "Mary", today.minusDays(300), true);
+        persistLoan(book, "John", today.minusDays(250), true);
+        loanArchiveService.archiveReturnedBefore(today.minusDays(180));
+        entityManager.clear();
+
+        // Execution
+        List<LoanDTO> page = loanArchiveRepository.findByBookId(book.getId(), new OffsetPageRequest(1, 5, Sort.unsorted()));
+        List<LoanExportDTO> exported;
+        try (Stream<LoanExportDTO> stream = loanArchiveRepository.streamByBookIsbnOrCustomer("123", null)) {
+            exported = stream.collect(Collectors.toList());
+        }
+
+        // Verification
+        assertThat(loanArchiveRepository.countByBookId(book.getId())).isEqualTo(2);
+        assertThat(page).extracting(LoanDTO::getCustomer).containsExactly("John");
+        assertThat(page.get(0).getBook().getTitle()).isEqualTo("My Adventures");
+        assertThat(loanArchiveRepository.countByBookIsbnOrCustomer(null, "Mary")).isEqualTo(1);
+        assertThat(exported).extracting(LoanExportDTO::getReturned).containsExactly(true, true);
+    }
+
+    @Test
+    @DisplayName("Should select only the requested fields of archived loans")
+    void givenArchivedLoans_WhenFindFields_ThenReturnOnlyThoseFields() {
+        // Scenary
+        LocalDate today = LocalDate.now();
+        Book book = entityManager.persist(Book.builder().title("My Adventures").author("Mary").isbn("123").build());
+        Loan loan = persistLoan(book, "Mary", today.minusDays(300), true);
+        loanArchiveService.archiveReturnedBefore(today.minusDays(180));
+        entityManager.clear();
+
+        // Execution
+        List<Map<String, Object>> byCustomer = loanArchiveRepository.findFieldsByBookIsbnOrCustomer(
+                List.of("id", "customer"), null, "Mary", new OffsetPageRequest(0, 5, Sort.unsorted()));
+        List<Map<String, Object>> byIsbn = loanArchiveRepository.findFieldsByBookIsbnOrCustomer(
+                List.of("isbn", "book.title"), "123", null, new OffsetPageRequest(0, 5, Sort.unsorted()));
+        List<Map<String, Object>> versions = loanArchiveRepository.findFieldsByBookIsbnOrCustomer(
+                List.of("version"), "123", null, new OffsetPageRequest(0, 5, Sort.unsorted()));
+
+        // Verification
+        assertThat(byCustomer).containsExactly(Map.of("id", loan.getId(), "customer", "Mary"));
+        assertThat(byIsbn).containsExactly(Map.of("isbn", "123", "book", Map.of("title", "My Adventures")));
+        assertThat(versions).hasSize(1);
+        assertThat(versions.get(0)).containsEntry("version", null);
+    }
+
+    private Loan persistLoan(Book book, String name, LocalDate date, Boolean returned) {
+        Customer customer = customers.computeIfAbsent(name, key -> entityManager.persist(
+                Customer.builder().name(name).email(name.toLowerCase() + "@email.com").build()));
+        return entityManager.persistAndFlush(Loan.builder().book(book).customer(customer).date(date)
+                .returned(returned).build());
+    }
+}
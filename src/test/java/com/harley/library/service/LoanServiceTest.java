@@ -1,11 +1,19 @@
 package com.harley.library.service;
 
 import com.harley.library.dtos.LoanDTO;
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.dtos.MultiGetDTO;
 import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
 import com.harley.library.entities.Loan;
+import com.harley.library.events.LoanEvent;
 import com.harley.library.exceptions.BusinessException;
 import com.harley.library.implementations.LoanServiceImp;
+import com.harley.library.indexes.BookAvailabilityIndex;
+import com.harley.library.respositories.BookRepository;
+import com.harley.library.respositories.LoanArchiveRepository;
 import com.harley.library.respositories.LoanRepository;
+import com.harley.library.services.CustomerService;
 import com.harley.library.services.LoanService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -13,6 +21,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -32,11 +41,24 @@ public class LoanServiceTest {
 
     @MockBean
     private LoanRepository loanRepository;
+    @MockBean
+    private LoanArchiveRepository loanArchiveRepository;
+    @MockBean
+    private ApplicationEventPublisher eventPublisher;
+    @MockBean
+    private CustomerService customerService;
+    @MockBean
+    private BookRepository bookRepository;
+    private BookAvailabilityIndex availabilityIndex;
     private LoanService loanService;
 
     @BeforeEach
     private void setUp(){
-        this.loanService = new LoanServiceImp(loanRepository);
+        this.availabilityIndex = new BookAvailabilityIndex();
+        this.loanService = new LoanServiceImp(loanRepository, loanArchiveRepository, eventPublisher, availabilityIndex,
+                customerService, bookRepository);
+        when(bookRepository.findByIdForUpdate(anyLong()))
+                .thenAnswer(invocation -> Optional.of(Book.builder().id(invocation.getArgument(0)).build()));
     }
 
     @Test
@@ -46,7 +68,6 @@ public class LoanServiceTest {
         Loan savedLoan = createLoan();
 
         when(loanRepository.save(loan)).thenReturn(savedLoan);
-        when(loanRepository.existsByBookAndNotReturned(loan.getBook())).thenReturn(false);
 
         Loan returnedLoan = loanService.save(loan);
 
@@ -54,6 +75,12 @@ public class LoanServiceTest {
         assertThat(savedLoan.getBook()).isEqualTo(returnedLoan.getBook());
         assertThat(savedLoan.getCustomer()).isEqualTo(returnedLoan.getCustomer());
         assertThat(savedLoan.getDate()).isEqualTo(returnedLoan.getDate());
+        assertThat(availabilityIndex.isLent(1L)).isTrue();
+        assertThat(loan.getNextReminder()).isEqualTo(loan.getDate().plusDays(4));
+        verify(bookRepository).findByIdForUpdate(1L);
+        verify(loanRepository).existsByBookAndNotReturned(any());
+        verify(eventPublisher).publishEvent(argThat((LoanEvent event) -> event.getType() == LoanEvent.Type.CHECKED_OUT
+                && event.getLoanId() == 1L && event.getBookId() == 1L && "Harley".equals(event.getCustomer())));
     }
 
     @Test
@@ -63,16 +90,61 @@ public class LoanServiceTest {
         Loan savedLoan = createLoan();
 
         when(loanRepository.save(loan)).thenReturn(savedLoan);
-        when(loanRepository.existsByBookAndNotReturned(loan.getBook())).thenReturn(true);
+        when(loanRepository.existsByBookAndNotReturned(any())).thenReturn(true);
 
         Throwable throwable = catchThrowable(() -> loanService.save(loan));
 
         assertThat(throwable)
                 .isInstanceOf(BusinessException.class)
                 .hasMessage("Book already borrowed");
+        assertThat(availabilityIndex.isLent(loan.getBook().getId())).isTrue();
         verify(loanRepository, never()).save(loan);
     }
 
+    @Test
+    @DisplayName("Must not mark the book as lent when the loan can't be saved")
+    void givenAFailingSave_whenCallSave_ThenKeepTheBookAvailable() {
+        Loan loan = createLoan();
+
+        when(loanRepository.save(loan)).thenThrow(new IllegalStateException("Database is down"));
+
+        Throwable throwable = catchThrowable(() -> loanService.save(loan));
+
+        assertThat(throwable).isInstanceOf(IllegalStateException.class);
+        assertThat(availabilityIndex.isLent(loan.getBook().getId())).isFalse();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Must reference the customer with the email when saving a loan of a new customer")
+    void givenANewCustomer_whenCallSave_ThenResolveTheCustomer() {
+        Loan loan = createLoan();
+        loan.setCustomer(Customer.builder().name("Harley").email("harley@email.com").build());
+        Customer customer = Customer.builder().id(5L).name("Harley").email("harley@email.com").build();
+
+        when(customerService.resolve("Harley", "harley@email.com")).thenReturn(customer);
+        when(loanRepository.save(loan)).thenReturn(loan);
+
+        Loan returnedLoan = loanService.save(loan);
+
+        assertThat(returnedLoan.getCustomer()).isEqualTo(customer);
+    }
+
+    @Test
+    @DisplayName("Must reject a loan of a customer without email")
+    void givenACustomerWithoutEmail_whenCallSave_ThenThrowAnException() {
+        Loan loan = createLoan();
+        loan.setCustomer(Customer.builder().name("Harley").build());
+
+        Throwable throwable = catchThrowable(() -> loanService.save(loan));
+
+        assertThat(throwable)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Customer email is required");
+        assertThat(availabilityIndex.isLent(loan.getBook().getId())).isFalse();
+        verifyNoInteractions(customerService);
+    }
+
     @Test
     @DisplayName("Should get informations of loan by id")
     void giveAnId_WhenCallGetById_ThenReturnALoan() {
@@ -106,21 +178,77 @@ public class LoanServiceTest {
         verify(loanRepository).save(loan);
     }
 
+    @Test
+    @DisplayName("Should publish a return event when the loan is marked as returned")
+    void givenALoanId_WhenCallUpdateReturned_ThenPublishReturnEvent() {
+        LoanExportDTO loan = LoanExportDTO.builder().id(1L).bookId(2L).customer("Harley").build();
+        availabilityIndex.reserve(2L);
+        when(loanRepository.updateReturned(1L, true, null)).thenReturn(1);
+        when(loanRepository.findExportById(1L)).thenReturn(Optional.of(loan));
+
+        boolean updated = loanService.updateReturned(1L, true, null);
+
+        assertThat(updated).isTrue();
+        assertThat(availabilityIndex.isLent(2L)).isFalse();
+        verify(eventPublisher).publishEvent(argThat((LoanEvent event) -> event.getType() == LoanEvent.Type.RETURNED
+                && event.getLoanId() == 1L && event.getBookId() == 2L && "Harley".equals(event.getCustomer())));
+    }
+
+    @Test
+    @DisplayName("Should neither release the book nor publish an event when the loan was already returned")
+    void givenAReturnedLoan_WhenCallUpdateReturnedAgain_ThenChangeNothing() {
+        LoanExportDTO loan = LoanExportDTO.builder().id(1L).bookId(2L).customer("Harley").returned(true).build();
+        availabilityIndex.markLent(2L);
+        when(loanRepository.findExportById(1L)).thenReturn(Optional.of(loan));
+        when(loanRepository.updateReturned(1L, true, null)).thenReturn(0);
+        when(loanRepository.findVersionById(1L)).thenReturn(Optional.of(3L));
+
+        boolean updated = loanService.updateReturned(1L, true, null);
+
+        assertThat(updated).isTrue();
+        assertThat(availabilityIndex.isLent(2L)).isTrue();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Should not reopen a returned loan while its book is lent on another loan")
+    void givenABookLentAgain_WhenCallUpdateReturnedFalse_ThenThrowAnException() {
+        LoanExportDTO loan = LoanExportDTO.builder().id(1L).bookId(2L).customer("Harley").returned(true).build();
+        when(loanRepository.findExportById(1L)).thenReturn(Optional.of(loan));
+        when(loanRepository.existsByBookAndNotReturned(any())).thenReturn(true);
+
+        Throwable throwable = catchThrowable(() -> loanService.updateReturned(1L, false, null));
+
+        assertThat(throwable).isInstanceOf(BusinessException.class).hasMessage("Book already borrowed");
+        verify(loanRepository, never()).updateReturned(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should not publish an event when no loan was updated")
+    void givenAnUnknownLoanId_WhenCallUpdateReturned_ThenPublishNothing() {
+        when(loanRepository.updateReturned(1L, true, null)).thenReturn(0);
+
+        boolean updated = loanService.updateReturned(1L, true, null);
+
+        assertThat(updated).isFalse();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
     @Test
     @DisplayName("Should find an object Loan by isbn or customer")
     void givenALoan_WhenCallFind_ThenReturnAListLoan() {
         // Scenary
         LoanDTO loanDTO = LoanDTO.builder().customer("Harley").isbn("123").build();
-        Loan loan = createLoan();
+        LoanDTO loan = new LoanDTO(1L, "Harley", "harley@email.com", 1L, "None", "Mary", "123");
         PageRequest pageRequest = PageRequest.of(0,10);
-        List<Loan> loanList = Arrays.asList(loan);
+        List<LoanDTO> loanList = Arrays.asList(loan);
 
-        Page<Loan> page = new PageImpl<>(loanList, pageRequest, loanList.size());
+        Page<LoanDTO> page = new PageImpl<>(loanList, pageRequest, loanList.size());
         when(loanRepository.findByBookIsbnOrCustomer(Mockito.anyString(), Mockito.anyString(), Mockito.any(Pageable.class)))
                 .thenReturn(page);
 
         // Execution
-        Page<Loan> result = loanService.find(loanDTO,pageRequest);
+        Page<LoanDTO> result = loanService.find(loanDTO,pageRequest);
 
         // Verification
         assertThat(result.getTotalElements()).isEqualTo(1);
@@ -130,10 +258,54 @@ public class LoanServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Should complete a page of the loans of a book with archived loans")
+    void givenCurrentAndArchivedLoans_WhenCallGetLoansByBook_ThenCombineThem() {
+        // Scenary
+        LoanDTO current = new LoanDTO(7L, "Harley", "harley@email.com", 1L, "None", "Mary", "123");
+        LoanDTO archived = new LoanDTO(2L, "Mary", "mary@email.com", 1L, "None", "Mary", "123");
+        PageRequest firstPage = PageRequest.of(0, 2);
+        PageRequest secondPage = PageRequest.of(1, 2);
+        when(loanRepository.findByBookId(1L, firstPage)).thenReturn(new PageImpl<>(List.of(current), firstPage, 1));
+        when(loanRepository.findByBookId(1L, secondPage)).thenReturn(new PageImpl<>(List.of(), secondPage, 1));
+        when(loanArchiveRepository.countByBookId(1L)).thenReturn(3L);
+        when(loanArchiveRepository.findByBookId(eq(1L), any(Pageable.class))).thenReturn(List.of(archived));
+
+        // Execution
+        Page<LoanDTO> first = loanService.getLoansByBook(1L, firstPage);
+        Page<LoanDTO> second = loanService.getLoansByBook(1L, secondPage);
+
+        // Verification
+        assertThat(first.getContent()).isEqualTo(List.of(current, archived));
+        assertThat(first.getTotalElements()).isEqualTo(4);
+        assertThat(second.getTotalElements()).isEqualTo(4);
+        verify(loanArchiveRepository).findByBookId(eq(1L),
+                argThat((Pageable pageable) -> pageable.getOffset() == 0 && pageable.getPageSize() == 1));
+        verify(loanArchiveRepository).findByBookId(eq(1L),
+                argThat((Pageable pageable) -> pageable.getOffset() == 1 && pageable.getPageSize() == 2));
+    }
+
+    @Test
+    @DisplayName("Should look in the archive only for the ids that aren't current loans")
+    void givenCurrentAndArchivedIds_WhenCallGetByIds_ThenReturnThemInOrder() {
+        // Scenary
+        LoanDTO current = new LoanDTO(7L, "Harley", "harley@email.com", 1L, "None", "Mary", "123");
+        LoanDTO archived = new LoanDTO(2L, "Mary", "mary@email.com", 1L, "None", "Mary", "123");
+        when(loanRepository.findAllDTOByIdIn(List.of(2L, 9L, 7L))).thenReturn(List.of(current));
+        when(loanArchiveRepository.findAllDTOByIdIn(List.of(2L, 9L))).thenReturn(List.of(archived));
+
+        // Execution
+        MultiGetDTO<LoanDTO> result = loanService.getByIds(List.of(2L, 9L, 7L));
+
+        // Verification
+        assertThat(result.getItems()).isEqualTo(List.of(archived, current));
+        assertThat(result.getMissingIds()).isEqualTo(List.of(9L));
+    }
+
     public static Loan createLoan() {
         return Loan.builder()
                 .id(1L)
-                .customer("Harley")
+                .customer(Customer.builder().id(1L).name("Harley").email("harley@email.com").build())
                 .date(LocalDate.now())
                 .book(Book.builder().id(1L).build())
                 .build();
@@ -0,0 +1,60 @@
+package com.harley.library.service;
+
+import com.harley.library.entities.Book;
+import com.harley.library.entities.Customer;
+import com.harley.library.entities.Loan;
+import com.harley.library.implementations.ReminderBackfillService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(ReminderBackfillService.class)
+class ReminderBackfillServiceTest {
+
+    @Autowired
+    ReminderBackfillService reminderBackfillService;
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Should schedule the first reminder of the open loans without one, batch by batch")
+    void givenLoansWithoutReminder_WhenBackfill_ThenScheduleThemFromTheLoanDate() {
+        // Scenary
+        ReflectionTestUtils.setField(reminderBackfillService, "batchSize", 2);
+        Customer customer = entityManager.persist(Customer.builder().name("Harley").email("harley@email.com").build());
+        LocalDate date = LocalDate.now().minusDays(10);
+        Loan first = persistLoan(customer, "123", date, null);
+        Loan second = persistLoan(customer, "456", date, null);
+        Loan third = persistLoan(customer, "789", date, null);
+        Loan returned = persistLoan(customer, "321", date, true);
+        entityManager.flush();
+
+        // Execution
+        int scheduled = reminderBackfillService.scheduleMissingReminders();
+        entityManager.clear();
+
+        // Verification
+        assertThat(scheduled).isEqualTo(3);
+        assertThat(entityManager.find(Loan.class, first.getId()).getNextReminder()).isEqualTo(date);
+        assertThat(entityManager.find(Loan.class, second.getId()).getNextReminder()).isEqualTo(date);
+        assertThat(entityManager.find(Loan.class, third.getId()).getNextReminder()).isEqualTo(date);
+        assertThat(entityManager.find(Loan.class, returned.getId()).getNextReminder()).isNull();
+        assertThat(reminderBackfillService.scheduleMissingReminders()).isZero();
+    }
+
+    private Loan persistLoan(Customer customer, String isbn, LocalDate date, Boolean returned) {
+        Book book = entityManager.persist(Book.builder().title("My Adventures").author("Mary").isbn(isbn).build());
+        return entityManager.persist(Loan.builder().book(book).customer(customer).date(date).returned(returned).build());
+    }
+}
@@ -0,0 +1,71 @@
+package com.harley.library.service;
+
+import com.harley.library.dtos.LoanReminderDTO;
+import com.harley.library.implementations.ScheduleService;
+import com.harley.library.services.EmailService;
+import com.harley.library.services.LoanService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+class ScheduleServiceTest {
+
+    @MockBean
+    private LoanService loanService;
+    @MockBean
+    private EmailService emailService;
+    private ScheduleService scheduleService;
+
+    @BeforeEach
+    void setUp() {
+        scheduleService = new ScheduleService(loanService, emailService);
+        ReflectionTestUtils.setField(scheduleService, "message", "Late loan");
+        ReflectionTestUtils.setField(scheduleService, "reminderIntervals", new int[]{3, 7});
+    }
+
+    @Test
+    @DisplayName("Should email the due loans once and schedule their next reminder")
+    void givenDueLoans_WhenSendMail_ThenEmailAndReschedule() {
+        LocalDate today = LocalDate.now();
+        when(loanService.getLoansDueForReminder(today)).thenReturn(List.of(
+                new LoanReminderDTO(1L, "mary@email.com", 0),
+                new LoanReminderDTO(2L, "mary@email.com", 0),
+                new LoanReminderDTO(3L, "john@email.com", 1),
+                new LoanReminderDTO(4L, "ann@email.com", 2)));
+
+        scheduleService.sendMail();
+
+        verify(emailService).sendEmails(List.of("mary@email.com", "john@email.com", "ann@email.com"), "Late loan");
+        verify(loanService).markReminded(List.of(1L, 2L), 1, today.plusDays(3), today);
+        verify(loanService).markReminded(List.of(3L), 2, today.plusDays(7), today);
+        // the schedule ran out, so the loan gets no further reminder
+        verify(loanService).markReminded(List.of(4L), 3, null, today);
+    }
+
+    @Test
+    @DisplayName("Should send nothing when no reminder is due")
+    void givenNoDueLoans_WhenSendMail_ThenSendNothing() {
+        when(loanService.getLoansDueForReminder(any())).thenReturn(List.of());
+
+        scheduleService.sendMail();
+
+        verify(emailService, never()).sendEmails(anyList(), anyString());
+        verify(loanService, never()).markReminded(anyList(), anyInt(), any(), any());
+    }
+}
@@ -0,0 +1,132 @@
+package com.harley.library.statistics;
+
+import com.harley.library.dtos.LoanExportDTO;
+import com.harley.library.events.LoanEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoanStatisticsTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final long MARY = 1;
+    private static final long JOHN = 2;
+
+    @Test
+    @DisplayName("Should count loans per day, open and overdue loans and rankings from the loan events")
+    void givenLoanEvents_whenApply_thenCountersFollow() {
+        // Given
+        LoanStatistics statistics = new LoanStatistics();
+
+        // When
+        statistics.apply(checkedOut(1, 10, "Mary", TODAY.minusDays(5)));
+        statistics.apply(checkedOut(2, 20, "Mary", TODAY.minusDays(5)));
+        statistics.apply(checkedOut(3, 10, "John", TODAY));
+        statistics.apply(returned(1, 10, "Mary"));
+        statistics.apply(returned(3, 10, "John"));
+        // the return of loan 3 is undone
+        statistics.apply(reopened(3, 10, "John"));
+
+        // Then
+        assertThat(statistics.getTotalLoans()).isEqualTo(3);
+        assertThat(statistics.getOpenLoans()).isEqualTo(2);
+        assertThat(statistics.getOverdueLoans(TODAY.minusDays(4))).isEqualTo(1);
+        assertThat(statistics.getLoansPerDay(TODAY.minusDays(7), TODAY))
+                .containsExactly(Map.entry(TODAY.minusDays(5), 2L), Map.entry(TODAY, 1L));
+        assertThat(statistics.getMostBorrowedBooks(1)).containsExactly(Map.entry(10L, 2L));
+        assertThat(statistics.getMostBorrowingCustomers(5))
+                .containsExactly(Map.entry(MARY, 2L), Map.entry(JOHN, 1L));
+        assertThat(statistics.getCustomerName(MARY)).isEqualTo("Mary");
+    }
+
+    @Test
+    @DisplayName("Should count every checkout when they commit out of loan id order")
+    void givenCheckoutsCommittedOutOfOrder_whenApply_thenCountEach() {
+        // Given
+        LoanStatistics statistics = new LoanStatistics();
+
+        // When
+        statistics.apply(checkedOut(2, 20, "John", TODAY));
+        statistics.apply(checkedOut(1, 10, "Mary", TODAY));
+
+        // Then
+        assertThat(statistics.getTotalLoans()).isEqualTo(2);
+        assertThat(statistics.getOpenLoans()).isEqualTo(2);
+        assertThat(statistics.getLoansPerDay(TODAY, TODAY)).containsExactly(Map.entry(TODAY, 2L));
+        assertThat(statistics.getMostBorrowedBooks(5)).containsExactly(Map.entry(10L, 1L), Map.entry(20L, 1L));
+        assertThat(statistics.getMostBorrowingCustomers(5)).containsExactly(Map.entry(MARY, 1L), Map.entry(JOHN, 1L));
+    }
+
+    @Test
+    @DisplayName("Should rebuild from the history without counting again the events it already contains")
+    void givenHistoryAndEvents_whenRebuild_thenEachLoanCountedOnce() {
+        // Given
+        LoanStatistics statistics = new LoanStatistics();
+        statistics.apply(checkedOut(1, 10, "Mary", TODAY));
+
+        // When
+        boolean rebuilt = statistics.rebuild(() -> {
+            // events committed while the history is read
+            statistics.apply(checkedOut(2, 20, "John", TODAY));
+            statistics.apply(checkedOut(3, 30, "John", TODAY));
+            return Stream.of(
+                    loan(1, 10, "Mary", TODAY.minusDays(10), true),
+                    loan(2, 20, "John", TODAY, false));
+        });
+
+        // Then
+        assertThat(rebuilt).isTrue();
+        assertThat(statistics.getTotalLoans()).isEqualTo(3);
+        assertThat(statistics.getOpenLoans()).isEqualTo(2);
+        assertThat(statistics.getLoansPerDay(TODAY.minusDays(10), TODAY))
+                .containsExactly(Map.entry(TODAY.minusDays(10), 1L), Map.entry(TODAY, 2L));
+        assertThat(statistics.getMostBorrowingCustomers(5))
+                .containsExactly(Map.entry(JOHN, 2L), Map.entry(MARY, 1L));
+    }
+
+    @Test
+    @DisplayName("Should refuse a rebuild while another one runs")
+    void givenRunningRebuild_whenRebuild_thenReturnFalse() {
+        // Given
+        LoanStatistics statistics = new LoanStatistics();
+        boolean[] nested = new boolean[1];
+
+        // When
+        statistics.rebuild(() -> {
+            nested[0] = statistics.rebuild(Stream::empty);
+            return Stream.empty();
+        });
+
+        // Then
+        assertThat(nested[0]).isFalse();
+        assertThat(statistics.rebuild(Stream::empty)).isTrue();
+    }
+
+    private static LoanEvent checkedOut(long loanId, long bookId, String customer, LocalDate date) {
+        long timestamp = date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() + 1;
+        return new LoanEvent(LoanEvent.Type.CHECKED_OUT, loanId, bookId, customerId(customer), customer, timestamp);
+    }
+
+    private static LoanEvent returned(long loanId, long bookId, String customer) {
+        return LoanEvent.returned(loanId, bookId, customerId(customer), customer);
+    }
+
+    private static LoanEvent reopened(long loanId, long bookId, String customer) {
+        return LoanEvent.reopened(loanId, bookId, customerId(customer), customer);
+    }
+
+    private static LoanExportDTO loan(long id, long bookId, String customer, LocalDate date, boolean returned) {
+        return LoanExportDTO.builder().id(id).bookId(bookId).customerId(customerId(customer)).customer(customer)
+                .date(date).returned(returned).build();
+    }
+
+    private static long customerId(String customer) {
+        return "Mary".equals(customer) ? MARY : JOHN;
+    }
+}